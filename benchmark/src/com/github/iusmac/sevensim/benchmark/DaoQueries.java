@@ -0,0 +1,180 @@
+package com.github.iusmac.sevensim.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>This class holds the SQL queries of the Room DAOs that are worth measuring, so that the
+ * benchmarks can run them against a host-side SQLite database. The queries are extracted from the
+ * {@code @Query} annotations in the sources of the {@code SubscriptionSchedulesDao} and
+ * {@code SubscriptionsDao}, which are bundled as resources, so that the benchmarks always measure
+ * the queries the app actually runs. An annotation may also refer to a {@code String} constant
+ * declared in the same DAO.
+ *
+ * <p>The queries use named parameters, which SQLite numbers in order of their first appearance
+ * when bound by index.
+ */
+final class DaoQueries {
+    private static final String SUBSCRIPTION_SCHEDULES_DAO =
+        "com/github/iusmac/sevensim/scheduler/SubscriptionSchedulesDao.java";
+    private static final String SUBSCRIPTIONS_DAO =
+        "com/github/iusmac/sevensim/telephony/SubscriptionsDao.java";
+
+    /** Matches the name of the method following an annotation. */
+    private static final Pattern METHOD_NAME_PATTERN = Pattern.compile("([A-Za-z_]\\w*)\\s*\\(");
+
+    /** Matches the declaration of a {@code String} constant up to the equals sign. */
+    private static final Pattern CONSTANT_PATTERN =
+        Pattern.compile("\\bString\\s+([A-Z][A-Z0-9_]*)\\s*=");
+
+    /** Parameters: {@code :subId}. */
+    static final String FIND_ALL_SCHEDULES_BY_SUB_ID =
+        getQuery(SUBSCRIPTION_SCHEDULES_DAO, "findAllBySubscriptionId");
+
+    /**
+     * Parameters: {@code :dayOfWeek}, {@code :time}, {@code :subId}, {@code :subEnabled},
+     * {@code :reverseSearch}.
+     */
+    static final String FIND_NEAREST_SCHEDULE_BY_DAY_OF_WEEK_AND_TIME =
+        getQuery(SUBSCRIPTION_SCHEDULES_DAO, "findNearestByDayOfWeekAndTime");
+
+    static final String FIND_ALL_SCHEDULE_SUB_IDS =
+        getQuery(SUBSCRIPTION_SCHEDULES_DAO, "findAllSubscriptionIds");
+
+    /** Parameters: {@code :subId}. */
+    static final String FIND_SUBSCRIPTION_BY_ID =
+        getQuery(SUBSCRIPTIONS_DAO, "findBySubscriptionId");
+
+    static final String LOAD_ALL_SUBSCRIPTIONS = getQuery(SUBSCRIPTIONS_DAO, "loadAll");
+
+    /**
+     * @param daoPath The resource path of the DAO source file.
+     * @param methodName The name of the DAO method annotated with {@code @Query}.
+     * @return The SQL query of the DAO method.
+     * @throws IllegalStateException If the DAO method or its query can't be found.
+     */
+    static String getQuery(final String daoPath, final String methodName) {
+        final String query = parseQueries(readSource(daoPath)).get(methodName);
+        if (query == null) {
+            throw new IllegalStateException("No @Query for " + methodName + "() in " + daoPath);
+        }
+        return query;
+    }
+
+    /**
+     * @param source The Java source of the DAO.
+     * @return The SQL queries keyed by the name of the DAO method they are annotating.
+     */
+    private static Map<String, String> parseQueries(final String source) {
+        final Map<String, String> constants = parseConstants(source);
+        final Map<String, String> queries = new HashMap<>();
+        int annotationIndex = source.indexOf("@Query(");
+        while (annotationIndex >= 0) {
+            final StringBuilder query = new StringBuilder();
+            final int end = readStringExpression(source, annotationIndex + "@Query(".length(),
+                    constants, query);
+
+            final Matcher matcher = METHOD_NAME_PATTERN.matcher(source);
+            if (!matcher.find(end)) {
+                throw new IllegalStateException("No method follows the @Query at " + end);
+            }
+            queries.put(matcher.group(1), query.toString());
+
+            annotationIndex = source.indexOf("@Query(", end);
+        }
+        return queries;
+    }
+
+    /**
+     * @param source The Java source of the DAO.
+     * @return The values of the {@code String} constants keyed by their names.
+     */
+    private static Map<String, String> parseConstants(final String source) {
+        final Map<String, String> constants = new HashMap<>();
+        final Matcher matcher = CONSTANT_PATTERN.matcher(source);
+        while (matcher.find()) {
+            final StringBuilder value = new StringBuilder();
+            readStringExpression(source, matcher.end(), constants, value);
+            constants.put(matcher.group(1), value.toString());
+        }
+        return constants;
+    }
+
+    /**
+     * Concatenate the string literals and the previously declared constants of an expression,
+     * skipping the comments. The expression ends at the closing parenthesis of the annotation it's
+     * the argument of, or at the semicolon of the constant declaration.
+     *
+     * @param source The Java source.
+     * @param start The index of the beginning of the expression.
+     * @param constants The values of the constants the expression may refer to.
+     * @param out The builder to append the concatenated literals to.
+     * @return The index right after the end of the expression.
+     */
+    private static int readStringExpression(final String source, final int start,
+            final Map<String, String> constants, final StringBuilder out) {
+
+        int depth = 0;
+        int i = start;
+        while (i < source.length()) {
+            final char c = source.charAt(i);
+            if (c == '"') {
+                i++;
+                while (source.charAt(i) != '"') {
+                    if (source.charAt(i) == '\\') {
+                        i++;
+                        final char escaped = source.charAt(i);
+                        out.append(escaped == 'n' ? '\n' : escaped == 't' ? '\t' : escaped);
+                    } else {
+                        out.append(source.charAt(i));
+                    }
+                    i++;
+                }
+            } else if (source.startsWith("//", i)) {
+                i = source.indexOf('\n', i);
+            } else if (source.startsWith("/*", i)) {
+                i = source.indexOf("*/", i) + 1;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int end = i + 1;
+                while (Character.isJavaIdentifierPart(source.charAt(end))) {
+                    end++;
+                }
+                final String name = source.substring(i, end);
+                final String constant = constants.get(name);
+                if (constant == null) {
+                    throw new IllegalStateException("Unknown constant " + name + " at " + i);
+                }
+                out.append(constant);
+                i = end - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && depth > 0) {
+                depth--;
+            } else if (c == ')' || (c == ';' && depth == 0)) {
+                return i + 1;
+            }
+            i++;
+        }
+        throw new IllegalStateException("Unterminated expression at " + start);
+    }
+
+    private static String readSource(final String path) {
+        try (InputStream in = DaoQueries.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource: " + path);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Do not initialize. */
+    private DaoQueries() {}
+}
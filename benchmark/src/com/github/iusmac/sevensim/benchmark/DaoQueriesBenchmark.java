@@ -0,0 +1,188 @@
+package com.github.iusmac.sevensim.benchmark;
+
+import com.github.iusmac.sevensim.engine.TypeCodecs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Calendar;
+
+/**
+ * <p>Measure the queries of the {@code SubscriptionSchedulesDao} and {@code SubscriptionsDao}
+ * against a host-side in-memory SQLite database, so that the storage changes (indices, column
+ * encodings, query rewrites) come with before/after numbers.
+ *
+ * <p>The tables mirror the schema generated by Room, and the queries are taken from the DAOs, see
+ * {@link DaoQueries}. The cursor reading is included in the score, but the mapping to the entities
+ * done by Room isn't, as it doesn't depend on the row count.
+ *
+ * <p>The smallest parameters reflect a typical dual-SIM device, whereas the largest ones stress
+ * the queries way beyond what the UI allows to create.
+ */
+@State(Scope.Benchmark)
+public class DaoQueriesBenchmark {
+    @Param({"2", "64"})
+    public int subCount;
+
+    @Param({"4", "256"})
+    public int schedulesPerSub;
+
+    private final LocalDateTime mCompareTime = LocalDateTime.of(2024, 5, 15, 12, 30);
+    private final int mDayOfWeek = Calendar.WEDNESDAY;
+    private final int mMinutesSinceMidnight =
+        TypeCodecs.toMinutesSinceMidnight(mCompareTime.toLocalTime());
+
+    private Connection mConnection;
+    private PreparedStatement mFindAllSchedulesBySubId;
+    private PreparedStatement mFindNearestSchedule;
+    private PreparedStatement mFindAllScheduleSubIds;
+    private PreparedStatement mFindSubscriptionById;
+    private PreparedStatement mLoadAllSubscriptions;
+
+    @Setup
+    public void setUp() throws SQLException {
+        mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = mConnection.createStatement()) {
+            statement.execute("CREATE TABLE `subscriptions` (`id` INTEGER NOT NULL, "
+                    + "`lastActivatedTime` INTEGER, `lastDeactivatedTime` INTEGER, "
+                    + "`keepDisabledAcrossBoots` INTEGER, PRIMARY KEY(`id`))");
+            statement.execute("CREATE TABLE `subscription_schedules` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`sub_id` INTEGER NOT NULL, `sub_enabled` INTEGER NOT NULL, "
+                    + "`enabled` INTEGER NOT NULL, `days_of_week_bits` INTEGER, "
+                    + "`minutes_since_midnight` INTEGER NOT NULL)");
+            statement.execute("CREATE INDEX "
+                    + "`index_subscription_schedules_sub_id_sub_enabled_enabled_days_of_week_bits` "
+                    + "ON `subscription_schedules` "
+                    + "(`sub_id`, `sub_enabled`, `enabled`, `days_of_week_bits`)");
+        }
+        populate(new SyntheticSchedules(subCount, schedulesPerSub, mCompareTime));
+
+        mFindAllSchedulesBySubId =
+            mConnection.prepareStatement(DaoQueries.FIND_ALL_SCHEDULES_BY_SUB_ID);
+        mFindNearestSchedule =
+            mConnection.prepareStatement(DaoQueries.FIND_NEAREST_SCHEDULE_BY_DAY_OF_WEEK_AND_TIME);
+        mFindAllScheduleSubIds = mConnection.prepareStatement(DaoQueries.FIND_ALL_SCHEDULE_SUB_IDS);
+        mFindSubscriptionById = mConnection.prepareStatement(DaoQueries.FIND_SUBSCRIPTION_BY_ID);
+        mLoadAllSubscriptions = mConnection.prepareStatement(DaoQueries.LOAD_ALL_SUBSCRIPTIONS);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mConnection.close();
+    }
+
+    @Benchmark
+    public void findAllSchedulesBySubscriptionId(final Blackhole bh) throws SQLException {
+        mFindAllSchedulesBySubId.setInt(1, /*subId=*/ 0);
+        consume(mFindAllSchedulesBySubId, bh);
+    }
+
+    @Benchmark
+    public void findNearestScheduleByDayOfWeekAndTime(final Blackhole bh) throws SQLException {
+        mFindNearestSchedule.setInt(1, mDayOfWeek);
+        mFindNearestSchedule.setInt(2, mMinutesSinceMidnight);
+        mFindNearestSchedule.setInt(3, /*subId=*/ 0);
+        mFindNearestSchedule.setBoolean(4, /*subEnabled=*/ true);
+        mFindNearestSchedule.setBoolean(5, /*reverseSearch=*/ true);
+        consume(mFindNearestSchedule, bh);
+    }
+
+    /**
+     * Mirrors the lookup done on each alarm, i.e., the nearest enable and disable schedules of
+     * each subscription looked up in a single transaction, see
+     * {@code SubscriptionSchedulesDao#findAllNearestByDayOfWeekAndTime()}.
+     */
+    @Benchmark
+    public void findAllNearestSchedulesByDayOfWeekAndTime(final Blackhole bh)
+            throws SQLException {
+
+        mConnection.setAutoCommit(false);
+        try (ResultSet subIds = mFindAllScheduleSubIds.executeQuery()) {
+            mFindNearestSchedule.setInt(1, mDayOfWeek);
+            mFindNearestSchedule.setInt(2, mMinutesSinceMidnight);
+            mFindNearestSchedule.setBoolean(5, /*reverseSearch=*/ true);
+            while (subIds.next()) {
+                mFindNearestSchedule.setInt(3, subIds.getInt(1));
+                mFindNearestSchedule.setBoolean(4, /*subEnabled=*/ true);
+                consume(mFindNearestSchedule, bh);
+                mFindNearestSchedule.setBoolean(4, /*subEnabled=*/ false);
+                consume(mFindNearestSchedule, bh);
+            }
+        }
+        mConnection.commit();
+        mConnection.setAutoCommit(true);
+    }
+
+    @Benchmark
+    public void findSubscriptionById(final Blackhole bh) throws SQLException {
+        mFindSubscriptionById.setInt(1, /*subId=*/ 0);
+        consume(mFindSubscriptionById, bh);
+    }
+
+    @Benchmark
+    public void loadAllSubscriptions(final Blackhole bh) throws SQLException {
+        consume(mLoadAllSubscriptions, bh);
+    }
+
+    private void populate(final SyntheticSchedules schedules) throws SQLException {
+        mConnection.setAutoCommit(false);
+        try (PreparedStatement insertSub = mConnection.prepareStatement(
+                    "INSERT INTO subscriptions VALUES (?, ?, ?, NULL)");
+                PreparedStatement insertSchedule = mConnection.prepareStatement(
+                    "INSERT INTO subscription_schedules (sub_id, sub_enabled, enabled, "
+                    + "days_of_week_bits, minutes_since_midnight) VALUES (?, ?, 1, ?, ?)")) {
+
+            for (int i = 0; i < subCount; i++) {
+                insertSub.setInt(1, i);
+                insertSub.setLong(2, TypeCodecs.toEpochMinutes(schedules.lastActivatedTimes[i]));
+                insertSub.setLong(3,
+                        TypeCodecs.toEpochMinutes(schedules.lastDeactivatedTimes[i]));
+                insertSub.executeUpdate();
+
+                insertSchedule.setInt(1, i);
+                for (int j = 0; j < schedulesPerSub; j++) {
+                    insertSchedule.setBoolean(2, true);
+                    insertSchedule.setInt(3, schedules.enableBits[i][j]);
+                    insertSchedule.setInt(4,
+                            TypeCodecs.toMinutesSinceMidnight(schedules.enableTimes[i][j]));
+                    insertSchedule.executeUpdate();
+
+                    insertSchedule.setBoolean(2, false);
+                    insertSchedule.setInt(3, schedules.disableBits[i][j]);
+                    insertSchedule.setInt(4,
+                            TypeCodecs.toMinutesSinceMidnight(schedules.disableTimes[i][j]));
+                    insertSchedule.executeUpdate();
+                }
+            }
+        }
+        mConnection.commit();
+        mConnection.setAutoCommit(true);
+    }
+
+    /** Read all columns of all rows, like the Room generated cursor mapping does. */
+    private static void consume(final PreparedStatement statement, final Blackhole bh)
+            throws SQLException {
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+            final int columnCount = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    bh.consume(resultSet.getLong(i));
+                }
+            }
+        }
+    }
+}
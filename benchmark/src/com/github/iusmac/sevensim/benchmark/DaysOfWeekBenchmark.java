@@ -0,0 +1,45 @@
+package com.github.iusmac.sevensim.benchmark;
+
+import com.github.iusmac.sevensim.engine.DaysOfWeekBits;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measure the days of the week bit math over all 128 bitmasks and all 7 days of the week.
+ */
+@State(Scope.Benchmark)
+public class DaysOfWeekBenchmark {
+    private static final int OPS = SyntheticSchedules.BITMASK_COUNT * 7;
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void getDistanceToNextDayOfWeek(final Blackhole bh) {
+        for (int bits = 0; bits < SyntheticSchedules.BITMASK_COUNT; bits++) {
+            for (int day = DaysOfWeekBits.SUNDAY; day <= DaysOfWeekBits.SATURDAY; day++) {
+                bh.consume(DaysOfWeekBits.getDistanceToNextDayOfWeek(bits, day));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void getDistanceToPreviousDayOfWeek(final Blackhole bh) {
+        for (int bits = 0; bits < SyntheticSchedules.BITMASK_COUNT; bits++) {
+            for (int day = DaysOfWeekBits.SUNDAY; day <= DaysOfWeekBits.SATURDAY; day++) {
+                bh.consume(DaysOfWeekBits.getDistanceToPreviousDayOfWeek(bits, day));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SyntheticSchedules.BITMASK_COUNT)
+    public void getCount(final Blackhole bh) {
+        for (int bits = 0; bits < SyntheticSchedules.BITMASK_COUNT; bits++) {
+            bh.consume(DaysOfWeekBits.getCount(bits));
+        }
+    }
+}
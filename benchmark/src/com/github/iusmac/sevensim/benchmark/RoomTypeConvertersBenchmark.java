@@ -0,0 +1,57 @@
+package com.github.iusmac.sevensim.benchmark;
+
+import com.github.iusmac.sevensim.RoomTypeConverters;
+import com.github.iusmac.sevensim.engine.TypeCodecs;
+import com.github.iusmac.sevensim.scheduler.DaysOfWeek;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Measure the conversions done by the app's Room type converters when reading and writing rows,
+ * including the boxing of the column values.
+ */
+@State(Scope.Benchmark)
+public class RoomTypeConvertersBenchmark {
+    private final RoomTypeConverters mConverters = new RoomTypeConverters();
+    private final LocalDateTime mDateTime = LocalDateTime.of(2024, 5, 15, 12, 30);
+    private final Long mEpochMinutes = TypeCodecs.toEpochMinutes(mDateTime);
+    private final LocalTime mTime = LocalTime.of(21, 45);
+    private final Integer mMinutesSinceMidnight = 21 * 60 + 45;
+    private final DaysOfWeek mDaysOfWeek = DaysOfWeek.valueOf(0b0111110);
+    private final Integer mDaysOfWeekBits = mDaysOfWeek.getBits();
+
+    @Benchmark
+    public LocalDateTime fromEpochMinutes() {
+        return mConverters.fromEpochMinutes(mEpochMinutes);
+    }
+
+    @Benchmark
+    public Long toEpochMinutes() {
+        return mConverters.toEpochMinutes(mDateTime);
+    }
+
+    @Benchmark
+    public LocalTime fromMinutesSinceMidnight() {
+        return mConverters.fromMinutesSinceMidnight(mMinutesSinceMidnight);
+    }
+
+    @Benchmark
+    public Integer toMinutesSinceMidnight() {
+        return mConverters.toMinutesSinceMidnight(mTime);
+    }
+
+    @Benchmark
+    public DaysOfWeek fromBitsToDaysOfWeek() {
+        return mConverters.fromBitsToDaysOfWeek(mDaysOfWeekBits);
+    }
+
+    @Benchmark
+    public Integer toDaysOfWeekBits() {
+        return mConverters.toDaysOfWeekBits(mDaysOfWeek);
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.iusmac.sevensim.benchmark;
+
+import com.github.iusmac.sevensim.engine.ScheduleEngine;
+import com.github.iusmac.sevensim.engine.WeeklyTransitions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>Measure the schedule evaluation done by the scheduler on each alarm, i.e., resolving the
+ * nearest occurrence of the weekly repeat schedules, and deciding the expected enabled state of
+ * every SIM subscription.
+ *
+ * <p>The schedules are looked up through the same {@link WeeklyTransitions} the scheduler compiles
+ * the schedules of each subscription into, and the date-times are resolved through the same
+ * {@link ScheduleEngine} calls, so that the benchmark follows the code the app runs.
+ *
+ * <p>Each invocation processes all synthetic subscriptions, so the score is per alarm.
+ */
+@State(Scope.Benchmark)
+public class ScheduleEngineBenchmark {
+    @Param({"1", "2", "4", "16", "64"})
+    public int subCount;
+
+    @Param({"1", "4"})
+    public int schedulesPerSub;
+
+    private final LocalDateTime mCompareTime = LocalDateTime.of(2024, 5, 15, 12, 30);
+
+    private SyntheticSchedules mSchedules;
+    private List<WeeklyTransitions<Schedule>> mEnableTransitions;
+    private List<WeeklyTransitions<Schedule>> mDisableTransitions;
+
+    @Setup
+    public void setUp() {
+        mSchedules = new SyntheticSchedules(subCount, schedulesPerSub, mCompareTime);
+        mEnableTransitions = new ArrayList<>(subCount);
+        mDisableTransitions = new ArrayList<>(subCount);
+        for (int i = 0; i < subCount; i++) {
+            mEnableTransitions.add(buildTransitions(mSchedules.enableBits[i],
+                        mSchedules.enableTimes[i]));
+            mDisableTransitions.add(buildTransitions(mSchedules.disableBits[i],
+                        mSchedules.disableTimes[i]));
+        }
+    }
+
+    /**
+     * Mirrors the decision made for each subscription when syncing their enabled state, see
+     * {@code SubscriptionScheduler#syncSubscriptionEnabledState()}.
+     */
+    @Benchmark
+    public void syncSubscriptionsEnabledState(final Blackhole bh) {
+        for (int i = 0; i < subCount; i++) {
+            final Optional<LocalDateTime> start = mEnableTransitions.get(i)
+                .findNearestBefore(mCompareTime).flatMap(this::getDateTimeBefore);
+            final Optional<LocalDateTime> end = mDisableTransitions.get(i)
+                .findNearestBefore(mCompareTime).flatMap(this::getDateTimeBefore);
+            bh.consume(ScheduleEngine.getExpectedEnabledState(mSchedules.simEnabledStates[i],
+                        mSchedules.lastActivatedTimes[i], mSchedules.lastDeactivatedTimes[i],
+                        /*keepDisabledAcrossBoots=*/ null, start, end,
+                        /*overrideUserPreference=*/ true));
+        }
+    }
+
+    /**
+     * Mirrors the lookup of the next processing iteration time across all subscriptions, see
+     * {@code SubscriptionScheduler#updateNextWeeklyRepeatScheduleProcessingIter()}.
+     */
+    @Benchmark
+    public void getDateTimeAfter(final Blackhole bh) {
+        Optional<LocalDateTime> next = Optional.empty();
+        for (int i = 0; i < subCount; i++) {
+            final Optional<LocalDateTime> dateTime = (mSchedules.simEnabledStates[i] ?
+                    mDisableTransitions : mEnableTransitions).get(i)
+                .findNearestAfter(mCompareTime)
+                .flatMap((schedule) -> ScheduleEngine.getDateTimeAfter(schedule.daysOfWeekBits,
+                            schedule.time, mCompareTime));
+            if (dateTime.isPresent() &&
+                    (next.isEmpty() || dateTime.get().isBefore(next.get()))) {
+                next = dateTime;
+            }
+        }
+        bh.consume(next);
+    }
+
+    private Optional<LocalDateTime> getDateTimeBefore(final Schedule schedule) {
+        return ScheduleEngine.getDateTimeBefore(schedule.daysOfWeekBits, schedule.time,
+                mCompareTime);
+    }
+
+    private static WeeklyTransitions<Schedule> buildTransitions(final int[] bits,
+            final LocalTime[] times) {
+
+        final WeeklyTransitions.Builder<Schedule> builder = new WeeklyTransitions.Builder<>();
+        for (int j = 0; j < bits.length; j++) {
+            builder.add(bits[j], times[j], new Schedule(bits[j], times[j]));
+        }
+        return builder.build();
+    }
+
+    /** The counterpart of the schedule entity the scheduler compiles. */
+    private static final class Schedule {
+        final int daysOfWeekBits;
+        final LocalTime time;
+
+        Schedule(final int daysOfWeekBits, final LocalTime time) {
+            this.daysOfWeekBits = daysOfWeekBits;
+            this.time = time;
+        }
+    }
+}
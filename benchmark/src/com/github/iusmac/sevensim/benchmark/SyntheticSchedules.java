@@ -0,0 +1,72 @@
+package com.github.iusmac.sevensim.benchmark;
+
+import com.github.iusmac.sevensim.engine.DaysOfWeekBits;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Random;
+
+/**
+ * <p>This class generates a deterministic set of SIM subscriptions, each one having a number of
+ * weekly repeat schedules that will enable and disable it.
+ *
+ * <p>The days of the week of the schedules are cycling through all 128 bitmasks, including the
+ * empty (non-repeating) one, so that every possible combination is exercised.
+ */
+final class SyntheticSchedules {
+    /** The total number of possible days of the week bitmasks. */
+    static final int BITMASK_COUNT = DaysOfWeekBits.COMBINATION_COUNT;
+
+    /** The date-time of the last activation of each subscription. */
+    final LocalDateTime[] lastActivatedTimes;
+
+    /** The date-time of the last deactivation of each subscription. */
+    final LocalDateTime[] lastDeactivatedTimes;
+
+    /** The enabled state of each subscription. */
+    final boolean[] simEnabledStates;
+
+    /** The days of the week bits of the schedules enabling each subscription. */
+    final int[][] enableBits;
+
+    /** The time of the schedules enabling each subscription. */
+    final LocalTime[][] enableTimes;
+
+    /** The days of the week bits of the schedules disabling each subscription. */
+    final int[][] disableBits;
+
+    /** The time of the schedules disabling each subscription. */
+    final LocalTime[][] disableTimes;
+
+    /**
+     * @param subCount The number of subscriptions to generate.
+     * @param schedulesPerSub The number of schedules per subscription and target state.
+     * @param compareTime The date-time used as a reference for the last (de)activation times.
+     */
+    SyntheticSchedules(final int subCount, final int schedulesPerSub,
+            final LocalDateTime compareTime) {
+
+        final Random random = new Random(7L);
+
+        lastActivatedTimes = new LocalDateTime[subCount];
+        lastDeactivatedTimes = new LocalDateTime[subCount];
+        simEnabledStates = new boolean[subCount];
+        enableBits = new int[subCount][schedulesPerSub];
+        enableTimes = new LocalTime[subCount][schedulesPerSub];
+        disableBits = new int[subCount][schedulesPerSub];
+        disableTimes = new LocalTime[subCount][schedulesPerSub];
+
+        int bits = 0;
+        for (int i = 0; i < subCount; i++) {
+            lastActivatedTimes[i] = compareTime.minusMinutes(random.nextInt(7 * 24 * 60));
+            lastDeactivatedTimes[i] = compareTime.minusMinutes(random.nextInt(7 * 24 * 60));
+            simEnabledStates[i] = random.nextBoolean();
+            for (int j = 0; j < schedulesPerSub; j++) {
+                enableBits[i][j] = bits++ % BITMASK_COUNT;
+                enableTimes[i][j] = LocalTime.of(random.nextInt(24), random.nextInt(60));
+                disableBits[i][j] = bits++ % BITMASK_COUNT;
+                disableTimes[i][j] = LocalTime.of(random.nextInt(24), random.nextInt(60));
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.iusmac.sevensim.engine;
+
+import androidx.annotation.NonNull;
+
+import java.time.LocalDateTime;
+import java.time.temporal.WeekFields;
+import java.util.OptionalInt;
+
+/**
+ * <p>This class provides the bit math behind the encoded form of a weekly repeat cycle, where
+ * each day of the week is represented by a single bit, from Sunday (lowest bit) to Saturday.
+ *
+ * <p>Days of the week are Sunday-based integers from 1 to 7, i.e., the same values as
+ * {@link java.util.Calendar#SUNDAY} to {@link java.util.Calendar#SATURDAY}.
+ *
+ * <p>This class has no Android dependencies, and is safe to be used on a plain JVM.
+ */
+public final class DaysOfWeekBits {
+    /** The Sunday-based value of the first day of the week. */
+    public static final int SUNDAY = 1;
+
+    /** The Sunday-based value of the last day of the week. */
+    public static final int SATURDAY = 7;
+
+    /** The sum of all days of the week bit masks. */
+    public static final int ALL_DAYS_OF_WEEK_BITS = 0x7f;
+
+    /**
+     * The one-based array mapping days of the week from {@link #SUNDAY} (index 1) to
+     * {@link #SATURDAY} (index 7) to the bit masks.
+     */
+    private static final int[] DAYS_OF_WEEK_BITS = new int[] {
+        0, 1<<0, 1<<1, 1<<2, 1<<3, 1<<4, 1<<5, 1<<6
+    };
+
+    /** The total number of possible encoded weekly repeat cycles. */
+    public static final int COMBINATION_COUNT = ALL_DAYS_OF_WEEK_BITS + 1;
+
+    /** The shared instances of all possible distances between two days of the week. */
+    private static final OptionalInt[] DISTANCES = new OptionalInt[] {
+        OptionalInt.of(0), OptionalInt.of(1), OptionalInt.of(2), OptionalInt.of(3),
+        OptionalInt.of(4), OptionalInt.of(5), OptionalInt.of(6), OptionalInt.of(7)
+    };
+
+    /**
+     * The precomputed results of {@link #getDistanceToPreviousDayOfWeek(int,int)} indexed by the
+     * encoded weekly repeat cycle and the one-based day of the week.
+     */
+    private static final OptionalInt[][] PREVIOUS_DISTANCES =
+        new OptionalInt[COMBINATION_COUNT][SATURDAY + 1];
+
+    /**
+     * The precomputed results of {@link #getDistanceToNextDayOfWeek(int,int)} indexed by the
+     * encoded weekly repeat cycle and the one-based day of the week.
+     */
+    private static final OptionalInt[][] NEXT_DISTANCES =
+        new OptionalInt[COMBINATION_COUNT][SATURDAY + 1];
+
+    static {
+        for (int bits = 0; bits < COMBINATION_COUNT; bits++) {
+            for (int dayOfWeek = SUNDAY; dayOfWeek <= SATURDAY; dayOfWeek++) {
+                PREVIOUS_DISTANCES[bits][dayOfWeek] =
+                    computeDistanceToPreviousDayOfWeek(bits, dayOfWeek);
+                NEXT_DISTANCES[bits][dayOfWeek] = computeDistanceToNextDayOfWeek(bits, dayOfWeek);
+            }
+        }
+    }
+
+    /**
+     * @param daysOfWeek Any or all of the Sunday-based days of the week values.
+     * @return The days of the week encoded in bits.
+     */
+    public static int convertDaysOfWeekToBits(final int... daysOfWeek) {
+        int bits = 0;
+        for (int dayOfWeek : daysOfWeek) {
+            bits |= DAYS_OF_WEEK_BITS[dayOfWeek];
+        }
+        return bits;
+    }
+
+    /**
+     * @param bits The encoded weekly repeat cycle.
+     * @param dayOfWeek The Sunday-based day of the week value.
+     * @return {@code true} if the given day of the week is on, {@code false} otherwise.
+     */
+    public static boolean isBitOn(final int bits, final int dayOfWeek) {
+        return (bits & DAYS_OF_WEEK_BITS[dayOfWeek]) > 0;
+    }
+
+    /**
+     * @param bits The encoded weekly repeat cycle.
+     * @return The total number of days of the week enabled in the weekly repeat cycle.
+     */
+    public static int getCount(final int bits) {
+        return Integer.bitCount(bits & ALL_DAYS_OF_WEEK_BITS);
+    }
+
+    /**
+     * Get the distance between the previous day of the week represented by the weekly repeat cycle
+     * and the given day of the week, which is always between 1 and 7 inclusive.
+     *
+     * @param bits The encoded weekly repeat cycle.
+     * @param compareDayOfWeek The Sunday-based day of the week to compare against.
+     * @return An Optional containing the number of days between the given day of the week and the
+     * previous enabled day of the week, if any.
+     */
+    public static OptionalInt getDistanceToPreviousDayOfWeek(final int bits,
+            final int compareDayOfWeek) {
+
+        return PREVIOUS_DISTANCES[bits & ALL_DAYS_OF_WEEK_BITS][compareDayOfWeek];
+    }
+
+    /**
+     * Get the distance between the next day of the week represented by the weekly repeat cycle and
+     * the given day of the week, which is always between 0 and 6 inclusive.
+     *
+     * @param bits The encoded weekly repeat cycle.
+     * @param compareDayOfWeek The Sunday-based day of the week to compare against.
+     * @return An Optional containing the number of days between the given day of the week and the
+     * next enabled day of the week, if any.
+     */
+    public static OptionalInt getDistanceToNextDayOfWeek(final int bits,
+            final int compareDayOfWeek) {
+
+        return NEXT_DISTANCES[bits & ALL_DAYS_OF_WEEK_BITS][compareDayOfWeek];
+    }
+
+    /**
+     * Like {@link #getDistanceToPreviousDayOfWeek(int,int)}, but walk the days of the week.
+     */
+    private static OptionalInt computeDistanceToPreviousDayOfWeek(final int bits,
+            final int compareDayOfWeek) {
+
+        if (bits == 0) {
+            return OptionalInt.empty();
+        }
+
+        int count = 1, previousDayOfWeek = compareDayOfWeek;
+        do {
+            previousDayOfWeek--;
+            if (previousDayOfWeek < SUNDAY) {
+                previousDayOfWeek = SATURDAY;
+            }
+            if (isBitOn(bits, previousDayOfWeek)) {
+                return DISTANCES[count];
+            }
+        } while (count++ < 7);
+
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Like {@link #getDistanceToNextDayOfWeek(int,int)}, but walk the days of the week.
+     */
+    private static OptionalInt computeDistanceToNextDayOfWeek(final int bits,
+            final int compareDayOfWeek) {
+
+        if (bits == 0) {
+            return OptionalInt.empty();
+        }
+
+        int count = 0, nextDayOfWeek = compareDayOfWeek;
+        do {
+            if (isBitOn(bits, nextDayOfWeek)) {
+                return DISTANCES[count];
+            }
+            nextDayOfWeek++;
+            if (nextDayOfWeek > SATURDAY) {
+                nextDayOfWeek = SUNDAY;
+            }
+        } while (++count < 7);
+
+        return OptionalInt.empty();
+    }
+
+    /**
+     * @param ldt The date-time to get the corresponding day of the week value from.
+     * @return The Sunday-based day of the week value.
+     */
+    public static int getDayOfWeekFrom(final @NonNull LocalDateTime ldt) {
+        return ldt.get(WeekFields.SUNDAY_START.dayOfWeek());
+    }
+
+    /** Do not initialize. */
+    private DaysOfWeekBits() {}
+}
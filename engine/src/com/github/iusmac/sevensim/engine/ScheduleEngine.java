@@ -0,0 +1,151 @@
+package com.github.iusmac.sevensim.engine;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Optional;
+
+/**
+ * <p>This class holds the decision logic used to evaluate SIM subscription weekly repeat schedules,
+ * i.e., when a schedule occurs relative to a given date-time, and which enabled state a SIM
+ * subscription is expected to be in.
+ *
+ * <p>All methods operate on plain values, and have no Android dependencies, so that they are safe
+ * to be used on a plain JVM.
+ */
+public final class ScheduleEngine {
+    /**
+     * Get the first date-time of a weekly repeat schedule that occurs on or before the provided
+     * date-time.
+     *
+     * @param daysOfWeekBits The encoded days of the week of the schedule.
+     * @param time The time of the schedule as seen on a wall clock.
+     * @param compareTime The date-time object to compare against.
+     * @return An Optional containing the date-time object if the provided schedule is repeating.
+     */
+    public static Optional<LocalDateTime> getDateTimeBefore(final int daysOfWeekBits,
+            final @NonNull LocalTime time, final @NonNull LocalDateTime compareTime) {
+
+        if ((daysOfWeekBits & DaysOfWeekBits.ALL_DAYS_OF_WEEK_BITS) == 0) {
+            return Optional.empty();
+        }
+
+        final int compareDayOfWeek = DaysOfWeekBits.getDayOfWeekFrom(compareTime);
+        final int distanceToPreviousDay;
+        // Check if the schedule is occurring on the same day
+        if (DaysOfWeekBits.isBitOn(daysOfWeekBits, compareDayOfWeek) &&
+                !time.isAfter(compareTime.toLocalTime())) {
+            distanceToPreviousDay = 0;
+        } else {
+            // Start seeking from the previous day of the week when there's no schedule occurring on
+            // the same day
+            distanceToPreviousDay = DaysOfWeekBits
+                .getDistanceToPreviousDayOfWeek(daysOfWeekBits, compareDayOfWeek)
+                .getAsInt();
+        }
+        return Optional.of(compareTime.minusDays(distanceToPreviousDay)
+                .withHour(time.getHour()).withMinute(time.getMinute()));
+    }
+
+    /**
+     * Get the first date-time of a weekly repeat schedule that occurs on or after the provided
+     * date-time.
+     *
+     * @param daysOfWeekBits The encoded days of the week of the schedule.
+     * @param time The time of the schedule as seen on a wall clock.
+     * @param compareTime The date-time object to compare against.
+     * @return An Optional containing the date-time object if the provided schedule is repeating.
+     */
+    public static Optional<LocalDateTime> getDateTimeAfter(final int daysOfWeekBits,
+            final @NonNull LocalTime time, final @NonNull LocalDateTime compareTime) {
+
+        if ((daysOfWeekBits & DaysOfWeekBits.ALL_DAYS_OF_WEEK_BITS) == 0) {
+            return Optional.empty();
+        }
+
+        int compareDayOfWeek = DaysOfWeekBits.getDayOfWeekFrom(compareTime);
+        final int distanceToNextDay;
+        // Check if the schedule is occurring on the same day
+        if (DaysOfWeekBits.isBitOn(daysOfWeekBits, compareDayOfWeek) &&
+                !time.isBefore(compareTime.toLocalTime())) {
+            distanceToNextDay = 0;
+        } else {
+            compareDayOfWeek++; // skip the current day
+            if (compareDayOfWeek > DaysOfWeekBits.SATURDAY) {
+                compareDayOfWeek = DaysOfWeekBits.SUNDAY;
+            }
+            // Start seeking from the next day of the week when there's no schedule occurring on the
+            // same day
+            distanceToNextDay = DaysOfWeekBits
+                .getDistanceToNextDayOfWeek(daysOfWeekBits, compareDayOfWeek)
+                .getAsInt() + 1;
+        }
+        return Optional.of(compareTime.plusDays(distanceToNextDay)
+                .withHour(time.getHour()).withMinute(time.getMinute()));
+    }
+
+    /**
+     * Determine the expected SIM subscription enabled state using a closed interval
+     * ({@code a<=x<=b}) of two opposite schedules.
+     *
+     * @param simEnabled Whether the SIM subscription is currently enabled.
+     * @param lastActivatedTime The date-time when the SIM subscription was last enabled.
+     * @param lastDeactivatedTime The date-time when the SIM subscription was last disabled.
+     * @param keepDisabledAcrossBoots Whether the SIM subscription should stay disabled across
+     * boots, or {@code null} if unknown.
+     * @param startDateTime The interval start date-time value. This is expected to be date-time of
+     * the weekly repeat schedule, if any, that should enable the SIM subscription.
+     * @param endDateTime The interval end date-time value. This is expected to be the date-time of
+     * the weekly repeat schedule, if any, that should disable the SIM subscription.
+     * @param overrideUserPreference Whether the user's preference should NOT take precedence over
+     * schedule intervals. For instance, if the SIM subscription is expected to be disabled, but the
+     * user enabled it manually, then pass {@code false} to keep the state within the allowed
+     * period. Note that, when passed in {@code true}, an opened interval ({@code a<x<b}) will be
+     * used instead for comparison.
+     * @return {@code true} if the SIM subscription is expected to be enabled, {@code false}
+     * otherwise.
+     */
+    public static boolean getExpectedEnabledState(final boolean simEnabled,
+            final @NonNull LocalDateTime lastActivatedTime,
+            final @NonNull LocalDateTime lastDeactivatedTime,
+            final @Nullable Boolean keepDisabledAcrossBoots,
+            final @NonNull Optional<LocalDateTime> startDateTime,
+            final @NonNull Optional<LocalDateTime> endDateTime,
+            final boolean overrideUserPreference) {
+
+        if (simEnabled) {
+            return endDateTime.map((end) -> {
+                if (!overrideUserPreference && !lastActivatedTime.isBefore(end)) {
+                    return true;
+                }
+
+                // Note that, as per TelephonyController specs, turning off a SIM card on a device
+                // using legacy RIL won't persist across boots. On reboot, SIM will turn on
+                // normally, but the user may want it to be turned off until turned on again
+                // manually or through a weekly repeat schedule, if any
+                final boolean keepDisabledAcrossBoots2 =
+                    Optional.ofNullable(keepDisabledAcrossBoots).orElse(false);
+
+                return startDateTime.map((start) -> start.isAfter(end) &&
+                        lastDeactivatedTime.isBefore(start) &&
+                        !keepDisabledAcrossBoots2).orElse(false);
+            }).orElseGet(() -> {
+                return Optional.ofNullable(keepDisabledAcrossBoots).filter((v) -> v)
+                    .map((v) -> startDateTime.map((start) ->
+                            lastDeactivatedTime.isBefore(start)).orElse(false))
+                    .orElse(true);
+            });
+        }
+        return startDateTime.map((start) -> {
+            if (!overrideUserPreference && !lastDeactivatedTime.isBefore(start)) {
+                return false;
+            }
+            return endDateTime.map((end) -> end.isBefore(start)).orElse(true);
+        }).orElse(false);
+    }
+
+    /** Do not initialize. */
+    private ScheduleEngine() {}
+}
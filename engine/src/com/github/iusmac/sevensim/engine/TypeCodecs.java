@@ -0,0 +1,75 @@
+package com.github.iusmac.sevensim.engine;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * This class holds the conversions between the date-time objects and the primitive forms in which
+ * they are persisted.
+ */
+public final class TypeCodecs {
+    /**
+     * @param dateTime The ISO-8601 date-time string. The offset and the zone, if any, are ignored,
+     * i.e. the date-time is kept as seen on a wall clock.
+     * @return The date-time object, or {@code null} if the string is {@code null} or malformed.
+     */
+    public static @Nullable LocalDateTime parseLocalDateTime(final @Nullable String dateTime) {
+        try {
+            if (dateTime != null) {
+                return LocalDateTime.parse(dateTime, DateTimeFormatter.ISO_DATE_TIME);
+            }
+        } catch (DateTimeParseException ignored) {}
+        return null;
+    }
+
+    /**
+     * @param ldt The date-time object.
+     * @return The ISO-8601 date-time string.
+     */
+    public static @NonNull String formatLocalDateTime(final @NonNull LocalDateTime ldt) {
+        return ldt.toString();
+    }
+
+    /**
+     * @param epochMinutes The number of minutes elapsed since 1970-01-01T00:00 as seen on a wall
+     * clock, i.e. regardless of the time zone.
+     * @return The date-time object.
+     */
+    public static @NonNull LocalDateTime fromEpochMinutes(final long epochMinutes) {
+        return LocalDateTime.ofEpochSecond(epochMinutes * 60, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * @param ldt The date-time object. The seconds and the nanoseconds are truncated.
+     * @return The number of minutes elapsed since 1970-01-01T00:00 as seen on a wall clock, i.e.
+     * regardless of the time zone.
+     */
+    public static long toEpochMinutes(final @NonNull LocalDateTime ldt) {
+        return Math.floorDiv(ldt.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * @param minutesSinceMidnight The number of minutes elapsed since midnight.
+     * @return The time as seen on a wall clock.
+     */
+    public static @NonNull LocalTime fromMinutesSinceMidnight(final int minutesSinceMidnight) {
+        return LocalTime.of(minutesSinceMidnight / 60, minutesSinceMidnight % 60);
+    }
+
+    /**
+     * @param time The time as seen on a wall clock.
+     * @return The number of minutes elapsed since midnight.
+     */
+    public static int toMinutesSinceMidnight(final @NonNull LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    /** Do not initialize. */
+    private TypeCodecs() {}
+}
@@ -0,0 +1,168 @@
+package com.github.iusmac.sevensim.engine;
+
+import androidx.annotation.NonNull;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>This class holds the transitions of a set of weekly repeat schedules, i.e., the minutes of
+ * the week at which each schedule occurs, kept sorted, so that the nearest schedule that occurs on
+ * or before/after a given date-time can be resolved using a binary search.
+ *
+ * <p>This class is <strong>immutable</strong>, thus also <strong>thread-safe</strong>, and has no
+ * Android dependencies, so that it is safe to be used on a plain JVM.
+ *
+ * @param <T> The type of the schedules.
+ */
+public final class WeeklyTransitions<T> {
+    /** The total number of minutes in a day. */
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** The sorted minutes of the week of the transitions. */
+    private final int[] mMinutes;
+
+    /** The schedules the transitions were unfolded from, at the same positions as the minutes. */
+    private final Object[] mSchedules;
+
+    private WeeklyTransitions(final int[] minutes, final Object[] schedules) {
+        mMinutes = minutes;
+        mSchedules = schedules;
+    }
+
+    /**
+     * Find the schedule that occurs on or before the given date-time, wrapping around to the
+     * previous week if needed.
+     *
+     * @param dateTime The date-time object used for finding the nearest schedule.
+     * @return An Optional containing the schedule, if any.
+     */
+    public @NonNull Optional<T> findNearestBefore(final @NonNull LocalDateTime dateTime) {
+        if (mMinutes.length == 0) {
+            return Optional.empty();
+        }
+        int i = Arrays.binarySearch(mMinutes, getMinuteOfWeek(dateTime));
+        if (i < 0) {
+            // Not an exact match, so take the element right before the insertion point
+            i = -i - 2;
+            if (i < 0) {
+                i = mMinutes.length - 1;
+            }
+        }
+        return Optional.of(getSchedule(i));
+    }
+
+    /**
+     * Find the schedule that occurs on or after the given date-time, wrapping around to the next
+     * week if needed.
+     *
+     * @param dateTime The date-time object used for finding the nearest schedule.
+     * @return An Optional containing the schedule, if any.
+     */
+    public @NonNull Optional<T> findNearestAfter(final @NonNull LocalDateTime dateTime) {
+        if (mMinutes.length == 0) {
+            return Optional.empty();
+        }
+        int i = Arrays.binarySearch(mMinutes, getMinuteOfWeek(dateTime));
+        if (i < 0) {
+            // Not an exact match, so take the element at the insertion point
+            i = -i - 1;
+            if (i == mMinutes.length) {
+                i = 0;
+            }
+        }
+        return Optional.of(getSchedule(i));
+    }
+
+    @SuppressWarnings("unchecked")
+    private T getSchedule(final int i) {
+        return (T) mSchedules[i];
+    }
+
+    /**
+     * @param dateTime The date-time to get the minute of the week from.
+     * @return The number of minutes elapsed since Sunday midnight.
+     */
+    public static int getMinuteOfWeek(final @NonNull LocalDateTime dateTime) {
+        return getMinuteOfWeek(DaysOfWeekBits.getDayOfWeekFrom(dateTime),
+                TypeCodecs.toMinutesSinceMidnight(dateTime.toLocalTime()));
+    }
+
+    /**
+     * @param dayOfWeek The Sunday-based day of the week value.
+     * @param minutesSinceMidnight The number of minutes elapsed since midnight.
+     * @return The number of minutes elapsed since Sunday midnight.
+     */
+    private static int getMinuteOfWeek(final int dayOfWeek, final int minutesSinceMidnight) {
+        return (dayOfWeek - DaysOfWeekBits.SUNDAY) * MINUTES_PER_DAY + minutesSinceMidnight;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(mMinutes);
+    }
+
+    /**
+     * The builder unfolding the weekly repeat schedules into their transitions.
+     *
+     * @param <T> The type of the schedules.
+     */
+    public static final class Builder<T> {
+        private final List<Transition<T>> mTransitions = new ArrayList<>();
+
+        /**
+         * Add a transition for each day of the week the schedule occurs on. A non-repeating
+         * schedule has no transitions.
+         *
+         * @param daysOfWeekBits The encoded days of the week of the schedule.
+         * @param time The time of the schedule as seen on a wall clock.
+         * @param schedule The schedule to resolve when looking up its transitions.
+         * @return This builder.
+         */
+        public @NonNull Builder<T> add(final int daysOfWeekBits, final @NonNull LocalTime time,
+                final @NonNull T schedule) {
+
+            final int minutesSinceMidnight = TypeCodecs.toMinutesSinceMidnight(time);
+            for (int dayOfWeek = DaysOfWeekBits.SUNDAY; dayOfWeek <= DaysOfWeekBits.SATURDAY;
+                    dayOfWeek++) {
+                if (DaysOfWeekBits.isBitOn(daysOfWeekBits, dayOfWeek)) {
+                    mTransitions.add(new Transition<>(getMinuteOfWeek(dayOfWeek,
+                                    minutesSinceMidnight), schedule));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @return The transitions of all added schedules.
+         */
+        public @NonNull WeeklyTransitions<T> build() {
+            mTransitions.sort(Comparator.comparingInt((transition) -> transition.minuteOfWeek));
+
+            final int size = mTransitions.size();
+            final int[] minutes = new int[size];
+            final Object[] schedules = new Object[size];
+            for (int i = 0; i < size; i++) {
+                minutes[i] = mTransitions.get(i).minuteOfWeek;
+                schedules[i] = mTransitions.get(i).schedule;
+            }
+            return new WeeklyTransitions<>(minutes, schedules);
+        }
+    }
+
+    /** A helper class holding a single transition used only when building. */
+    private static final class Transition<T> {
+        final int minuteOfWeek;
+        final T schedule;
+
+        Transition(final int minuteOfWeek, final T schedule) {
+            this.minuteOfWeek = minuteOfWeek;
+            this.schedule = schedule;
+        }
+    }
+}
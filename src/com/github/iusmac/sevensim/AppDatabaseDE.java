@@ -1,24 +1,80 @@
 package com.github.iusmac.sevensim;
 
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.github.iusmac.sevensim.engine.TypeCodecs;
 import com.github.iusmac.sevensim.scheduler.SubscriptionScheduleEntity;
 import com.github.iusmac.sevensim.scheduler.SubscriptionSchedulesDao;
 import com.github.iusmac.sevensim.telephony.Subscription;
 import com.github.iusmac.sevensim.telephony.SubscriptionsDao;
 
+import java.time.LocalDateTime;
+
 /**
  * Application database located in the DE (device encrypted) storage.
  */
 @Database(
     entities = {Subscription.class, SubscriptionScheduleEntity.class},
-    exportSchema = false,
-    version = 1
+    exportSchema = true,
+    version = 2
 )
 @TypeConverters({RoomTypeConverters.class})
 public abstract class AppDatabaseDE extends RoomDatabase {
     public abstract SubscriptionsDao subscriptionsDao();
     public abstract SubscriptionSchedulesDao subscriptionSchedulerDao();
+
+    /**
+     * Convert the {@code lastActivatedTime} and {@code lastDeactivatedTime} columns of the
+     * {@code subscriptions} table from ISO-8601 date-time strings to epoch minutes. SQLite cannot
+     * change the column type in place, so the table is rebuilt.
+     */
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(final @NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE `subscriptions_new` (`id` INTEGER NOT NULL, "
+                    + "`lastActivatedTime` INTEGER, `lastDeactivatedTime` INTEGER, "
+                    + "`keepDisabledAcrossBoots` INTEGER, PRIMARY KEY(`id`))");
+
+            try (Cursor cursor = db.query("SELECT `id`, `lastActivatedTime`, "
+                        + "`lastDeactivatedTime`, `keepDisabledAcrossBoots` "
+                        + "FROM `subscriptions`")) {
+                final ContentValues values = new ContentValues(4);
+                while (cursor.moveToNext()) {
+                    values.clear();
+                    values.put("id", cursor.getInt(0));
+                    values.put("lastActivatedTime", toEpochMinutes(cursor.getString(1)));
+                    values.put("lastDeactivatedTime", toEpochMinutes(cursor.getString(2)));
+                    values.put("keepDisabledAcrossBoots",
+                            cursor.isNull(3) ? null : cursor.getInt(3));
+                    db.insert("subscriptions_new", SQLiteDatabase.CONFLICT_REPLACE, values);
+                }
+            }
+
+            db.execSQL("DROP TABLE `subscriptions`");
+            db.execSQL("ALTER TABLE `subscriptions_new` RENAME TO `subscriptions`");
+        }
+
+        /**
+         * @param dateTime The ISO-8601 date-time string.
+         * @return The epoch minutes, or {@code null} if the string is {@code null} or malformed.
+         */
+        private Long toEpochMinutes(final String dateTime) {
+            final LocalDateTime ldt = TypeCodecs.parseLocalDateTime(dateTime);
+            return ldt == null ? null : TypeCodecs.toEpochMinutes(ldt);
+        }
+    };
+
+    /** All manual migrations, from the oldest to the newest schema version. */
+    public static final Migration[] MIGRATIONS = {
+        MIGRATION_1_2
+    };
 }
@@ -0,0 +1,101 @@
+package com.github.iusmac.sevensim;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import dagger.Lazy;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * <p>This class opens the {@link AppDatabaseDE} in the background as soon as the process is
+ * started by a broadcast, so that the first query made by the scheduler doesn't pay for opening
+ * the database file, validating the schema and reading the first pages inside the wake lock
+ * window.
+ *
+ * <p>The database is pre-warmed at most once per process. The time elapsed since the process
+ * start and the time spent opening the database are recorded in the {@link Diagnostics}.
+ *
+ * <p>This class is <strong>thread-safe</strong>.
+ */
+@Singleton
+public final class AppDatabasePrewarmer {
+    private final Logger mLogger;
+    private final Lazy<AppDatabaseDE> mAppDatabaseDELazy;
+    private final Diagnostics mDiagnostics;
+
+    private final AtomicBoolean mIsPrewarmRequested = new AtomicBoolean();
+
+    @Inject
+    public AppDatabasePrewarmer(final Logger.Factory loggerFactory,
+            final Lazy<AppDatabaseDE> appDatabaseDELazy, final Diagnostics diagnostics) {
+
+        mLogger = loggerFactory.create(getClass().getSimpleName());
+        mAppDatabaseDELazy = appDatabaseDELazy;
+        mDiagnostics = diagnostics;
+    }
+
+    /**
+     * Open the database in the background, unless already done since the process started.
+     */
+    public void prewarm() {
+        if (!mIsPrewarmRequested.compareAndSet(false, true)) {
+            return;
+        }
+
+        final long processStartDelayMillis = SystemClock.elapsedRealtime() -
+            Process.getStartElapsedRealtime();
+        mDiagnostics.record("process_start_to_db_prewarm_ms", processStartDelayMillis);
+
+        mLogger.d("prewarm() : processStartDelayMillis=%d.", processStartDelayMillis);
+
+        AsyncHandler.post(this::prewarmInternal);
+    }
+
+    private void prewarmInternal() {
+        final long startTime = SystemClock.elapsedRealtime();
+        Trace.beginSection("AppDatabasePrewarmer#prewarm");
+        try {
+            final AppDatabaseDE db = mAppDatabaseDELazy.get();
+            // Opening the database validates the schema and runs the pending migrations, if any
+            db.getOpenHelper().getWritableDatabase();
+            final long openedTime = SystemClock.elapsedRealtime();
+            mDiagnostics.record("db_de_open_ms", openedTime - startTime);
+
+            // Pull the table and index pages read on each alarm into the page cache
+            db.subscriptionSchedulerDao().getCount();
+            db.subscriptionsDao().loadAll();
+            mDiagnostics.record("db_de_prewarm_ms", SystemClock.elapsedRealtime() - startTime);
+
+            mLogger.d("prewarmInternal() : openMillis=%d,totalMillis=%d.", openedTime - startTime,
+                    SystemClock.elapsedRealtime() - startTime);
+        } catch (RuntimeException e) {
+            // The scheduler will retry opening the database on its first query
+            mLogger.e("prewarmInternal() : Failed to open the database.", e);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private static class AsyncHandler {
+        static final Handler sHandler;
+
+        static {
+            final HandlerThread handlerThread = new HandlerThread(
+                    AppDatabasePrewarmer.class.getSimpleName() + "Thread",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            handlerThread.start();
+            sHandler = Handler.createAsync(handlerThread.getLooper());
+        }
+
+        static void post(final Runnable r) {
+            sHandler.post(r);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.iusmac.sevensim;
 
 import android.content.Context;
+import android.content.Intent;
 import android.icu.text.RelativeDateTimeFormatter;
 import android.icu.util.TimeZone;
 import android.text.format.DateFormat;
@@ -12,8 +13,8 @@ import androidx.annotation.Nullable;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeParseException;
 import java.util.Calendar;
 import java.util.Formatter;
 import java.util.Locale;
@@ -24,18 +25,36 @@ public final class DateTimeUtils {
     private static final int EPOCH_JULIAN_DAY = 2440588;
 
     /**
-     * Obtain an instance of {@link LocalDateTime} from a text representation of date-time string.
+     * Store a {@link LocalDateTime} as epoch seconds in the intent extras, so that it can be read
+     * back without any string parsing. Unlike the persisted date-times, the seconds are preserved,
+     * so that the receiver sees the same compare time as the sender.
      *
-     * @param dateTime The date-time as text such as 2007-12-03T10:15:30.
-     * @return An Optional containing the date-time object, if it can be parsed.
+     * @param intent The intent to add the extra to.
+     * @param name The name of the extra.
+     * @param dateTime The date-time to store. The nanoseconds are truncated.
      */
-    public static Optional<LocalDateTime> parseDateTime(final @Nullable String dateTime) {
-        try {
-            if (dateTime != null) {
-                return Optional.of(LocalDateTime.parse(dateTime));
-            }
-        } catch (DateTimeParseException ignored) { }
-        return Optional.empty();
+    public static void putDateTimeExtra(final @NonNull Intent intent, final @NonNull String name,
+            final @NonNull LocalDateTime dateTime) {
+
+        intent.putExtra(name, dateTime.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /**
+     * Obtain an instance of {@link LocalDateTime} from the intent extras.
+     *
+     * @param intent The intent to read the extra from.
+     * @param name The name of the extra set via {@link #putDateTimeExtra(Intent,String,
+     * LocalDateTime)}.
+     * @return An Optional containing the date-time object, if the extra is present.
+     */
+    public static Optional<LocalDateTime> getDateTimeExtra(final @NonNull Intent intent,
+            final @NonNull String name) {
+
+        if (!intent.hasExtra(name)) {
+            return Optional.empty();
+        }
+        return Optional.of(LocalDateTime.ofEpochSecond(intent.getLongExtra(name, 0), 0,
+                    ZoneOffset.UTC));
     }
 
     /**
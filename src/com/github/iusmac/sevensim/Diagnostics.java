@@ -0,0 +1,127 @@
+package com.github.iusmac.sevensim;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * <p>This class is a process-wide registry of named counters and histograms that describe how the
+ * app behaves on a device, such as how late the alarms fire or how long the modem takes to respond.
+ * The registry is printed by the services via {@code adb shell dumpsys activity service}, so that
+ * there's no need to enable the debug logging to troubleshoot an issue.
+ *
+ * <p>Recording a value is lock-free and allocation-free once the metric exists, so the
+ * instrumentation is always enabled. The histograms use power-of-two buckets, which is precise
+ * enough to tell apart the typical values from the outliers.
+ *
+ * <p>This class is <strong>thread-safe</strong>.
+ */
+@Singleton
+public final class Diagnostics {
+    /** The number of power-of-two buckets needed to cover all non-negative long values. */
+    private static final int HISTOGRAM_BUCKET_COUNT = 64;
+
+    private final ConcurrentHashMap<String, AtomicLong> mCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> mHistograms = new ConcurrentHashMap<>();
+
+    @Inject
+    public Diagnostics() {}
+
+    /**
+     * Increment the named counter by one.
+     *
+     * @param name The name of the counter.
+     * @return The new value of the counter.
+     */
+    public long increment(final @NonNull String name) {
+        return mCounters.computeIfAbsent(name, (k) -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Add a value to the named histogram.
+     *
+     * @param name The name of the histogram, which should include the unit of the value, e.g.
+     * {@code _ms}.
+     * @param value The value to add. Negative values are accounted as zero.
+     */
+    public void record(final @NonNull String name, final long value) {
+        mHistograms.computeIfAbsent(name, (k) -> new Histogram()).record(Math.max(0, value));
+    }
+
+    /**
+     * Print all counters and histograms.
+     *
+     * @param pw The writer to print to.
+     */
+    public void dump(final @NonNull PrintWriter pw) {
+        pw.println("Diagnostics:");
+        pw.println("  Counters:");
+        for (final Map.Entry<String, AtomicLong> entry : new TreeMap<>(mCounters).entrySet()) {
+            pw.println("    " + entry.getKey() + "=" + entry.getValue().get());
+        }
+        pw.println("  Histograms:");
+        for (final Map.Entry<String, Histogram> entry : new TreeMap<>(mHistograms).entrySet()) {
+            pw.println("    " + entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    /** A histogram with power-of-two buckets, where the bucket N holds values in [2^(N-1),2^N). */
+    private static final class Histogram {
+        final AtomicLongArray mBuckets = new AtomicLongArray(HISTOGRAM_BUCKET_COUNT);
+        final AtomicLong mCount = new AtomicLong();
+        final AtomicLong mSum = new AtomicLong();
+        final AtomicLong mMax = new AtomicLong();
+
+        void record(final long value) {
+            mBuckets.incrementAndGet(Math.min(HISTOGRAM_BUCKET_COUNT - 1,
+                        Long.SIZE - Long.numberOfLeadingZeros(value)));
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+            mMax.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * @param percentile The percentile between 0 and 1.
+         * @return The upper bound of the bucket the percentile falls into.
+         */
+        long getPercentileUpperBound(final double percentile) {
+            final long target = (long) Math.ceil(mCount.get() * percentile);
+            long cumulative = 0;
+            for (int i = 0; i < HISTOGRAM_BUCKET_COUNT; i++) {
+                cumulative += mBuckets.get(i);
+                if (cumulative >= target) {
+                    return i == 0 ? 0 : Math.min(mMax.get(), (1L << i) - 1);
+                }
+            }
+            return mMax.get();
+        }
+
+        @Override
+        public String toString() {
+            final long count = mCount.get();
+            final StringBuilder builder = new StringBuilder()
+                .append("count=").append(count)
+                .append(" mean=").append(count > 0 ? mSum.get() / count : 0)
+                .append(" p50<=").append(getPercentileUpperBound(0.5d))
+                .append(" p95<=").append(getPercentileUpperBound(0.95d))
+                .append(" max=").append(mMax.get())
+                .append(" buckets={");
+            for (int i = 0; i < HISTOGRAM_BUCKET_COUNT; i++) {
+                final long bucketCount = mBuckets.get(i);
+                if (bucketCount > 0) {
+                    builder.append(" <").append(i == 0 ? 1 : 1L << i).append(':')
+                        .append(bucketCount);
+                }
+            }
+            return builder.append(" }").toString();
+        }
+    }
+}
@@ -25,15 +25,20 @@ public final class DirectBootAwareBroadcastReceiver extends Hilt_DirectBootAware
     @Inject
     Logger.Factory mLoggerFactory;
 
+    @Inject
+    AppDatabasePrewarmer mAppDatabasePrewarmer;
+
     private Logger mLogger;
 
     @Override
     public void onReceive(final Context context, final Intent intent) {
         super.onReceive(context, intent);
 
+        mAppDatabasePrewarmer.prewarm();
+
         mLogger = mLoggerFactory.create(getClass().getSimpleName());
 
-        mLogger.d("onReceive() : intent=" + intent);
+        mLogger.d("onReceive() : intent=%s.", intent);
 
         final LocalDateTime now = LocalDateTime.now();
         final String action = intent.getAction() != null ? intent.getAction() : "";
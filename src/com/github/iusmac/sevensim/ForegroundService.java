@@ -8,31 +8,38 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.PowerManager;
 import android.os.SystemClock;
-import android.os.PowerManager.WakeLock;
+import android.os.Trace;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 import android.os.UserHandle;
 
 import androidx.annotation.GuardedBy;
-import androidx.core.content.ContextCompat;
+import androidx.annotation.NonNull;
 
 import com.github.iusmac.sevensim.scheduler.SubscriptionScheduler;
 import com.github.iusmac.sevensim.telephony.PinEntity;
 import com.github.iusmac.sevensim.telephony.PinStorage;
 import com.github.iusmac.sevensim.telephony.SimPinFeeder;
+import com.github.iusmac.sevensim.telephony.SimTransitionJournal;
 import com.github.iusmac.sevensim.telephony.Subscriptions;
 
 import dagger.Lazy;
 import dagger.hilt.android.AndroidEntryPoint;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 
@@ -46,12 +53,15 @@ import javax.inject.Inject;
  */
 @AndroidEntryPoint(Service.class)
 public final class ForegroundService extends Hilt_ForegroundService {
-    /** The lock object to synchronize on when acquiring/releasing the {@link WakeLock}. */
+    /** The lock object to synchronize on when acquiring/releasing the wake lock. */
     private static final Object sWakeLockSyncLock = new Object();
 
-    /** The {@link WakeLock} to keep the system awake while this foreground service is running. */
-    @GuardedBy("sWakeLockSyncLock")
-    private static WakeLock sWakeLock;
+    /**
+     * The prefix of the wake lock names to keep the system awake while this service is running.
+     * Each action holds its own lease under {@code WAKE_LOCK_NAME:<action>}, so that the wake
+     * footprint can be accounted per action.
+     */
+    private static final String WAKE_LOCK_NAME = ForegroundService.class.getSimpleName();
 
     /**
      * Action to update the next weekly repeat schedule processing iteration to a different time.
@@ -81,6 +91,15 @@ public final class ForegroundService extends Hilt_ForegroundService {
      */
     private static final String ACTION_UNLOCK_SIM_CARDS = "ACTION_UNLOCK_SIM_CARDS";
 
+    /** All actions handled by this service. */
+    private static final String[] ACTIONS = {
+        ACTION_UPDATE_NEXT_WEEKLY_REPEAT_SCHEDULE_PROCESSING_ITER,
+        ACTION_SYNC_ALL_SUBSCRIPTIONS_ENABLED_STATE,
+        ACTION_SYNC_SUBSCRIPTION_ENABLED_STATE,
+        ACTION_SUBSCRIPTIONS_CHANGED,
+        ACTION_UNLOCK_SIM_CARDS,
+    };
+
     /** Key holding the stringified value of the {@link LocalDateTime} in the Intent's payload. */
     private static final String EXTRA_TIME_KEY = "time";
 
@@ -98,6 +117,12 @@ public final class ForegroundService extends Hilt_ForegroundService {
      * subscription ID. */
     private static final String EXTRA_CLEAR_PIN_CODES = "clear_pin_codes";
 
+    /**
+     * The dump argument to export the {@link SimTransitionJournal}, e.g.
+     * {@code adb shell dumpsys activity service .ForegroundService journal}.
+     */
+    private static final String DUMP_ARG_JOURNAL = "journal";
+
     /**
      * Indicates the waiting time, in milliseconds, after which this service should initiate an
      * immediate termination. A timeout of 3 minutes should be enough to complete all tasks and die
@@ -143,6 +168,15 @@ public final class ForegroundService extends Hilt_ForegroundService {
     @Inject
     SimPinFeeder.Factory mSimPinFeederFactory;
 
+    @Inject
+    Diagnostics mDiagnostics;
+
+    @Inject
+    WakeLockManager mWakeLockManager;
+
+    @Inject
+    Lazy<SimTransitionJournal> mSimTransitionJournalLazy;
+
     private Logger mLogger;
     private Worker mWorker;
 
@@ -152,7 +186,7 @@ public final class ForegroundService extends Hilt_ForegroundService {
 
         final Intent i = new Intent(ACTION_SYNC_ALL_SUBSCRIPTIONS_ENABLED_STATE);
         if (compareTime != null) {
-            i.putExtra(EXTRA_TIME_KEY, compareTime.toString());
+            DateTimeUtils.putDateTimeExtra(i, EXTRA_TIME_KEY, compareTime);
         }
         i.putExtra(EXTRA_OVERRIDE_USER_PREFERENCE, overrideUserPreference);
         startAction(context, i);
@@ -164,7 +198,7 @@ public final class ForegroundService extends Hilt_ForegroundService {
 
         final Intent i = new Intent(ACTION_SYNC_SUBSCRIPTION_ENABLED_STATE);
         if (compareTime != null) {
-            i.putExtra(EXTRA_TIME_KEY, compareTime.toString());
+            DateTimeUtils.putDateTimeExtra(i, EXTRA_TIME_KEY, compareTime);
         }
         i.putExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX, subId);
         i.putExtra(EXTRA_OVERRIDE_USER_PREFERENCE, overrideUserPreference);
@@ -181,7 +215,7 @@ public final class ForegroundService extends Hilt_ForegroundService {
 
         final Intent i = new Intent(ACTION_UPDATE_NEXT_WEEKLY_REPEAT_SCHEDULE_PROCESSING_ITER);
         if (compareTime != null) {
-            i.putExtra(EXTRA_TIME_KEY, compareTime.toString());
+            DateTimeUtils.putDateTimeExtra(i, EXTRA_TIME_KEY, compareTime);
         }
         i.putExtra(EXTRA_DECRYPT_PIN_STORAGE, decryptPinStorage);
         i.putExtra(EXTRA_CLEAR_PIN_CODES, clearPinCodes);
@@ -219,7 +253,7 @@ public final class ForegroundService extends Hilt_ForegroundService {
 
     public static void onSubscriptionsChanged(final Context context, final LocalDateTime dateTime) {
         final Intent i = new Intent(ACTION_SUBSCRIPTIONS_CHANGED);
-        i.putExtra(EXTRA_TIME_KEY, dateTime.toString());
+        DateTimeUtils.putDateTimeExtra(i, EXTRA_TIME_KEY, dateTime);
         startAction(context, i);
     }
 
@@ -270,16 +304,17 @@ public final class ForegroundService extends Hilt_ForegroundService {
             return START_NOT_STICKY;
         }
 
+        final String action = intent.getAction() != null ? intent.getAction() : "";
         if ((flags & (START_FLAG_RETRY | START_FLAG_REDELIVERY)) != 0) {
             synchronized (sWakeLockSyncLock) {
                 // Re-acquire wake lock if restarted
-                acquire(this);
+                acquire(mWakeLockManager, action);
                 updateServiceTimeout(SERVICE_STOP_AT_TIME_MS.getAsLong());
             }
         }
 
         final Optional<LocalDateTime> dateTime =
-            DateTimeUtils.parseDateTime(intent.getStringExtra(EXTRA_TIME_KEY));
+            DateTimeUtils.getDateTimeExtra(intent, EXTRA_TIME_KEY);
         final boolean overrideUserPreference =
             intent.getBooleanExtra(EXTRA_OVERRIDE_USER_PREFERENCE, false);
         final int subId = intent.getIntExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX,
@@ -287,10 +322,17 @@ public final class ForegroundService extends Hilt_ForegroundService {
         final Bundle clearPinCodes = intent.getBundleExtra(EXTRA_CLEAR_PIN_CODES);
         final boolean decryptPinStorage = intent.getBooleanExtra(EXTRA_DECRYPT_PIN_STORAGE, false);
 
-        final String action = intent.getAction() != null ? intent.getAction() : "";
         switch (action) {
             case ACTION_UPDATE_NEXT_WEEKLY_REPEAT_SCHEDULE_PROCESSING_ITER:
-                mWorker.execute(() -> dateTime.ifPresent((ldt) -> {
+                // Only the requests that don't carry SIM PIN codes can be merged, as they all
+                // produce the same outcome for the same compare time
+                if (dateTime.isPresent() && !decryptPinStorage && clearPinCodes == null) {
+                    mWorker.executeCoalescing(action, action, dateTime.get(), (ldt) ->
+                            mSubscriptionSchedulerLazy.get()
+                            .updateNextWeeklyRepeatScheduleProcessingIter(ldt, null), startId);
+                    break;
+                }
+                mWorker.execute(action, () -> dateTime.ifPresent((ldt) -> {
                     List<PinEntity> pinEntities = null;
                     if (decryptPinStorage || clearPinCodes != null) {
                         pinEntities = mPinStorageLazy.get().getPinEntities();
@@ -312,57 +354,62 @@ public final class ForegroundService extends Hilt_ForegroundService {
                 break;
 
             case ACTION_SYNC_ALL_SUBSCRIPTIONS_ENABLED_STATE:
-                mWorker.execute(() -> dateTime.ifPresent((ldt) -> mSubscriptionSchedulerLazy.get()
-                            .syncAllSubscriptionsEnabledState(ldt, overrideUserPreference)),
-                        startId);
+                if (dateTime.isPresent()) {
+                    mWorker.executeCoalescing(action, action + ':' + overrideUserPreference,
+                            dateTime.get(), (ldt) -> mSubscriptionSchedulerLazy.get()
+                            .syncAllSubscriptionsEnabledState(ldt, overrideUserPreference),
+                            startId);
+                } else {
+                    mWorker.execute(action, () -> {}, startId);
+                }
                 break;
 
             case ACTION_SYNC_SUBSCRIPTION_ENABLED_STATE:
-                mWorker.execute(() -> dateTime.ifPresent((ldt) -> {
-                    if (subId != SubscriptionManager.INVALID_SUBSCRIPTION_ID) {
-                        mSubscriptionSchedulerLazy.get().syncSubscriptionEnabledState(subId, ldt,
-                                overrideUserPreference);
-                    }
-                }), startId);
+                if (dateTime.isPresent() && subId != SubscriptionManager.INVALID_SUBSCRIPTION_ID) {
+                    mWorker.executeCoalescing(action,
+                            action + ':' + subId + ':' + overrideUserPreference, dateTime.get(),
+                            (ldt) -> mSubscriptionSchedulerLazy.get()
+                            .syncSubscriptionEnabledState(subId, ldt, overrideUserPreference),
+                            startId);
+                } else {
+                    mWorker.execute(action, () -> {}, startId);
+                }
                 break;
 
             case ACTION_SUBSCRIPTIONS_CHANGED:
-                mWorker.execute(() -> dateTime.ifPresent((ldt) ->
-                            mSubscriptionsLazy.get().syncSubscriptions(ldt)), startId);
+                if (dateTime.isPresent()) {
+                    mWorker.executeCoalescing(action, action, dateTime.get(), (ldt) ->
+                            mSubscriptionsLazy.get().syncSubscriptions(ldt), startId);
+                } else {
+                    mWorker.execute(action, () -> {}, startId);
+                }
                 break;
 
             case ACTION_UNLOCK_SIM_CARDS:
-                mWorker.execute(() -> {
-                    if (clearPinCodes != null) {
-                        final List<PinEntity> usablePinEntities = new ArrayList<>();
-                        for (final PinEntity pinEntity : mPinStorageLazy.get().getPinEntities()) {
-                            final String clearPin = clearPinCodes.getString(String.valueOf(
-                                        pinEntity.getSubscriptionId()));
-                            if (clearPin != null) {
-                                pinEntity.setClearPin(clearPin);
-                                usablePinEntities.add(pinEntity);
-                            }
-                        }
-                        final SimPinFeeder simPinFeeder =
-                            mSimPinFeederFactory.create(usablePinEntities);
-                        simPinFeeder.start();
-                        try {
-                            // Wait until the task is finished, otherwise the Worker will mark it as
-                            // completed on return, and, (potentially) terminate the service too
-                            // early in case it's the last task, or because of short-lived
-                            // tasks scheduled later. The lock isn't expected to last more than a
-                            // couple of seconds
-                            simPinFeeder.join();
-                        } catch (InterruptedException ignored) {
-                            // Worker is shutting down
-                            simPinFeeder.cancel();
+                // The SIM cards are unlocked asynchronously, so that the Worker is free to proceed
+                // with the other tasks in the meantime. Note that, the Worker won't mark this task
+                // as completed until the returned future completes, so the service won't be
+                // terminated too early
+                mWorker.executeAsync(action, () -> {
+                    if (clearPinCodes == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    final List<PinEntity> usablePinEntities = new ArrayList<>();
+                    for (final PinEntity pinEntity : mPinStorageLazy.get().getPinEntities()) {
+                        final String clearPin = clearPinCodes.getString(String.valueOf(
+                                    pinEntity.getSubscriptionId()));
+                        if (clearPin != null) {
+                            pinEntity.setClearPin(clearPin);
+                            usablePinEntities.add(pinEntity);
                         }
                     }
+                    return mSimPinFeederFactory.create(usablePinEntities).start();
                 }, startId);
                 break;
 
             default:
                 mLogger.e("onStartCommand() : Unhandled action=%s.", action);
+                mWakeLockManager.release(getWakeLockName(action));
         }
 
         if (mWorker.getQueueSize() == 0) {
@@ -385,8 +432,8 @@ public final class ForegroundService extends Hilt_ForegroundService {
             stopForeground(STOP_FOREGROUND_REMOVE);
         } finally {
             synchronized (sWakeLockSyncLock) {
-                if (sWakeLock != null && sWakeLock.isHeld()) {
-                    sWakeLock.release();
+                for (final String action : ACTIONS) {
+                    mWakeLockManager.releaseAll(getWakeLockName(action));
                 }
             }
         }
@@ -397,6 +444,21 @@ public final class ForegroundService extends Hilt_ForegroundService {
         return null;
     }
 
+    @Override
+    protected void dump(final FileDescriptor fd, final PrintWriter pw, final String[] args) {
+        pw.println("ForegroundService:");
+        pw.println("  mIsServiceTerminatedSafely=" + mIsServiceTerminatedSafely);
+        if (mWorker != null) {
+            mWorker.dump(pw);
+        }
+        mDiagnostics.dump(pw);
+        mWakeLockManager.dump(pw);
+        Logger.dump(pw);
+        if (Arrays.asList(args).contains(DUMP_ARG_JOURNAL)) {
+            mSimTransitionJournalLazy.get().dump(pw);
+        }
+    }
+
     /** Set the timeout to initiate an unsafe termination of this service at the stated time. */
     private void updateServiceTimeout(final long uptimeMillis) {
         getMainThreadHandler().removeCallbacksAndMessages(mServiceTimeoutToken);
@@ -418,42 +480,50 @@ public final class ForegroundService extends Hilt_ForegroundService {
      */
     private static void startAction(final Context context, Intent intent) {
         synchronized (sWakeLockSyncLock) {
-            // Hold wake lock to ensure that the service will start and operate till termination
-            acquire(context);
+            // Hold wake lock to ensure that the service will start and operate till the task of
+            // this action completes
+            final WakeLockManager wakeLockManager = WakeLockManager.getInstance(context);
+            acquire(wakeLockManager, intent.getAction());
             try {
                 intent = new Intent(intent);
                 intent.setClass(context, ForegroundService.class);
                 context.startForegroundServiceAsUser(intent, UserHandle.CURRENT);
             } catch (Exception e) {
-                sWakeLock.release();
+                wakeLockManager.release(getWakeLockName(intent.getAction()));
                 throw e;
             }
         }
     }
 
     /**
-     * <p>Helper function to acquire a partial wake lock that timeouts after the amount of time
-     * specified by {@link #SERVICE_TIMEOUT_MS_DEFAULT}.
+     * <p>Helper function to take a lease on the partial wake lock of the action that timeouts after
+     * the amount of time specified by {@link #SERVICE_TIMEOUT_MS_DEFAULT}.
      *
      * <p>You can call this function multiple times to re-acquire the wake lock, thus update the
-     * timeout; it won't increment reference counter.
+     * timeout; each lease will be released when the task of the action completes, and all the
+     * remaining ones when this service is destroyed.
+     *
+     * @param wakeLockManager The {@link WakeLockManager} to take the lease from.
+     * @param action The action to take the lease for.
      */
     @GuardedBy("sWakeLockSyncLock")
-    private static void acquire(final Context context) {
-        if (sWakeLock == null) {
-            final PowerManager pm = ContextCompat.getSystemService(context, PowerManager.class);
-            sWakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
-                    BuildConfig.APPLICATION_ID + ":" + ForegroundService.class.getSimpleName());
-            sWakeLock.setReferenceCounted(false);
-        }
+    private static void acquire(final WakeLockManager wakeLockManager, final String action) {
         // Make sure we don't indefinitely hold the wake lock under any circumstances. Note
         // that, for reliability, we add an extra time span of 30s to ensure that we don't fall
         // asleep along the way when terminating this service
-        sWakeLock.acquire(SERVICE_TIMEOUT_MS_DEFAULT + 30 * 1000L);
+        wakeLockManager.acquire(getWakeLockName(action), SERVICE_TIMEOUT_MS_DEFAULT + 30 * 1000L);
         SERVICE_STOP_AT_TIME_MS = OptionalLong.of(SystemClock.uptimeMillis() +
                 SERVICE_TIMEOUT_MS_DEFAULT);
     }
 
+    /**
+     * @param action The action to get the wake lock name for.
+     * @return The name of the wake lock held on behalf of the action.
+     */
+    private static String getWakeLockName(final String action) {
+        return WAKE_LOCK_NAME + ':' + action;
+    }
+
     /**
      * A simple worker that offloads work onto separate thread.
      */
@@ -469,33 +539,183 @@ public final class ForegroundService extends Hilt_ForegroundService {
 
         final AtomicInteger mQueueSize = new AtomicInteger();
 
+        /** The asynchronous tasks that are still in progress. */
+        @GuardedBy("this")
+        final List<CompletableFuture<?>> mAsyncTasks = new ArrayList<>();
+
+        /** The tracker of the queued tasks, used to merge duplicates and report completions. */
+        final TaskTracker mTaskTracker = new TaskTracker();
+
         /**
+         * @param name The action of the task. It will appear in the system traces, and its wake
+         * lock lease will be released on completion.
          * @param callback The task callback to offload onto separate thread.
          * @param taskId The task ID for which to call {@link #stopSelfResult(int)} on completion.
          */
-        void execute(final Runnable callback, final int taskId) {
-            mLogger.d("Worker.execute(taskId=%d) Add : mQueueSize=%d.", taskId,
-                    mQueueSize.getAndIncrement());
+        void execute(final String name, final Runnable callback, final int taskId) {
+            mTaskTracker.onTaskAdded(taskId);
+            mLogger.d("Worker.execute(name=%s,taskId=%d) Add : mQueueSize=%d.", name, taskId,
+                    onTaskAdded());
 
             mHandler.post(() -> {
-                mLogger.d("Worker.execute(taskId=%d) Start : mQueueSize=%d.", taskId,
-                        mQueueSize.get());
+                mLogger.d("Worker.execute(name=%s,taskId=%d) Start : mQueueSize=%d.", name,
+                        taskId, mQueueSize.get());
+
+                Trace.beginSection(getTraceSectionName(name));
+                try {
+                    callback.run();
+                } finally {
+                    Trace.endSection();
+                }
 
-                callback.run();
+                onTaskCompleted(name, Collections.singletonList(taskId));
+            });
+        }
 
-                mLogger.d("Worker.execute(taskId=%d) Finish : mQueueSize=%d.", taskId,
-                        mQueueSize.decrementAndGet());
+        /**
+         * Like {@link #execute(String,Runnable,int)}, but if a task with the same key is still
+         * pending anywhere in the queue, it will be merged into it instead of being queued, so that
+         * a burst of duplicate requests results in a single run, even if interleaved with other
+         * requests. The merged task will run with the newest of the compare times, see
+         * {@link TaskTracker}.
+         *
+         * @param name The action of the task. It will appear in the system traces, and its wake
+         * lock lease will be released on completion.
+         * @param key The key identifying tasks with the same semantics, i.e., the same action and
+         * parameters except for the compare time.
+         * @param compareTime The date-time to run the task for.
+         * @param callback The task callback to offload onto separate thread.
+         * @param taskId The task ID for which to call {@link #stopSelfResult(int)} on completion.
+         */
+        void executeCoalescing(final String name, final String key,
+                final LocalDateTime compareTime, final Consumer<LocalDateTime> callback,
+                final int taskId) {
+
+            final TaskTracker.CoalescingTask task =
+                mTaskTracker.onCoalescingTaskAdded(key, compareTime, taskId);
+            if (task == null) {
+                final long coalescedTaskCount = mDiagnostics.increment("worker_task_coalesced");
+
+                mLogger.d("Worker.executeCoalescing(key=%s,taskId=%d) Merge : " +
+                        "coalescedTaskCount=%d.", key, taskId, coalescedTaskCount);
+                return;
+            }
+
+            mLogger.d("Worker.executeCoalescing(key=%s,taskId=%d) Add : mQueueSize=%d.", key,
+                    taskId, onTaskAdded());
+
+            mHandler.post(() -> {
+                mTaskTracker.onCoalescingTaskStarted(task);
+                final LocalDateTime mergedCompareTime = task.getCompareTime();
+                final List<Integer> mergedTaskIds = task.getTaskIds();
+
+                mLogger.d("Worker.executeCoalescing(key=%s,taskIds=%s) Start : mQueueSize=%d.",
+                        key, mergedTaskIds, mQueueSize.get());
+
+                Trace.beginSection(getTraceSectionName(name));
+                try {
+                    callback.accept(mergedCompareTime);
+                } finally {
+                    Trace.endSection();
+                }
+
+                onTaskCompleted(name, mergedTaskIds);
+            });
+        }
+
+        /**
+         * Like {@link #execute(String,Runnable,int)}, but the task will be marked as completed only
+         * after the future returned by the callback completes, without blocking the worker thread
+         * in the meantime. The whole task lifetime will appear as an async slice in the system
+         * traces.
+         *
+         * @param name The action of the task. It will appear in the system traces, and its wake
+         * lock lease will be released on completion.
+         * @param callback The task callback to offload onto separate thread.
+         * @param taskId The task ID for which to call {@link #stopSelfResult(int)} on completion.
+         */
+        void executeAsync(final String name, final Supplier<CompletableFuture<?>> callback,
+                final int taskId) {
+
+            mTaskTracker.onTaskAdded(taskId);
+            mLogger.d("Worker.executeAsync(name=%s,taskId=%d) Add : mQueueSize=%d.", name, taskId,
+                    onTaskAdded());
 
-                // Since we return the START_REDELIVER_INTENT flag, we have to mark this task as
-                // completed to prevent its potential re-delivery in case another parallel task has
-                // been scheduled and killed before completing. This will prevent from delivering
-                // again all completed tasks, and ensure that only the most recent uncompleted tasks
-                // are re-scheduled. Otherwise, an orderly termination of the service will be
-                // initiated if this is the last task
-                stopSelfResult(taskId);
+            mHandler.post(() -> {
+                mLogger.d("Worker.executeAsync(name=%s,taskId=%d) Start : mQueueSize=%d.", name,
+                        taskId, mQueueSize.get());
+
+                final String sectionName = getTraceSectionName(name);
+                Trace.beginAsyncSection(sectionName, taskId);
+                final CompletableFuture<?> future;
+                Trace.beginSection(sectionName);
+                try {
+                    future = callback.get();
+                } finally {
+                    Trace.endSection();
+                }
+                synchronized (this) {
+                    mAsyncTasks.add(future);
+                }
+                future.whenCompleteAsync((unused, throwable) -> {
+                    synchronized (this) {
+                        mAsyncTasks.remove(future);
+                    }
+                    Trace.endAsyncSection(sectionName, taskId);
+                    onTaskCompleted(name, Collections.singletonList(taskId));
+                }, mHandler::post);
             });
         }
 
+        /**
+         * @param name The name of the task.
+         * @return The name of the trace section of the task.
+         */
+        private String getTraceSectionName(final String name) {
+            return "ForegroundService:" + name;
+        }
+
+        /**
+         * @return The number of tasks in the queue list before adding the new task.
+         */
+        private int onTaskAdded() {
+            final int queueSize = mQueueSize.getAndIncrement();
+            mDiagnostics.record("worker_queue_depth", queueSize);
+            return queueSize;
+        }
+
+        /**
+         * @param name The action of the completed task.
+         * @param taskIds The IDs of the requests the completed task ran on behalf of.
+         */
+        private void onTaskCompleted(final String name, final List<Integer> taskIds) {
+            mLogger.d("Worker.onTaskCompleted(taskIds=%s) Finish : mQueueSize=%d.", taskIds,
+                    mQueueSize.decrementAndGet());
+
+            // The work of the action is done, so the system is no longer needed to stay awake on
+            // behalf of any of the requests
+            final String wakeLockName = getWakeLockName(name);
+            for (int i = 0; i < taskIds.size(); i++) {
+                mWakeLockManager.release(wakeLockName);
+            }
+
+            // The tasks may complete out of order, since the asynchronous tasks complete in the
+            // background and the merged tasks complete on behalf of the tasks queued later on, so
+            // we can only report the tasks up to the oldest one still in progress
+            final int completedTaskId = mTaskTracker.onTasksCompleted(taskIds);
+            if (completedTaskId == 0) {
+                return;
+            }
+
+            // Since we return the START_REDELIVER_INTENT flag, we have to mark this task as
+            // completed to prevent its potential re-delivery in case another parallel task has
+            // been scheduled and killed before completing. This will prevent from delivering
+            // again all completed tasks, and ensure that only the most recent uncompleted tasks
+            // are re-scheduled. Otherwise, an orderly termination of the service will be
+            // initiated if this is the last task
+            stopSelfResult(completedTaskId);
+        }
+
         /**
          * @return The number of tasks in the queue list.
          */
@@ -503,6 +723,19 @@ public final class ForegroundService extends Hilt_ForegroundService {
             return mQueueSize.get();
         }
 
+        /**
+         * Print the state of the worker.
+         *
+         * @param pw The writer to print to.
+         */
+        synchronized void dump(final @NonNull PrintWriter pw) {
+            pw.println("  Worker:");
+            pw.println("    mQueueSize=" + mQueueSize.get());
+            pw.println("    mAsyncTasks.size()=" + mAsyncTasks.size());
+            pw.println("    mPendingCoalescingTasks="
+                    + mTaskTracker.getPendingCoalescingKeys());
+        }
+
         /**
          * Shutdown the worker. No new tasks will be accepted.
          *
@@ -515,6 +748,13 @@ public final class ForegroundService extends Hilt_ForegroundService {
                 mHandler.getLooper().quit();
                 mHandler.getLooper().getThread().interrupt();
             }
+            synchronized (this) {
+                for (final CompletableFuture<?> future : mAsyncTasks) {
+                    future.cancel(false);
+                }
+                mAsyncTasks.clear();
+            }
+            mTaskTracker.clear();
             mQueueSize.set(0);
         }
     }
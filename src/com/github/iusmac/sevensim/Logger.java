@@ -1,22 +1,83 @@
 package com.github.iusmac.sevensim;
 
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.SystemProperties;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
 import dagger.assisted.Assisted;
 import dagger.assisted.AssistedFactory;
 import dagger.assisted.AssistedInject;
 
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.inject.Named;
 import javax.inject.Provider;
 
+/**
+ * <p>This class is a thin wrapper around {@link Log}, that formats the message only if it's going
+ * to be logged.
+ *
+ * <p>The loggable state of the tag is cached for {@link #LOGGABLE_STATE_TTL_MILLIS} at most, so
+ * that changes made with e.g. {@code adb shell setprop log.tag.7SIM.<tag> VERBOSE} are picked up
+ * shortly after, as they don't necessarily notify the app process. The debug and verbose methods
+ * have fixed-arity overloads for up to three arguments, so that the callers don't allocate the
+ * varargs array up front. Note that, only the overloads taking one or two {@code long} arguments
+ * avoid boxing, while the primitive arguments passed to the other overloads are still boxed by the
+ * callers. In any case, the message is never formatted if it isn't going to be logged.
+ *
+ * <p>Additionally, the most recent events starting from {@link #RING_BUFFER_MIN_LEVEL} are kept in
+ * a process-wide in-memory ring buffer, even when they aren't logged, so that the history leading
+ * to an issue is available via {@link #dump(PrintWriter)} without paying for the logcat I/O. The
+ * messages in the ring buffer are formatted on demand. The debug and verbose events aren't kept,
+ * so that they cost nothing when they aren't logged.
+ */
 public final class Logger {
     private static final String TAG_PREFIX = "7SIM";
 
+    /** The lowest level of the events to keep in the ring buffer regardless of the tag state. */
+    private static final int RING_BUFFER_MIN_LEVEL = Log.INFO;
+
+    /** The number of the most recent events to keep in the ring buffer. Must be a power of 2. */
+    private static final int RING_BUFFER_CAPACITY = 512;
+
+    private static final AtomicReferenceArray<Event> sRingBuffer =
+        new AtomicReferenceArray<>(RING_BUFFER_CAPACITY);
+    private static final AtomicLong sRingBufferSequence = new AtomicLong();
+
+    private static final DateTimeFormatter EVENT_TIME_FORMATTER =
+        DateTimeFormatter.ofPattern("MM-dd HH:mm:ss.SSS", Locale.US);
+
+    /**
+     * The maximum time the loggable state of a tag is cached for. Note that, the system properties
+     * change callback isn't reliably invoked in the app process, e.g. after {@code setprop}.
+     */
+    private static final long LOGGABLE_STATE_TTL_MILLIS = 1_000;
+
+    /** The generation of the loggable state. Bumped whenever the system properties change. */
+    private static volatile int sLoggableStateGeneration;
+
+    static {
+        SystemProperties.addChangeCallback(Logger::invalidateLoggableState);
+    }
+
     private final boolean mIsDebuggable;
     private final String mTag;
 
+    /** The cached loggable state of the tag, if any. */
+    private volatile LoggableState mLoggableState;
+
     @AssistedInject
     public Logger(final @Named("Debug") Provider<Boolean> debug, final @Assisted String tag) {
         // Log everything on debug builds or if explicitly enabled on run-time
@@ -26,49 +87,123 @@ public final class Logger {
         mTag = TAG_PREFIX + "." + tag;
     }
 
-    public boolean isVerboseLoggable() { return mIsDebuggable || Log.isLoggable(mTag, Log.VERBOSE); }
-    public boolean isDebugLoggable() { return mIsDebuggable || Log.isLoggable(mTag, Log.DEBUG); }
-    public boolean isInfoLoggable() { return mIsDebuggable || Log.isLoggable(mTag, Log.INFO); }
-    public boolean isWarnLoggable() { return mIsDebuggable || Log.isLoggable(mTag, Log.WARN); }
-    public boolean isErrorLoggable() { return mIsDebuggable || Log.isLoggable(mTag, Log.ERROR); }
-    public boolean isWtfLoggable() { return mIsDebuggable || Log.isLoggable(mTag, Log.ASSERT); }
+    public boolean isVerboseLoggable() { return isLoggable(Log.VERBOSE); }
+    public boolean isDebugLoggable() { return isLoggable(Log.DEBUG); }
+    public boolean isInfoLoggable() { return isLoggable(Log.INFO); }
+    public boolean isWarnLoggable() { return isLoggable(Log.WARN); }
+    public boolean isErrorLoggable() { return isLoggable(Log.ERROR); }
+    public boolean isWtfLoggable() { return isLoggable(Log.ASSERT); }
+
+    public void v(String message) {
+        if (isVerboseLoggable()) {
+            log(Log.VERBOSE, message, null);
+        }
+    }
+
+    public void v(String message, Object arg0) {
+        if (isVerboseLoggable()) {
+            log(Log.VERBOSE, message, new Object[] { arg0 });
+        }
+    }
+
+    public void v(String message, Object arg0, Object arg1) {
+        if (isVerboseLoggable()) {
+            log(Log.VERBOSE, message, new Object[] { arg0, arg1 });
+        }
+    }
+
+    public void v(String message, Object arg0, Object arg1, Object arg2) {
+        if (isVerboseLoggable()) {
+            log(Log.VERBOSE, message, new Object[] { arg0, arg1, arg2 });
+        }
+    }
+
+    public void v(String message, long arg0) {
+        if (isVerboseLoggable()) {
+            log(Log.VERBOSE, message, new Object[] { arg0 });
+        }
+    }
+
+    public void v(String message, long arg0, long arg1) {
+        if (isVerboseLoggable()) {
+            log(Log.VERBOSE, message, new Object[] { arg0, arg1 });
+        }
+    }
 
     public void v(String message, Object... args) {
         if (isVerboseLoggable()) {
-            Log.v(mTag, args == null || args.length == 0 ? message : String.format(Locale.US,
-                        message, args));
+            log(Log.VERBOSE, message, args);
+        }
+    }
+
+    public void d(String message) {
+        if (isDebugLoggable()) {
+            log(Log.DEBUG, message, null);
+        }
+    }
+
+    public void d(String message, Object arg0) {
+        if (isDebugLoggable()) {
+            log(Log.DEBUG, message, new Object[] { arg0 });
+        }
+    }
+
+    public void d(String message, Object arg0, Object arg1) {
+        if (isDebugLoggable()) {
+            log(Log.DEBUG, message, new Object[] { arg0, arg1 });
+        }
+    }
+
+    public void d(String message, Object arg0, Object arg1, Object arg2) {
+        if (isDebugLoggable()) {
+            log(Log.DEBUG, message, new Object[] { arg0, arg1, arg2 });
+        }
+    }
+
+    public void d(String message, long arg0) {
+        if (isDebugLoggable()) {
+            log(Log.DEBUG, message, new Object[] { arg0 });
+        }
+    }
+
+    public void d(String message, long arg0, long arg1) {
+        if (isDebugLoggable()) {
+            log(Log.DEBUG, message, new Object[] { arg0, arg1 });
         }
     }
 
     public void d(String message, Object... args) {
         if (isDebugLoggable()) {
-            Log.d(mTag, args == null || args.length == 0 ? message : String.format(Locale.US,
-                        message, args));
+            log(Log.DEBUG, message, args);
         }
     }
 
     public void i(String message, Object... args) {
         if (isInfoLoggable()) {
-            Log.i(mTag, args == null || args.length == 0 ? message : String.format(Locale.US,
-                        message, args));
+            log(Log.INFO, message, args);
+        } else {
+            record(Log.INFO, message, snapshot(args));
         }
     }
 
     public void w(String message, Object... args) {
         if (isWarnLoggable()) {
-            Log.w(mTag, args == null || args.length == 0 ? message : String.format(Locale.US,
-                        message, args));
+            log(Log.WARN, message, args);
+        } else {
+            record(Log.WARN, message, snapshot(args));
         }
     }
 
     public void e(String message, Object... args) {
         if (isErrorLoggable()) {
-            Log.e(mTag, args == null || args.length == 0 ? message : String.format(Locale.US,
-                        message, args));
+            log(Log.ERROR, message, args);
+        } else {
+            record(Log.ERROR, message, snapshot(args));
         }
     }
 
     public void e(String message, Throwable e) {
+        record(Log.ERROR, message + " " + e, null);
         if (isErrorLoggable()) {
             Log.e(mTag, message, e);
         }
@@ -76,17 +211,183 @@ public final class Logger {
 
     public void wtf(String message, Object... args) {
         if (isWtfLoggable()) {
-            Log.wtf(mTag, args == null || args.length == 0 ? message : String.format(Locale.US,
-                        message, args));
+            log(Log.ASSERT, message, args);
+        } else {
+            record(Log.ASSERT, message, snapshot(args));
         }
     }
 
     public void wtf(Throwable e) {
+        record(Log.ASSERT, String.valueOf(e), null);
         if (isWtfLoggable()) {
             Log.wtf(mTag, e);
         }
     }
 
+    /**
+     * Mark the cached loggable state of all tags as stale, so that it's re-read from the system
+     * properties on next access.
+     */
+    public static void invalidateLoggableState() {
+        sLoggableStateGeneration++;
+    }
+
+    /**
+     * Print the most recent events kept in the ring buffer, from the oldest to the newest.
+     *
+     * @param pw The writer to print to.
+     */
+    public static void dump(final @NonNull PrintWriter pw) {
+        pw.println("Logger:");
+        final long end = sRingBufferSequence.get();
+        final ZoneId zone = ZoneId.systemDefault();
+        for (long sequence = Math.max(0, end - RING_BUFFER_CAPACITY); sequence < end; sequence++) {
+            final Event event = sRingBuffer.get((int) (sequence & (RING_BUFFER_CAPACITY - 1)));
+            // Skip the events that have been overwritten or not yet published in the meantime
+            if (event == null || event.mSequence != sequence) {
+                continue;
+            }
+            pw.println("  " + EVENT_TIME_FORMATTER.format(Instant.ofEpochMilli(event.mTimeMillis)
+                        .atZone(zone)) + " " + event.mTid + " " + "VDIWEA".charAt(event.mLevel -
+                            Log.VERBOSE) + " " + event.mTag + ": " +
+                    format(event.mFormat, event.mArgs));
+        }
+    }
+
+    private boolean isLoggable(final int level) {
+        return mIsDebuggable || level >= getMinLoggableLevel();
+    }
+
+    /** @return The minimum level at which the tag is loggable as per {@link Log#isLoggable}. */
+    private int getMinLoggableLevel() {
+        final int generation = sLoggableStateGeneration;
+        final long nowMillis = SystemClock.uptimeMillis();
+        final LoggableState state = mLoggableState;
+        if (state != null && state.mGeneration == generation &&
+                nowMillis < state.mExpiresAtMillis) {
+            return state.mMinLevel;
+        }
+
+        int minLevel = Log.ASSERT + 1;
+        for (int level = Log.VERBOSE; level <= Log.ASSERT; level++) {
+            if (Log.isLoggable(mTag, level)) {
+                minLevel = level;
+                break;
+            }
+        }
+        mLoggableState = new LoggableState(generation, minLevel,
+                nowMillis + LOGGABLE_STATE_TTL_MILLIS);
+        return minLevel;
+    }
+
+    /**
+     * Format and log the message, and keep it in the ring buffer.
+     *
+     * @param level The priority of the message.
+     * @param message The message, possibly containing format specifiers.
+     * @param args The arguments for the format specifiers, if any.
+     */
+    private void log(final int level, final String message, final Object[] args) {
+        final String formatted = format(message, args);
+        record(level, formatted, null);
+        if (level == Log.ASSERT) {
+            Log.wtf(mTag, formatted);
+        } else {
+            Log.println(level, mTag, formatted);
+        }
+    }
+
+    /**
+     * Keep the event in the ring buffer without formatting the message.
+     *
+     * @param level The priority of the message.
+     * @param message The message, possibly containing format specifiers.
+     * @param args The immutable arguments for the format specifiers, if any.
+     */
+    private void record(final int level, final String message, final Object[] args) {
+        if (level < RING_BUFFER_MIN_LEVEL) {
+            return;
+        }
+        final long sequence = sRingBufferSequence.getAndIncrement();
+        sRingBuffer.set((int) (sequence & (RING_BUFFER_CAPACITY - 1)), new Event(sequence,
+                    System.currentTimeMillis(), Process.myTid(), level, mTag, message, args));
+    }
+
+    private static String format(final String message, final Object[] args) {
+        if (args == null || args.length == 0) {
+            return message;
+        }
+        try {
+            return String.format(Locale.US, message, args);
+        } catch (IllegalFormatException e) {
+            return message + " " + Arrays.toString(args);
+        }
+    }
+
+    /**
+     * Capture the current state of the format argument, as the event in the ring buffer will be
+     * formatted at a later time. The immutable values are kept as is, so that they are converted to
+     * a string only when dumped.
+     *
+     * @param arg The format argument.
+     * @return The immutable format argument.
+     */
+    private static Object snapshot(final Object arg) {
+        if (arg == null || arg instanceof String || arg instanceof Number ||
+                arg instanceof Boolean || arg instanceof Character || arg instanceof Enum ||
+                arg instanceof TemporalAccessor) {
+            return arg;
+        }
+        return String.valueOf(arg);
+    }
+
+    private static Object[] snapshot(final Object[] args) {
+        if (args == null || args.length == 0) {
+            return null;
+        }
+        final Object[] snapshot = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            snapshot[i] = snapshot(args[i]);
+        }
+        return snapshot;
+    }
+
+    /** A holder class representing the cached loggable state of a tag. */
+    private static final class LoggableState {
+        final int mGeneration;
+        final int mMinLevel;
+        final long mExpiresAtMillis;
+
+        LoggableState(final int generation, final int minLevel, final long expiresAtMillis) {
+            mGeneration = generation;
+            mMinLevel = minLevel;
+            mExpiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /** A holder class representing an event kept in the ring buffer. */
+    private static final class Event {
+        final long mSequence;
+        final long mTimeMillis;
+        final int mTid;
+        final int mLevel;
+        final String mTag;
+        final String mFormat;
+        final Object[] mArgs;
+
+        Event(final long sequence, final long timeMillis, final int tid, final int level,
+                final String tag, final String format, final Object[] args) {
+
+            mSequence = sequence;
+            mTimeMillis = timeMillis;
+            mTid = tid;
+            mLevel = level;
+            mTag = tag;
+            mFormat = format;
+            mArgs = args;
+        }
+    }
+
     /**
      * Factory to create {@link Logger} instances via the {@link AssistedInject} constructor.
      */
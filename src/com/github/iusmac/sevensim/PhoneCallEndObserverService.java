@@ -4,23 +4,28 @@ import android.app.ActivityManager;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.media.AudioManager;
 import android.os.IBinder;
-import android.os.PowerManager;
 import android.os.UserHandle;
-import android.os.PowerManager.WakeLock;
 import android.telephony.CarrierConfigManager;
+import android.telephony.PhoneStateListener;
 import android.telephony.SubscriptionManager;
-
-import androidx.annotation.GuardedBy;
-import androidx.core.content.ContextCompat;
+import android.telephony.TelephonyCallback;
+import android.telephony.TelephonyManager;
 
 import com.github.iusmac.sevensim.scheduler.SubscriptionScheduler;
 import com.github.iusmac.sevensim.telephony.TelephonyUtils;
 
 import dagger.hilt.android.AndroidEntryPoint;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
 
 import javax.inject.Inject;
 
@@ -29,17 +34,17 @@ import javax.inject.Inject;
  * the same order it receives them, but only after the phone call ended, and die as soon as there
  * are no more tasks left.
  *
+ * <p>The phone call end is detected by listening to the call state and, where supported, to the
+ * audio mode changes. The call state is only polled on devices where the listeners are unavailable.
+ *
  * <p>This service will also show a sticky notification to inform the user that the app is working
  * in the background and is consuming system resources.
  */
 @AndroidEntryPoint(Service.class)
 public final class PhoneCallEndObserverService extends Hilt_PhoneCallEndObserverService {
-    /** The lock object to synchronize on when acquiring/releasing the {@link WakeLock}. */
-    private static final Object sWakeLockSyncLock = new Object();
-
-    /** The {@link WakeLock} to keep the system awake while this foreground service is running. */
-    @GuardedBy("sWakeLockSyncLock")
-    private static WakeLock sWakeLock;
+    /** The name of the wake lock to keep the system awake while this service is running. */
+    private static final String WAKE_LOCK_NAME =
+        PhoneCallEndObserverService.class.getSimpleName();
 
     /**
      * Action to trigger syncing of the enabled state of a SIM subscription with its existing
@@ -55,7 +60,10 @@ public final class PhoneCallEndObserverService extends Hilt_PhoneCallEndObserver
     private static final String ACTION_UPDATE_NEXT_WEEKLY_REPEAT_SCHEDULE_PROCESSING_ITER =
         "ACTION_UPDATE_NEXT_WEEKLY_REPEAT_SCHEDULE_PROCESSING_ITER";
 
-    /** The polling interval, in milliseconds, when checking the phone "in call" state. */
+    /**
+     * The polling interval, in milliseconds, when checking the phone "in call" state on devices
+     * where the call state changes can't be listened to.
+     */
     private static final long PHONE_IN_CALL_STATE_POLL_INTERVAL_MS = 15 * 1000L;
 
     /** Key holding the stringified value of the {@link LocalDateTime} in the Intent's payload. */
@@ -81,15 +89,38 @@ public final class PhoneCallEndObserverService extends Hilt_PhoneCallEndObserver
     @Inject
     TelephonyUtils mTelephonyUtils;
 
+    @Inject
+    TelephonyManager mTelephonyManager;
+
+    @Inject
+    AudioManager mAudioManager;
+
+    @Inject
+    Diagnostics mDiagnostics;
+
+    @Inject
+    WakeLockManager mWakeLockManager;
+
     private Logger mLogger;
 
+    // The following fields are confined to the main thread
+    private final List<Runnable> mPendingCallbacks = new ArrayList<>();
+    private final List<Integer> mPendingTaskIds = new ArrayList<>();
+    private boolean mListening;
+    private boolean mCallStateListenerRegistered;
+    private boolean mModeChangedListenerRegistered;
+    private int mLastCallState = TelephonyManager.CALL_STATE_IDLE;
+    private TelephonyCallback mTelephonyCallback;
+    private PhoneStateListener mPhoneStateListener;
+    private AudioManager.OnModeChangedListener mModeChangedListener;
+
     /** {@link SubscriptionScheduler#syncSubscriptionEnabledState(int,LocalDateTime,boolean)}. */
     public static void syncSubscriptionEnabledState(final Context context, final int subId,
             final LocalDateTime compareTime, final boolean overrideUserPreference) {
 
         final Intent i = new Intent(ACTION_SYNC_SUBSCRIPTION_ENABLED_STATE);
         if (compareTime != null) {
-            i.putExtra(EXTRA_TIME_KEY, compareTime.toString());
+            DateTimeUtils.putDateTimeExtra(i, EXTRA_TIME_KEY, compareTime);
         }
         i.putExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX, subId);
         i.putExtra(EXTRA_OVERRIDE_USER_PREFERENCE, overrideUserPreference);
@@ -104,7 +135,7 @@ public final class PhoneCallEndObserverService extends Hilt_PhoneCallEndObserver
 
         final Intent i = new Intent(ACTION_UPDATE_NEXT_WEEKLY_REPEAT_SCHEDULE_PROCESSING_ITER);
         if (compareTime != null) {
-            i.putExtra(EXTRA_TIME_KEY, compareTime.toString());
+            DateTimeUtils.putDateTimeExtra(i, EXTRA_TIME_KEY, compareTime);
         }
         startAction(context, i);
     }
@@ -143,14 +174,12 @@ public final class PhoneCallEndObserverService extends Hilt_PhoneCallEndObserver
         }
 
         if ((flags & (START_FLAG_RETRY | START_FLAG_REDELIVERY)) != 0) {
-            synchronized (sWakeLockSyncLock) {
-                // Re-acquire wake lock if restarted
-                acquire(this);
-            }
+            // Re-acquire wake lock if restarted
+            renew(mWakeLockManager);
         }
 
         final Optional<LocalDateTime> dateTime =
-            DateTimeUtils.parseDateTime(intent.getStringExtra(EXTRA_TIME_KEY));
+            DateTimeUtils.getDateTimeExtra(intent, EXTRA_TIME_KEY);
         final boolean overrideUserPreference =
             intent.getBooleanExtra(EXTRA_OVERRIDE_USER_PREFERENCE, false);
         final int subId = intent.getIntExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX,
@@ -183,39 +212,138 @@ public final class PhoneCallEndObserverService extends Hilt_PhoneCallEndObserver
      * @param taskId The task ID for which to call {@link #stopSelfResult(int)} on completion.
      */
     private void onCallEnded(final Runnable callback, final int taskId) {
-        synchronized (sWakeLockSyncLock) {
-            // Re-acquire wake lock until the phone call ended
-            acquire(this);
+        mLogger.v("onCallEnded(taskId=%d).", taskId);
+
+        mPendingCallbacks.add(callback);
+        mPendingTaskIds.add(taskId);
+        checkCallEnded();
+    }
+
+    /**
+     * Run all pending callbacks in the same order they were received, if the phone call ended,
+     * otherwise, wait for the next call state change.
+     */
+    private void checkCallEnded() {
+        if (mPendingCallbacks.isEmpty()) {
+            return;
         }
 
         final boolean isInCall = mTelephonyUtils.isInCall();
 
-        mLogger.v("onCallEnded(taskId=%d) : isInCall=%s.", taskId, isInCall);
+        mLogger.v("checkCallEnded() : isInCall=%s,mLastCallState=%d.", isInCall, mLastCallState);
+
+        getMainThreadHandler().removeCallbacksAndMessages(mPhoneCallEndedPollToken);
 
         if (!isInCall) {
-            callback.run();
-            stopSelfResult(taskId);
-        } else {
+            // Hold the wake lock while dispatching the pending tasks
+            renew(mWakeLockManager);
+
+            stopListening();
+            for (int i = 0, size = mPendingCallbacks.size(); i < size; i++) {
+                mPendingCallbacks.get(i).run();
+                stopSelfResult(mPendingTaskIds.get(i));
+            }
+            mPendingCallbacks.clear();
+            mPendingTaskIds.clear();
+            return;
+        }
+
+        startListening();
+
+        // Fall back to polling if the call state changes can't be listened to, or if the call
+        // state is idle, but some app is still using voice communication, as we can't listen to
+        // the audio mode changes before Android 12 (S)
+        if (!mCallStateListenerRegistered || (!mModeChangedListenerRegistered &&
+                    mLastCallState == TelephonyManager.CALL_STATE_IDLE)) {
+            // Re-acquire wake lock until the phone call ended
+            renew(mWakeLockManager);
+
             // Poll the call state within the interval
-            getMainThreadHandler().postDelayed(() -> onCallEnded(callback, taskId),
-                    mPhoneCallEndedPollToken, PHONE_IN_CALL_STATE_POLL_INTERVAL_MS);
+            getMainThreadHandler().postDelayed(this::checkCallEnded, mPhoneCallEndedPollToken,
+                    PHONE_IN_CALL_STATE_POLL_INTERVAL_MS);
+        } else {
+            // The listeners will wake us up when the phone call ended, so there's no need to keep
+            // the system awake in the meantime
+            mWakeLockManager.releaseAll(WAKE_LOCK_NAME);
         }
     }
 
+    /**
+     * @param state The new {@link TelephonyManager} call state.
+     */
+    private void onCallStateChanged(final int state) {
+        mLogger.v("onCallStateChanged(state=%d).", state);
+
+        mLastCallState = state;
+        checkCallEnded();
+    }
+
+    /** Start listening to the call state and audio mode changes. */
+    private void startListening() {
+        if (mListening) {
+            return;
+        }
+        mListening = true;
+
+        final Executor executor = getMainExecutor();
+        try {
+            if (Utils.IS_AT_LEAST_S) {
+                mTelephonyCallback = new CallStateCallback();
+                mTelephonyManager.registerTelephonyCallback(executor, mTelephonyCallback);
+            } else {
+                mPhoneStateListener = ApiDeprecated.listenCallState(mTelephonyManager, executor,
+                        this::onCallStateChanged);
+            }
+            mCallStateListenerRegistered = true;
+        } catch (Exception e) {
+            mLogger.w("startListening() : Failed to listen to the call state: %s.", e);
+        }
+
+        if (Utils.IS_AT_LEAST_S) {
+            mModeChangedListener = (mode) -> {
+                mLogger.v("onModeChanged(mode=%d).", mode);
+                checkCallEnded();
+            };
+            mAudioManager.addOnModeChangedListener(executor, mModeChangedListener);
+            mModeChangedListenerRegistered = true;
+        }
+    }
+
+    /** Stop listening to the call state and audio mode changes. */
+    private void stopListening() {
+        if (!mListening) {
+            return;
+        }
+        mListening = false;
+
+        if (mTelephonyCallback != null) {
+            mTelephonyManager.unregisterTelephonyCallback(mTelephonyCallback);
+            mTelephonyCallback = null;
+        }
+        if (mPhoneStateListener != null) {
+            ApiDeprecated.unlistenCallState(mTelephonyManager, mPhoneStateListener);
+            mPhoneStateListener = null;
+        }
+        if (mModeChangedListener != null) {
+            mAudioManager.removeOnModeChangedListener(mModeChangedListener);
+            mModeChangedListener = null;
+        }
+        mCallStateListenerRegistered = false;
+        mModeChangedListenerRegistered = false;
+        mLastCallState = TelephonyManager.CALL_STATE_IDLE;
+    }
+
     @Override
     public void onDestroy() {
         try {
             mLogger.d("onDestroy().");
 
             getMainThreadHandler().removeCallbacksAndMessages(mPhoneCallEndedPollToken);
+            stopListening();
 
             stopForeground(STOP_FOREGROUND_REMOVE);
         } finally {
-            synchronized (sWakeLockSyncLock) {
-                if (sWakeLock != null && sWakeLock.isHeld()) {
-                    sWakeLock.release();
-                }
-            }
+            mWakeLockManager.releaseAll(WAKE_LOCK_NAME);
         }
     }
 
@@ -224,6 +352,19 @@ public final class PhoneCallEndObserverService extends Hilt_PhoneCallEndObserver
         return null;
     }
 
+    @Override
+    protected void dump(final FileDescriptor fd, final PrintWriter pw, final String[] args) {
+        pw.println("PhoneCallEndObserverService:");
+        pw.println("  mPendingTaskIds=" + mPendingTaskIds);
+        pw.println("  mListening=" + mListening);
+        pw.println("  mCallStateListenerRegistered=" + mCallStateListenerRegistered);
+        pw.println("  mModeChangedListenerRegistered=" + mModeChangedListenerRegistered);
+        pw.println("  mLastCallState=" + mLastCallState);
+        mDiagnostics.dump(pw);
+        mWakeLockManager.dump(pw);
+        Logger.dump(pw);
+    }
+
     /**
      * Helper function to properly start and facilitate communication with this foreground service.
      *
@@ -232,17 +373,16 @@ public final class PhoneCallEndObserverService extends Hilt_PhoneCallEndObserver
      * take care of intent context and other fields.
      */
     private static void startAction(final Context context, Intent intent) {
-        synchronized (sWakeLockSyncLock) {
-            // Hold wake lock to ensure that the service will start and operate till termination
-            acquire(context);
-            try {
-                intent = new Intent(intent);
-                intent.setClass(context, PhoneCallEndObserverService.class);
-                context.startForegroundServiceAsUser(intent, UserHandle.CURRENT);
-            } catch (Exception e) {
-                sWakeLock.release();
-                throw e;
-            }
+        // Hold wake lock to ensure that the service will start and operate till termination
+        final WakeLockManager wakeLockManager = WakeLockManager.getInstance(context);
+        renew(wakeLockManager);
+        try {
+            intent = new Intent(intent);
+            intent.setClass(context, PhoneCallEndObserverService.class);
+            context.startForegroundServiceAsUser(intent, UserHandle.CURRENT);
+        } catch (Exception e) {
+            wakeLockManager.release(WAKE_LOCK_NAME);
+            throw e;
         }
     }
 
@@ -253,18 +393,46 @@ public final class PhoneCallEndObserverService extends Hilt_PhoneCallEndObserver
      * <p>You can call this function multiple times to re-acquire the wake lock, thus update the
      * timeout; it won't increment reference counter.
      */
-    @GuardedBy("sWakeLockSyncLock")
-    private static void acquire(final Context context) {
-        if (sWakeLock == null) {
-            final PowerManager pm = ContextCompat.getSystemService(context, PowerManager.class);
-            sWakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
-                    BuildConfig.APPLICATION_ID + ":" +
-                    PhoneCallEndObserverService.class.getSimpleName());
-            sWakeLock.setReferenceCounted(false);
-        }
+    private static void renew(final WakeLockManager wakeLockManager) {
         // Make sure we don't indefinitely hold the wake lock under any circumstances. Note that,
         // for reliability, we add an extra time span of 10s to ensure that we don't fall asleep
         // when scheduling a new phone call state poll request
-        sWakeLock.acquire(PHONE_IN_CALL_STATE_POLL_INTERVAL_MS + 10 * 1000L);
+        wakeLockManager.renew(WAKE_LOCK_NAME,
+                PHONE_IN_CALL_STATE_POLL_INTERVAL_MS + 10 * 1000L);
+    }
+
+    /** The callback to listen to the call state changes on Android 12 (S) and above. */
+    private final class CallStateCallback extends TelephonyCallback implements
+            TelephonyCallback.CallStateListener {
+
+        @Override
+        public void onCallStateChanged(final int state) {
+            PhoneCallEndObserverService.this.onCallStateChanged(state);
+        }
+    }
+
+    /**
+     * Nested class to suppress warning only for API methods annotated as Deprecated.
+     */
+    @SuppressWarnings("deprecation")
+    private static final class ApiDeprecated {
+        static PhoneStateListener listenCallState(final TelephonyManager telephonyManager,
+                final Executor executor, final IntConsumer listener) {
+
+            final PhoneStateListener phoneStateListener = new PhoneStateListener(executor) {
+                @Override
+                public void onCallStateChanged(final int state, final String phoneNumber) {
+                    listener.accept(state);
+                }
+            };
+            telephonyManager.listen(phoneStateListener, PhoneStateListener.LISTEN_CALL_STATE);
+            return phoneStateListener;
+        }
+
+        static void unlistenCallState(final TelephonyManager telephonyManager,
+                final PhoneStateListener phoneStateListener) {
+
+            telephonyManager.listen(phoneStateListener, PhoneStateListener.LISTEN_NONE);
+        }
     }
 }
@@ -5,42 +5,32 @@ import androidx.annotation.Nullable;
 import androidx.room.ProvidedTypeConverter;
 import androidx.room.TypeConverter;
 
+import com.github.iusmac.sevensim.engine.TypeCodecs;
 import com.github.iusmac.sevensim.scheduler.DaysOfWeek;
 
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeParseException;
 
 import javax.inject.Inject;
 
 @ProvidedTypeConverter
 public final class RoomTypeConverters {
-    private final DaysOfWeek.Factory mDaysOfWeekFactory;
-
     @Inject
-    public RoomTypeConverters(final DaysOfWeek.Factory daysOfWeekFactory) {
-        mDaysOfWeekFactory = daysOfWeekFactory;
-    }
+    public RoomTypeConverters() {}
 
     @TypeConverter
-    public @Nullable LocalDateTime fromLocalDateTimeToString(final @Nullable String dateTime) {
-        try {
-            if (dateTime != null) {
-                return LocalDateTime.parse(dateTime);
-            }
-        } catch (DateTimeParseException ignored) {}
-        return null;
+    public @Nullable LocalDateTime fromEpochMinutes(final @Nullable Long epochMinutes) {
+        return epochMinutes == null ? null : TypeCodecs.fromEpochMinutes(epochMinutes);
     }
 
     @TypeConverter
-    public @NonNull String fromStringToLocalDateTime(final @NonNull LocalDateTime ldt) {
-        return ldt.toString();
+    public @Nullable Long toEpochMinutes(final @Nullable LocalDateTime ldt) {
+        return ldt == null ? null : TypeCodecs.toEpochMinutes(ldt);
     }
 
     @TypeConverter
     public @NonNull DaysOfWeek fromBitsToDaysOfWeek(final @Nullable Integer daysOfWeekBits) {
-        return daysOfWeekBits == null ? mDaysOfWeekFactory.create() :
-            mDaysOfWeekFactory.create(daysOfWeekBits);
+        return daysOfWeekBits == null ? DaysOfWeek.empty() : DaysOfWeek.valueOf(daysOfWeekBits);
     }
 
     @TypeConverter
@@ -54,11 +44,11 @@ public final class RoomTypeConverters {
         if (minutesSinceMidnight == null) {
             return null;
         }
-        return LocalTime.of(minutesSinceMidnight / 60, minutesSinceMidnight % 60);
+        return TypeCodecs.fromMinutesSinceMidnight(minutesSinceMidnight);
     }
 
     @TypeConverter
     public @Nullable Integer toMinutesSinceMidnight(final @Nullable LocalTime time) {
-        return time == null ? null : time.getHour() * 60 + time.getMinute();
+        return time == null ? null : TypeCodecs.toMinutesSinceMidnight(time);
     }
 }
@@ -44,7 +44,7 @@ public class SystemBroadcastReceiver extends Hilt_SystemBroadcastReceiver {
 
         mLogger = mLoggerFactory.create(getClass().getSimpleName());
 
-        mLogger.d("onReceive() : intent=" + intent);
+        mLogger.d("onReceive() : intent=%s.", intent);
 
         final LocalDateTime now = LocalDateTime.now();
         final String action = intent.getAction() != null ? intent.getAction() : "";
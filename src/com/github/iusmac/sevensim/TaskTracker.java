@@ -0,0 +1,157 @@
+package com.github.iusmac.sevensim;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <p>This class keeps track of the tasks queued in the {@link ForegroundService}'s worker, so that
+ * the duplicate tasks can be merged and the service can be told which tasks have completed.
+ *
+ * <p>A task is identified by the start ID the service received it with. A coalescing task that
+ * hasn't started yet absorbs the later tasks with the same key, wherever it is in the queue, so
+ * that an interleaved burst of duplicate requests results in a single run per key. The merged task
+ * runs with the newest of the compare times, and completes on behalf of all the tasks it absorbed.
+ *
+ * <p>Since a merged task may complete before the tasks queued between the ones it absorbed, the
+ * service must never be told a start ID is completed while an older one is still in progress,
+ * see {@link #onTasksCompleted(List)}.
+ *
+ * <p>This class is <strong>thread-safe</strong>.
+ */
+final class TaskTracker {
+    /** The coalescing tasks that haven't started yet, keyed by key. */
+    @GuardedBy("this")
+    private final HashMap<String, CoalescingTask> mPendingCoalescingTasks = new HashMap<>();
+
+    /** The IDs of the tasks that haven't completed yet. */
+    @GuardedBy("this")
+    private final TreeSet<Integer> mOutstandingTaskIds = new TreeSet<>();
+
+    /** The highest ID of the completed tasks. */
+    @GuardedBy("this")
+    private int mLastCompletedTaskId;
+
+    /**
+     * Track a task that never absorbs its duplicates.
+     *
+     * @param taskId The ID of the task.
+     */
+    synchronized void onTaskAdded(final int taskId) {
+        mOutstandingTaskIds.add(taskId);
+    }
+
+    /**
+     * Track a task that can absorb its duplicates.
+     *
+     * @param key The key identifying tasks with the same semantics, i.e., the same action and
+     * parameters except for the compare time.
+     * @param compareTime The date-time to run the task for.
+     * @param taskId The ID of the task.
+     * @return The new task to queue, or {@code null} if it has been merged into a pending one.
+     */
+    synchronized @Nullable CoalescingTask onCoalescingTaskAdded(final @NonNull String key,
+            final @NonNull LocalDateTime compareTime, final int taskId) {
+
+        mOutstandingTaskIds.add(taskId);
+
+        final CoalescingTask pendingTask = mPendingCoalescingTasks.get(key);
+        if (pendingTask != null) {
+            if (compareTime.isAfter(pendingTask.mCompareTime)) {
+                pendingTask.mCompareTime = compareTime;
+            }
+            pendingTask.mTaskIds.add(taskId);
+            return null;
+        }
+
+        final CoalescingTask task = new CoalescingTask(key, compareTime, taskId);
+        mPendingCoalescingTasks.put(key, task);
+        return task;
+    }
+
+    /**
+     * Stop the coalescing task from absorbing its duplicates, as it's about to run. From now on,
+     * the duplicates will be queued as a new task.
+     *
+     * @param task The task that is about to run.
+     */
+    synchronized void onCoalescingTaskStarted(final @NonNull CoalescingTask task) {
+        mPendingCoalescingTasks.remove(task.mKey, task);
+    }
+
+    /**
+     * @param taskIds The IDs of the completed tasks.
+     * @return The highest task ID, such that all tasks with a lower or equal ID have completed, or
+     * 0 if there is none. That's the ID to call {@link android.app.Service#stopSelfResult(int)}
+     * for.
+     */
+    synchronized int onTasksCompleted(final @NonNull List<Integer> taskIds) {
+        for (final int taskId : taskIds) {
+            mOutstandingTaskIds.remove(taskId);
+            mLastCompletedTaskId = Math.max(mLastCompletedTaskId, taskId);
+        }
+
+        if (mOutstandingTaskIds.isEmpty()) {
+            return mLastCompletedTaskId;
+        }
+        return Math.min(mLastCompletedTaskId, mOutstandingTaskIds.first() - 1);
+    }
+
+    /**
+     * @return The keys of the coalescing tasks that haven't started yet.
+     */
+    synchronized @NonNull Set<String> getPendingCoalescingKeys() {
+        return Collections.unmodifiableSet(new TreeSet<>(mPendingCoalescingTasks.keySet()));
+    }
+
+    /** Forget all tasks, e.g., when the worker is shut down. */
+    synchronized void clear() {
+        mPendingCoalescingTasks.clear();
+        mOutstandingTaskIds.clear();
+    }
+
+    /** A pending task that can absorb its duplicates. */
+    final class CoalescingTask {
+        final String mKey;
+
+        /** The newest compare time of the merged tasks. */
+        @GuardedBy("TaskTracker.this")
+        LocalDateTime mCompareTime;
+
+        /** The IDs of the merged tasks, including this one, in the order they were queued. */
+        @GuardedBy("TaskTracker.this")
+        final List<Integer> mTaskIds = new ArrayList<>();
+
+        CoalescingTask(final String key, final LocalDateTime compareTime, final int taskId) {
+            mKey = key;
+            mCompareTime = compareTime;
+            mTaskIds.add(taskId);
+        }
+
+        /**
+         * @return The newest compare time of the merged tasks.
+         */
+        @NonNull LocalDateTime getCompareTime() {
+            synchronized (TaskTracker.this) {
+                return mCompareTime;
+            }
+        }
+
+        /**
+         * @return The IDs of the merged tasks, including this one, in the order they were queued.
+         */
+        @NonNull List<Integer> getTaskIds() {
+            synchronized (TaskTracker.this) {
+                return new ArrayList<>(mTaskIds);
+            }
+        }
+    }
+}
@@ -8,15 +8,14 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.IBinder;
-import android.os.PowerManager;
-import android.os.PowerManager.WakeLock;
 import android.os.UserHandle;
 
-import androidx.annotation.GuardedBy;
 import androidx.core.content.ContextCompat;
 
 import dagger.hilt.android.AndroidEntryPoint;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -34,12 +33,9 @@ import javax.inject.Inject;
  */
 @AndroidEntryPoint(Service.class)
 public final class UserAuthenticationObserverService extends Hilt_UserAuthenticationObserverService {
-    /** The lock object to synchronize on when acquiring/releasing the {@link WakeLock}. */
-    private static final Object sWakeLockSyncLock = new Object();
-
-    /** The {@link WakeLock} to keep the system awake while this foreground service is running. */
-    @GuardedBy("sWakeLockSyncLock")
-    private static WakeLock sWakeLock;
+    /** The name of the wake lock to keep the system awake while this service is running. */
+    private static final String WAKE_LOCK_NAME =
+        UserAuthenticationObserverService.class.getSimpleName();
 
     private final Object mWakeLockReacquireToken = new Object();
 
@@ -74,6 +70,12 @@ public final class UserAuthenticationObserverService extends Hilt_UserAuthentica
     @Inject
     KeyguardManager mKeyguardManager;
 
+    @Inject
+    Diagnostics mDiagnostics;
+
+    @Inject
+    WakeLockManager mWakeLockManager;
+
     private Logger mLogger;
 
     /**
@@ -84,7 +86,7 @@ public final class UserAuthenticationObserverService extends Hilt_UserAuthentica
 
         final Intent i = new Intent(ACTION_UPDATE_NEXT_WEEKLY_REPEAT_SCHEDULE_PROCESSING_ITER);
         if (compareTime != null) {
-            i.putExtra(EXTRA_TIME_KEY, compareTime.toString());
+            DateTimeUtils.putDateTimeExtra(i, EXTRA_TIME_KEY, compareTime);
         }
         i.putExtra(EXTRA_DECRYPT_PIN_STORAGE, decryptPinStorage);
         startAction(context, i);
@@ -159,7 +161,7 @@ public final class UserAuthenticationObserverService extends Hilt_UserAuthentica
         mLogger.d("handleIntent(intent=%s).", intent);
 
         final Optional<LocalDateTime> dateTime =
-            DateTimeUtils.parseDateTime(intent.getStringExtra(EXTRA_TIME_KEY));
+            DateTimeUtils.getDateTimeExtra(intent, EXTRA_TIME_KEY);
         final boolean decryptPinStorage = intent.getBooleanExtra(EXTRA_DECRYPT_PIN_STORAGE, false);
 
         final String action = intent.getAction() != null ? intent.getAction() : "";
@@ -178,9 +180,7 @@ public final class UserAuthenticationObserverService extends Hilt_UserAuthentica
     private void reacquire() {
         mLogger.v("reacquire().");
 
-        synchronized (sWakeLockSyncLock) {
-            acquire(this);
-        }
+        renew(mWakeLockManager);
 
         getMainThreadHandler().postDelayed(this::reacquire, mWakeLockReacquireToken,
                 WAKE_LOCK_REACQUIRE_INTERVAL_MS - 3000L);
@@ -199,11 +199,7 @@ public final class UserAuthenticationObserverService extends Hilt_UserAuthentica
 
             stopForeground(STOP_FOREGROUND_REMOVE);
         } finally {
-            synchronized (sWakeLockSyncLock) {
-                if (sWakeLock != null && sWakeLock.isHeld()) {
-                    sWakeLock.release();
-                }
-            }
+            mWakeLockManager.releaseAll(WAKE_LOCK_NAME);
         }
     }
 
@@ -212,6 +208,16 @@ public final class UserAuthenticationObserverService extends Hilt_UserAuthentica
         return null;
     }
 
+    @Override
+    protected void dump(final FileDescriptor fd, final PrintWriter pw, final String[] args) {
+        pw.println("UserAuthenticationObserverService:");
+        pw.println("  mWorker.isAlive()=" + mWorker.isAlive());
+        pw.println("  mWorker.mPendingTasks=" + mWorker.mPendingTasks);
+        mDiagnostics.dump(pw);
+        mWakeLockManager.dump(pw);
+        Logger.dump(pw);
+    }
+
     /**
      * A {@link LinkedBlockingQueue}-based worker that will run all {@link PendingTask}s using a
      * separate thread after its {@link #start()} method has been invoked. New tasks can be added
@@ -280,16 +286,15 @@ public final class UserAuthenticationObserverService extends Hilt_UserAuthentica
      * take care of intent context and other fields.
      */
     private static void startAction(final Context context, Intent intent) {
-        synchronized (sWakeLockSyncLock) {
-            // Hold wake lock to ensure that the service will start and operate till termination
-            acquire(context);
-            try {
-                intent = new Intent(intent);
-                intent.setClass(context, UserAuthenticationObserverService.class);
-                context.startForegroundServiceAsUser(intent, UserHandle.CURRENT);
-            } finally {
-                sWakeLock.release();
-            }
+        // Hold wake lock to ensure that the service will start and operate till termination
+        final WakeLockManager wakeLockManager = WakeLockManager.getInstance(context);
+        wakeLockManager.acquire(WAKE_LOCK_NAME, WAKE_LOCK_REACQUIRE_INTERVAL_MS);
+        try {
+            intent = new Intent(intent);
+            intent.setClass(context, UserAuthenticationObserverService.class);
+            context.startForegroundServiceAsUser(intent, UserHandle.CURRENT);
+        } finally {
+            wakeLockManager.release(WAKE_LOCK_NAME);
         }
     }
 
@@ -300,15 +305,7 @@ public final class UserAuthenticationObserverService extends Hilt_UserAuthentica
      * <p>You can call this function multiple times to re-acquire the wake lock, thus update the
      * timeout; it won't increment reference counter.
      */
-    @GuardedBy("sWakeLockSyncLock")
-    private static void acquire(final Context context) {
-        if (sWakeLock == null) {
-            final PowerManager pm = ContextCompat.getSystemService(context, PowerManager.class);
-            sWakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
-                    BuildConfig.APPLICATION_ID + ":" +
-                    UserAuthenticationObserverService.class.getSimpleName());
-            sWakeLock.setReferenceCounted(false);
-        }
-        sWakeLock.acquire(WAKE_LOCK_REACQUIRE_INTERVAL_MS);
+    private static void renew(final WakeLockManager wakeLockManager) {
+        wakeLockManager.renew(WAKE_LOCK_NAME, WAKE_LOCK_REACQUIRE_INTERVAL_MS);
     }
 }
@@ -0,0 +1,279 @@
+package com.github.iusmac.sevensim;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.PowerManager.WakeLock;
+import android.os.SystemClock;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+
+import dagger.hilt.EntryPoint;
+import dagger.hilt.InstallIn;
+import dagger.hilt.android.EntryPointAccessors;
+import dagger.hilt.android.qualifiers.ApplicationContext;
+import dagger.hilt.components.SingletonComponent;
+
+import java.io.PrintWriter;
+import java.util.TreeMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * <p>This class manages all partial {@link WakeLock}s held by the app on behalf of the callers, so
+ * that the wake footprint can be accounted in a single place.
+ *
+ * <p>Callers take timed leases on a named wake lock, where the name typically identifies the
+ * component or action needing the CPU to stay awake. The leases are reference-counted per name,
+ * and the underlying {@link WakeLock} is released as soon as the last lease is released, or when
+ * the latest lease deadline expires, whichever comes first. A lease that reaches its deadline
+ * without being released is considered an over-long hold and is accounted as such.
+ *
+ * <p>The cumulative held time, the longest hold and the number of over-long holds are kept per
+ * name for the lifetime of the process, see {@link #dump(PrintWriter)}.
+ *
+ * <p>This class is <strong>thread-safe</strong>.
+ */
+@Singleton
+public final class WakeLockManager {
+    private final Context mContext;
+    private final Logger mLogger;
+    private final Diagnostics mDiagnostics;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    @GuardedBy("this")
+    private final TreeMap<String, Lease> mLeases = new TreeMap<>();
+
+    @Inject
+    public WakeLockManager(final @ApplicationContext Context context,
+            final Logger.Factory loggerFactory, final Diagnostics diagnostics) {
+
+        mContext = context;
+        mLogger = loggerFactory.create(getClass().getSimpleName());
+        mDiagnostics = diagnostics;
+    }
+
+    /**
+     * Get the {@link WakeLockManager} instance from a context where dependency injection isn't
+     * available, such as static helpers.
+     *
+     * @param context The context to get the application context from.
+     * @return The process-wide {@link WakeLockManager} instance.
+     */
+    public static @NonNull WakeLockManager getInstance(final @NonNull Context context) {
+        return EntryPointAccessors.fromApplication(context, WakeLockManagerEntryPoint.class)
+            .getWakeLockManager();
+    }
+
+    /**
+     * Take a new lease on the named wake lock. The wake lock will be held until all leases are
+     * released, but no longer than the latest lease deadline.
+     *
+     * @param name The name of the wake lock.
+     * @param timeoutMillis The time after which this lease expires.
+     */
+    public synchronized void acquire(final @NonNull String name, final long timeoutMillis) {
+        final Lease lease = getOrCreateLease(name);
+        if (lease.mCount++ == 0) {
+            lease.mHeldSince = SystemClock.elapsedRealtime();
+        }
+        lease.mAcquireCount++;
+        extend(lease, timeoutMillis);
+
+        mLogger.v("acquire(name=%s,timeoutMillis=%d) : count=%d.", name, timeoutMillis,
+                lease.mCount);
+    }
+
+    /**
+     * Like {@link #acquire(String,long)}, but don't take a new lease if the named wake lock is
+     * already held, only push its deadline further, if needed.
+     *
+     * @param name The name of the wake lock.
+     * @param timeoutMillis The time after which the lease expires.
+     */
+    public synchronized void renew(final @NonNull String name, final long timeoutMillis) {
+        final Lease lease = mLeases.get(name);
+        if (lease == null || lease.mCount == 0) {
+            acquire(name, timeoutMillis);
+            return;
+        }
+        extend(lease, timeoutMillis);
+
+        mLogger.v("renew(name=%s,timeoutMillis=%d) : count=%d.", name, timeoutMillis,
+                lease.mCount);
+    }
+
+    /**
+     * Release a single lease on the named wake lock.
+     *
+     * @param name The name of the wake lock.
+     */
+    public synchronized void release(final @NonNull String name) {
+        final Lease lease = mLeases.get(name);
+        if (lease == null || lease.mCount == 0) {
+            mLogger.v("release(name=%s) : Not held.", name);
+            return;
+        }
+
+        mLogger.v("release(name=%s) : count=%d.", name, lease.mCount - 1);
+
+        if (--lease.mCount == 0) {
+            onHoldFinished(lease, SystemClock.elapsedRealtime(), /*timedOut=*/ false);
+        }
+    }
+
+    /**
+     * Release all leases on the named wake lock.
+     *
+     * @param name The name of the wake lock.
+     */
+    public synchronized void releaseAll(final @NonNull String name) {
+        final Lease lease = mLeases.get(name);
+        if (lease == null || lease.mCount == 0) {
+            return;
+        }
+
+        mLogger.v("releaseAll(name=%s) : count=%d.", name, lease.mCount);
+
+        lease.mCount = 0;
+        onHoldFinished(lease, SystemClock.elapsedRealtime(), /*timedOut=*/ false);
+    }
+
+    /**
+     * Print the accounting statistics of all wake locks held since the process started.
+     *
+     * @param pw The writer to print to.
+     */
+    public synchronized void dump(final @NonNull PrintWriter pw) {
+        final long now = SystemClock.elapsedRealtime();
+        pw.println("WakeLockManager:");
+        for (final Lease lease : mLeases.values()) {
+            final long currentHoldMillis = lease.mCount > 0 ? now - lease.mHeldSince : 0;
+            pw.println("  " + lease.mName
+                    + ": held=" + (lease.mCount > 0)
+                    + " count=" + lease.mCount
+                    + " acquireCount=" + lease.mAcquireCount
+                    + " totalHeldMillis=" + (lease.mTotalHeldMillis + currentHoldMillis)
+                    + " maxHeldMillis=" + Math.max(lease.mMaxHeldMillis, currentHoldMillis)
+                    + " timedOutCount=" + lease.mTimedOutCount);
+        }
+    }
+
+    @GuardedBy("this")
+    private Lease getOrCreateLease(final String name) {
+        Lease lease = mLeases.get(name);
+        if (lease == null) {
+            final PowerManager pm = mContext.getSystemService(PowerManager.class);
+            final WakeLock wakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
+                    BuildConfig.APPLICATION_ID + ":" + name);
+            wakeLock.setReferenceCounted(false);
+            lease = new Lease(name, wakeLock);
+            mLeases.put(name, lease);
+        }
+        return lease;
+    }
+
+    /**
+     * Push the deadline of the named wake lock further, if needed, and (re-)acquire it until then.
+     *
+     * @param lease The lease of the named wake lock.
+     * @param timeoutMillis The time after which the lease expires.
+     */
+    @GuardedBy("this")
+    private void extend(final Lease lease, final long timeoutMillis) {
+        final long deadline = SystemClock.elapsedRealtime() + timeoutMillis;
+        if (deadline <= lease.mDeadline && lease.mWakeLock.isHeld()) {
+            return;
+        }
+        lease.mDeadline = deadline;
+
+        lease.mWakeLock.acquire(timeoutMillis);
+
+        // The wake lock keeps the device awake until the deadline, so the uptime clock is
+        // guaranteed to advance in the meantime
+        mHandler.removeCallbacksAndMessages(lease);
+        mHandler.postAtTime(() -> onDeadlineReached(lease), lease,
+                SystemClock.uptimeMillis() + timeoutMillis);
+    }
+
+    private synchronized void onDeadlineReached(final Lease lease) {
+        if (lease.mCount == 0) {
+            return;
+        }
+
+        mLogger.w("onDeadlineReached() : The %s wake lock has been held too long with %d unreleased"
+                + " lease(s).", lease.mName, lease.mCount);
+
+        lease.mCount = 0;
+        onHoldFinished(lease, lease.mDeadline, /*timedOut=*/ true);
+    }
+
+    /**
+     * Release the named wake lock and account the time it was held for.
+     *
+     * @param lease The lease of the named wake lock.
+     * @param endTime The elapsed realtime the hold finished at.
+     * @param timedOut Whether the hold has finished due to the deadline expiring.
+     */
+    @GuardedBy("this")
+    private void onHoldFinished(final Lease lease, final long endTime, final boolean timedOut) {
+        final long heldMillis = Math.max(0, endTime - lease.mHeldSince);
+        lease.mTotalHeldMillis += heldMillis;
+        lease.mMaxHeldMillis = Math.max(lease.mMaxHeldMillis, heldMillis);
+        if (timedOut) {
+            lease.mTimedOutCount++;
+        }
+        mDiagnostics.record(lease.mHeldMetricName, heldMillis);
+        lease.mDeadline = 0;
+
+        mHandler.removeCallbacksAndMessages(lease);
+        if (lease.mWakeLock.isHeld()) {
+            lease.mWakeLock.release();
+        }
+
+        mLogger.d("onHoldFinished(name=%s,timedOut=%s) : heldMillis=%d,totalHeldMillis=%d.",
+                lease.mName, timedOut, heldMillis, lease.mTotalHeldMillis);
+    }
+
+    /** A holder class representing the leases taken on a named wake lock. */
+    private static final class Lease {
+        final String mName;
+        final WakeLock mWakeLock;
+
+        /** The name of the metric accounting the hold times, built once per lease. */
+        final String mHeldMetricName;
+
+        /** The number of unreleased leases. */
+        int mCount;
+
+        /** The elapsed realtime the latest lease expires at. */
+        long mDeadline;
+
+        /** The elapsed realtime the wake lock has been held since. */
+        long mHeldSince;
+
+        int mAcquireCount;
+        long mTotalHeldMillis;
+        long mMaxHeldMillis;
+        int mTimedOutCount;
+
+        Lease(final String name, final WakeLock wakeLock) {
+            mName = name;
+            mWakeLock = wakeLock;
+            mHeldMetricName = "wake_lock_held_ms." + name;
+        }
+    }
+
+    /**
+     * The entry point to get the {@link WakeLockManager} instance where dependency injection isn't
+     * available.
+     */
+    @EntryPoint
+    @InstallIn(SingletonComponent.class)
+    public interface WakeLockManagerEntryPoint {
+        WakeLockManager getWakeLockManager();
+    }
+}
@@ -50,7 +50,12 @@ public final class SevenSimModule {
             Room.databaseBuilder(context.createDeviceProtectedStorageContext(),
                     AppDatabaseDE.class, "app_database.sqlite");
 
-        return builder.addTypeConverter(typeConverter).build();
+        // The scheduler reads the database on each alarm while the UI may be writing to it, so
+        // don't rely on the default journal mode, which depends on the device RAM
+        return builder.addTypeConverter(typeConverter)
+            .addMigrations(AppDatabaseDE.MIGRATIONS)
+            .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+            .build();
     }
 
     @Singleton
@@ -8,7 +8,13 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Trace;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.iusmac.sevensim.AppDatabasePrewarmer;
+import com.github.iusmac.sevensim.Diagnostics;
 import com.github.iusmac.sevensim.Logger;
 import com.github.iusmac.sevensim.telephony.PinEntity;
 import com.github.iusmac.sevensim.telephony.PinStorage;
@@ -29,6 +35,19 @@ import javax.inject.Provider;
  */
 @AndroidEntryPoint(BroadcastReceiver.class)
 public final class AlarmReceiver extends Hilt_AlarmReceiver {
+    /**
+     * Key holding the wall clock time, in milliseconds since the epoch, the alarm has been set for
+     * in the Intent's payload.
+     */
+    static final String EXTRA_TRIGGER_TIME_MILLIS = "trigger_time_millis";
+
+    /**
+     * Key holding the {@link Bundle} of clear SIM PIN codes keyed by subscription ID in the
+     * Intent's payload. Kept apart from the other extras, so that an alarm that doesn't carry any
+     * SIM PIN code never reaches the {@link PinStorage}.
+     */
+    static final String EXTRA_CLEAR_PIN_CODES = "clear_pin_codes";
+
     @Inject
     Logger.Factory loggerFactory;
 
@@ -41,20 +60,49 @@ public final class AlarmReceiver extends Hilt_AlarmReceiver {
     @Inject
     Provider<PinStorage> mPinStorageProvider;
 
+    @Inject
+    Diagnostics mDiagnostics;
+
+    @Inject
+    AppDatabasePrewarmer mAppDatabasePrewarmer;
+
     private Logger mLogger;
 
     @Override
     public void onReceive(final Context context, final Intent intent) {
         super.onReceive(context, intent);
 
+        mAppDatabasePrewarmer.prewarm();
+
         mLogger = loggerFactory.create(getClass().getSimpleName());
 
+        Trace.beginSection("AlarmReceiver#onReceive");
+        try {
+            handleAlarm(context, intent);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Process the weekly repeat schedules at the time the alarm has been set for.
+     *
+     * @param context The context in which the receiver is running.
+     * @param intent The intent being received.
+     */
+    private void handleAlarm(final Context context, final Intent intent) {
+
         final boolean isBgRestricted = mActivityManager.isBackgroundRestricted();
 
         mLogger.d("onReceive() : isBgRestricted=%s,intent=%s.", isBgRestricted, intent);
 
         final LocalDateTime now = LocalDateTime.now();
-        final Bundle clearPinCodes = intent.getExtras();
+        final long triggerTimeMillis = intent.getLongExtra(EXTRA_TRIGGER_TIME_MILLIS, -1);
+        final long lagMillis = System.currentTimeMillis() - triggerTimeMillis;
+        if (triggerTimeMillis >= 0 && lagMillis >= 0) {
+            mDiagnostics.record("alarm_fire_lag_ms", lagMillis);
+        }
+        final Bundle clearPinCodes = getClearPinCodes(intent);
 
         // Normally, we keep the SIM card disabled after a reboot if it was manually disabled by the
         // user, but the schedules should reset it when it comes time to process them at the stated
@@ -64,7 +112,7 @@ public final class AlarmReceiver extends Hilt_AlarmReceiver {
 
         // If we have the clear SIM PIN codes, then trigger the process of unlocking all the SIM
         // cards that are in the PIN state
-        if (clearPinCodes != null && !clearPinCodes.isEmpty()) {
+        if (clearPinCodes != null) {
             ForegroundService.unlockSimCards(context, clearPinCodes);
         }
 
@@ -85,28 +133,53 @@ public final class AlarmReceiver extends Hilt_AlarmReceiver {
         } else {
             final PendingResult result = goAsync();
             AsyncHandler.post(() -> {
+                Trace.beginSection("AlarmReceiver#updateNextWeeklyRepeatScheduleProcessingIter");
                 try {
-                    List<PinEntity> pinEntities = null;
-                    if (clearPinCodes != null) {
-                        pinEntities = mPinStorageProvider.get().getPinEntities();
-                        for (final PinEntity pinEntity : pinEntities) {
-                            final String clearPin = clearPinCodes.getString(String.valueOf(
-                                        pinEntity.getSubscriptionId()));
-                            if (clearPin != null) {
-                                pinEntity.setClearPin(clearPin);
-                            }
-                        }
-                    }
                     mSubscriptionSchedulerProvider.get()
                         .updateNextWeeklyRepeatScheduleProcessingIter(now.plusMinutes(1),
-                                    pinEntities);
+                                getPinEntities(clearPinCodes, mPinStorageProvider));
                 } finally {
+                    Trace.endSection();
                     result.finish();
                 }
             });
         }
     }
 
+    /**
+     * @param intent The intent being received.
+     * @return The clear SIM PIN codes keyed by subscription ID, or {@code null} if the alarm
+     * doesn't carry any.
+     */
+    static @Nullable Bundle getClearPinCodes(final @NonNull Intent intent) {
+        final Bundle clearPinCodes = intent.getBundleExtra(EXTRA_CLEAR_PIN_CODES);
+        return clearPinCodes == null || clearPinCodes.isEmpty() ? null : clearPinCodes;
+    }
+
+    /**
+     * @param clearPinCodes The clear SIM PIN codes keyed by subscription ID, if any.
+     * @param pinStorageProvider The provider of the SIM PIN storage, only used if there are clear
+     * SIM PIN codes.
+     * @return The stored SIM PIN entities filled with the clear SIM PIN codes, or {@code null} if
+     * there are no clear SIM PIN codes.
+     */
+    static @Nullable List<PinEntity> getPinEntities(final @Nullable Bundle clearPinCodes,
+            final @NonNull Provider<PinStorage> pinStorageProvider) {
+
+        if (clearPinCodes == null) {
+            return null;
+        }
+        final List<PinEntity> pinEntities = pinStorageProvider.get().getPinEntities();
+        for (final PinEntity pinEntity : pinEntities) {
+            final String clearPin = clearPinCodes.getString(String.valueOf(
+                        pinEntity.getSubscriptionId()));
+            if (clearPin != null) {
+                pinEntity.setClearPin(clearPin);
+            }
+        }
+        return pinEntities;
+    }
+
     private static class AsyncHandler {
         static final Handler sHandler;
 
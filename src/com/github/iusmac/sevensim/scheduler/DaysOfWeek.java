@@ -17,26 +17,16 @@
 
 package com.github.iusmac.sevensim.scheduler;
 
-import android.content.Context;
-
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-
-import com.github.iusmac.sevensim.R;
 
-import dagger.assisted.Assisted;
-import dagger.assisted.AssistedFactory;
-import dagger.assisted.AssistedInject;
-import dagger.hilt.android.qualifiers.ApplicationContext;
+import com.github.iusmac.sevensim.engine.DaysOfWeekBits;
 
 import java.time.LocalDateTime;
-import java.time.temporal.WeekFields;
 import java.util.Calendar;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.NoSuchElementException;
 import java.util.OptionalInt;
-import java.util.stream.IntStream;
 
 /**
  * <p>This class is responsible for encoding a weekly repeat cycle in a {@link #getBits()}.
@@ -49,60 +39,59 @@ import java.util.stream.IntStream;
  * {@link Iterable} interface, or by calling the appropriate public APIs.
  *
  * <p>This class is both <strong>idempotent</strong> and <strong>immutable</strong>, thus also
- * <strong>thread-safe</strong>.
+ * <strong>thread-safe</strong>. There's exactly one instance per weekly repeat cycle, which can be
+ * obtained via {@link #valueOf(int)} or {@link #of(int...)}.
  *
  * @see DayOfWeek
+ * @see DaysOfWeekFormatter
  */
 public final class DaysOfWeek implements Iterable<Integer> {
-    /**
-     * The one-based array mapping days of the week from {@link DayOfWeek#SUNDAY} (index 1) to
-     * {@link DayOfWeek#SATURDAY} (index 7) to the bit masks.
-     */
-    private static final int[] DAYS_OF_WEEK_BITS = new int[] {
-        0, 1<<0, 1<<1, 1<<2, 1<<3, 1<<4, 1<<5, 1<<6
-    };
-
     /** The sum of all days of the week bit masks. */
-    private static final int ALL_DAYS_OF_WEEK_BITS = 0x7f;
+    private static final int ALL_DAYS_OF_WEEK_BITS = DaysOfWeekBits.ALL_DAYS_OF_WEEK_BITS;
+
+    /** The canonical instances of all possible weekly repeat cycles indexed by their bits. */
+    private static final DaysOfWeek[] INSTANCES =
+        new DaysOfWeek[DaysOfWeekBits.COMBINATION_COUNT];
+
+    static {
+        for (int bits = 0; bits < INSTANCES.length; bits++) {
+            INSTANCES[bits] = new DaysOfWeek(bits);
+        }
+    }
 
     /** An encoded form of a weekly repeat schedule. */
     private final int mBits;
 
-    private final Context mContext;
+    /**
+     * @param bits The {@link #getBits()} values representing the encoded weekly repeat schedule.
+     */
+    private DaysOfWeek(final int bits) {
+        mBits = bits;
+    }
 
     /**
-     * @param context The context for accessing resources.
      * @param bits The {@link #getBits()} values representing the encoded weekly repeat schedule.
-     * @param daysOfWeek Any or all of the {@link DayOfWeek} values.
+     * The unused bits are masked off.
+     * @return The canonical {@link DaysOfWeek} instance.
      */
-    @AssistedInject
-    DaysOfWeek(final @ApplicationContext @NonNull Context context,
-            final @Assisted @Nullable Integer bits,
-            final @Assisted @Nullable @DayOfWeek Integer... daysOfWeek) {
-
-        mContext = context;
-
-        int bits_ = 0;
-        if (bits != null) {
-            bits_ = bits;
-        } else if (daysOfWeek != null) {
-            bits_ = convertDaysOfWeekToBits(daysOfWeek);
-        }
-        // Mask off the unused bits
-        mBits = ALL_DAYS_OF_WEEK_BITS & bits_;
+    public static @NonNull DaysOfWeek valueOf(final int bits) {
+        return INSTANCES[ALL_DAYS_OF_WEEK_BITS & bits];
     }
 
     /**
      * @param daysOfWeek Any or all of the {@link DayOfWeek} values.
-     * @return The {@link DayOfWeek} encoded in bits as if returned by {@link #getBits()}.
+     * @return The canonical {@link DaysOfWeek} instance.
      */
-    private int convertDaysOfWeekToBits(final @DayOfWeek Integer... daysOfWeek) {
-        int bits = 0;
-        for (int dayOfWeek : daysOfWeek) {
-            final int bit = DAYS_OF_WEEK_BITS[dayOfWeek];
-            bits = bits | bit;
-        }
-        return bits;
+    public static @NonNull DaysOfWeek of(final @DayOfWeek int... daysOfWeek) {
+        return INSTANCES[DaysOfWeekBits.convertDaysOfWeekToBits(daysOfWeek)];
+    }
+
+    /**
+     * @return The canonical {@link DaysOfWeek} instance representing an empty weekly repeat
+     * schedule.
+     */
+    public static @NonNull DaysOfWeek empty() {
+        return INSTANCES[0];
     }
 
     /**
@@ -110,8 +99,7 @@ public final class DaysOfWeek implements Iterable<Integer> {
      * @return {@code true} if the given day of the week is on, {@code false} otherwise.
      */
     public boolean isBitOn(final @DayOfWeek int dayOfWeek) {
-        final int bit = DAYS_OF_WEEK_BITS[dayOfWeek];
-        return (mBits & bit) > 0;
+        return DaysOfWeekBits.isBitOn(mBits, dayOfWeek);
     }
 
     /**
@@ -135,9 +123,7 @@ public final class DaysOfWeek implements Iterable<Integer> {
      * @return The total number of days of the week enabled in this weekly repeat schedule.
      */
     public int getCount() {
-        return (int) IntStream
-            .rangeClosed(DayOfWeek.SUNDAY, DayOfWeek.SATURDAY)
-            .filter(this::isBitOn).count();
+        return DaysOfWeekBits.getCount(mBits);
     }
 
     /**
@@ -149,22 +135,7 @@ public final class DaysOfWeek implements Iterable<Integer> {
      * previous enabled day of the week, if any.
      */
     public OptionalInt getDistanceToPreviousDayOfWeek(final @DayOfWeek int compareDayOfWeek) {
-        if (!isRepeating()) {
-            return OptionalInt.empty();
-        }
-
-        int count = 1, previousDayOfWeek = compareDayOfWeek;
-        do {
-            previousDayOfWeek--;
-            if (previousDayOfWeek < DayOfWeek.SUNDAY) {
-                previousDayOfWeek = DayOfWeek.SATURDAY;
-            }
-            if (isBitOn(previousDayOfWeek)) {
-                return OptionalInt.of(count);
-            }
-        } while (count++ < 7);
-
-        return OptionalInt.empty();
+        return DaysOfWeekBits.getDistanceToPreviousDayOfWeek(mBits, compareDayOfWeek);
     }
 
     /**
@@ -176,79 +147,7 @@ public final class DaysOfWeek implements Iterable<Integer> {
      * next enabled day of the week, if any.
      */
     public OptionalInt getDistanceToNextDayOfWeek(final @DayOfWeek int compareDayOfWeek) {
-        if (!isRepeating()) {
-            return OptionalInt.empty();
-        }
-
-        int count = 0, nextDayOfWeek = compareDayOfWeek;
-        do {
-            if (isBitOn(nextDayOfWeek)) {
-                return OptionalInt.of(count);
-            }
-            nextDayOfWeek++;
-            if (nextDayOfWeek > DayOfWeek.SATURDAY) {
-                nextDayOfWeek = DayOfWeek.SUNDAY;
-            }
-        } while (++count < 7);
-
-        return OptionalInt.empty();
-    }
-
-    /**
-     * Convert the days of the week represented by this weekly repeat schedule to comma-separated,
-     * human-readable names of the days of the week ordered and formatted according to the default
-     * locale.
-     *
-     * @param useLongNames If {@code true}, the un-abbreviated day of the week names are used, e.g.
-     * Tuesday, Friday, Saturday, otherwise the abbreviated ones are used, e.g. Tue, Fri, Sat.
-     * @return The formatted string list of days of the week names.
-     */
-    public @NonNull String toString(final boolean useLongNames) {
-        if (!isRepeating()) {
-            return "";
-        }
-
-        final String separator = mContext.getString(R.string.scheduler_day_of_week_separator);
-
-        final StringBuilder builder = new StringBuilder(40);
-        for (@DayOfWeek int dayOfWeek : this) {
-            if (!isBitOn(dayOfWeek)) {
-                continue;
-            }
-
-            if (builder.length() > 0) {
-                builder.append(separator);
-            }
-
-            builder.append(getDisplayName(dayOfWeek, useLongNames));
-        }
-        return builder.toString();
-    }
-
-    /**
-     * Get the textual representation of a {@link DayOfWeek}, such as "Fri" or "Friday"
-     *
-     * @param dayOfWeek Any of {@link DayOfWeek} values.
-     * @param useLongNames If {@code true}, the un-abbreviated day of the week names are used, e.g.
-     * Tuesday, Friday, Saturday, otherwise the abbreviated ones are used, e.g. Tue, Fri, Sat.
-     * @param locale The locale to use.
-     */
-    public @NonNull String getDisplayName(final @DayOfWeek int dayOfWeek, final boolean useLongName,
-            final @NonNull Locale locale) {
-
-        final Calendar calendar = Calendar.getInstance(locale);
-        calendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
-
-        return calendar.getDisplayName(Calendar.DAY_OF_WEEK, useLongName ? Calendar.LONG :
-                Calendar.SHORT, locale);
-    }
-
-    /**
-     * Like {@link #getDisplayName(int,boolean,Locale)}, but use the default locale.
-     */
-    @NonNull
-    public String getDisplayName(final @DayOfWeek int dayOfWeek, final boolean useLongName) {
-        return getDisplayName(dayOfWeek, useLongName, Locale.getDefault());
+        return DaysOfWeekBits.getDistanceToNextDayOfWeek(mBits, compareDayOfWeek);
     }
 
     /**
@@ -300,34 +199,7 @@ public final class DaysOfWeek implements Iterable<Integer> {
      * @return A {@link DayOfWeek} value.
      */
     public static @DayOfWeek int getDayOfWeekFrom(final @NonNull LocalDateTime ldt) {
-        return ldt.get(WeekFields.SUNDAY_START.dayOfWeek());
-    }
-
-    /**
-     * Factory to create {@link DaysOfWeek} instances via the {@link AssistedInject} constructor.
-     */
-    @AssistedFactory
-    public static abstract class Factory {
-        /** To be implemented by Dagger. */
-        abstract DaysOfWeek create(@Nullable Integer bits,
-                @Nullable @DayOfWeek Integer... daysOfWeek);
-
-        /** Create a {@link DaysOfWeek} instance representing an empty weekly repeat schedule. */
-        public DaysOfWeek create() {
-            return create(null, (Integer[]) null);
-        }
-
-        /** Create a {@link DaysOfWeek} instance using {@link #getBits} values representing the
-         * encoded weekly repeat schedule. */
-        public DaysOfWeek create(final int bits) {
-            return create(bits, (Integer[]) null);
-        }
-
-        /** Create a {@link DaysOfWeek} instance representing any or all of the {@link DayOfWeek}
-         * values. */
-        public DaysOfWeek create(final @DayOfWeek int... daysOfWeek) {
-            return create(null, IntStream.of(daysOfWeek).boxed().toArray(Integer[]::new));
-        }
+        return DaysOfWeekBits.getDayOfWeekFrom(ldt);
     }
 
     @Override
@@ -343,7 +215,8 @@ public final class DaysOfWeek implements Iterable<Integer> {
     public int hashCode() { return mBits; }
 
     /**
-     * For debugging purpose. In production use {@link #toString(boolean)}.
+     * For debugging purpose. In production use {@link DaysOfWeekFormatter#format(DaysOfWeek,
+     * boolean)}.
      */
     @Override
     @NonNull
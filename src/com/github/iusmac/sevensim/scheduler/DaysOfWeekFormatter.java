@@ -0,0 +1,89 @@
+package com.github.iusmac.sevensim.scheduler;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.github.iusmac.sevensim.R;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+
+import java.util.Calendar;
+import java.util.Locale;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * This class is responsible for rendering the {@link DaysOfWeek} and {@link DayOfWeek} values in a
+ * human-readable form according to the default locale.
+ */
+@Singleton
+public final class DaysOfWeekFormatter {
+    private final Context mContext;
+
+    @Inject
+    public DaysOfWeekFormatter(final @ApplicationContext Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Convert the days of the week represented by a weekly repeat schedule to comma-separated,
+     * human-readable names of the days of the week ordered and formatted according to the default
+     * locale.
+     *
+     * @param daysOfWeek The weekly repeat schedule to format.
+     * @param useLongNames If {@code true}, the un-abbreviated day of the week names are used, e.g.
+     * Tuesday, Friday, Saturday, otherwise the abbreviated ones are used, e.g. Tue, Fri, Sat.
+     * @return The formatted string list of days of the week names.
+     */
+    public @NonNull String format(final @NonNull DaysOfWeek daysOfWeek,
+            final boolean useLongNames) {
+
+        if (!daysOfWeek.isRepeating()) {
+            return "";
+        }
+
+        final String separator = mContext.getString(R.string.scheduler_day_of_week_separator);
+
+        final StringBuilder builder = new StringBuilder(40);
+        for (@DayOfWeek int dayOfWeek : daysOfWeek) {
+            if (!daysOfWeek.isBitOn(dayOfWeek)) {
+                continue;
+            }
+
+            if (builder.length() > 0) {
+                builder.append(separator);
+            }
+
+            builder.append(getDisplayName(dayOfWeek, useLongNames));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get the textual representation of a {@link DayOfWeek}, such as "Fri" or "Friday"
+     *
+     * @param dayOfWeek Any of {@link DayOfWeek} values.
+     * @param useLongName If {@code true}, the un-abbreviated day of the week names are used, e.g.
+     * Tuesday, Friday, Saturday, otherwise the abbreviated ones are used, e.g. Tue, Fri, Sat.
+     * @param locale The locale to use.
+     */
+    public @NonNull String getDisplayName(final @DayOfWeek int dayOfWeek, final boolean useLongName,
+            final @NonNull Locale locale) {
+
+        final Calendar calendar = Calendar.getInstance(locale);
+        calendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
+
+        return calendar.getDisplayName(Calendar.DAY_OF_WEEK, useLongName ? Calendar.LONG :
+                Calendar.SHORT, locale);
+    }
+
+    /**
+     * Like {@link #getDisplayName(int,boolean,Locale)}, but use the default locale.
+     */
+    @NonNull
+    public String getDisplayName(final @DayOfWeek int dayOfWeek, final boolean useLongName) {
+        return getDisplayName(dayOfWeek, useLongName, Locale.getDefault());
+    }
+}
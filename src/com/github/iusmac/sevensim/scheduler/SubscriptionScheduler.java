@@ -4,15 +4,23 @@ import android.app.AlarmManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.os.UserManager;
 
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
+import androidx.collection.SparseArrayCompat;
 
 import com.github.iusmac.sevensim.AppDatabaseDE;
+import com.github.iusmac.sevensim.Diagnostics;
 import com.github.iusmac.sevensim.Logger;
 import com.github.iusmac.sevensim.PhoneCallEndObserverService;
+import com.github.iusmac.sevensim.engine.ScheduleEngine;
+import com.github.iusmac.sevensim.telephony.ModemReadinessGate;
 import com.github.iusmac.sevensim.telephony.PinEntity;
 import com.github.iusmac.sevensim.telephony.PinStorage;
 import com.github.iusmac.sevensim.telephony.Subscription;
@@ -20,6 +28,7 @@ import com.github.iusmac.sevensim.telephony.SubscriptionController;
 import com.github.iusmac.sevensim.telephony.Subscriptions;
 import com.github.iusmac.sevensim.telephony.TelephonyController;
 import com.github.iusmac.sevensim.telephony.TelephonyUtils;
+import com.github.iusmac.sevensim.telephony.TransitionSource;
 
 import dagger.Lazy;
 import dagger.hilt.android.qualifiers.ApplicationContext;
@@ -28,9 +37,12 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -58,12 +70,23 @@ public final class SubscriptionScheduler {
     private final Lazy<Subscriptions> mSubscriptionsLazy;
     private final Lazy<SubscriptionController> mSubscriptionControllerLazy;
     private final Lazy<TelephonyController> mTelephonyControllerLazy;
+    private final Lazy<ModemReadinessGate> mModemReadinessGateLazy;
     private final Provider<TelephonyUtils> mTelephonyUtilsProvider;
     private final Lazy<PinStorage> mPinStorageLazy;
     private final Lazy<UserManager> mUserManagerLazy;
+    private final Diagnostics mDiagnostics;
+    private final TransitionPlanStore mTransitionPlanStore;
 
     private final Intent mAlarmIntent;
 
+    /**
+     * The compiled weekly repeat schedules of SIM subscriptions, keyed by subscription ID. Entries
+     * are built on-demand, and dropped whenever the schedules are mutated.
+     */
+    @GuardedBy("mWeeklyTransitionIndexCache")
+    private final SparseArrayCompat<WeeklyTransitionIndex> mWeeklyTransitionIndexCache =
+        new SparseArrayCompat<>();
+
     @Inject
     public SubscriptionScheduler(final Logger.Factory loggerFactory,
             final @ApplicationContext Context context, final Lazy<AlarmManager> alarmManagerLazy,
@@ -71,9 +94,12 @@ public final class SubscriptionScheduler {
             final Lazy<Subscriptions> subscriptionsLazy,
             final Lazy<SubscriptionController> subscriptionControllerLazy,
             final Lazy<TelephonyController> telephonyControllerLazy,
+            final Lazy<ModemReadinessGate> modemReadinessGateLazy,
             final Provider<TelephonyUtils> telephonyUtilsProvider,
             final Lazy<PinStorage> pinStorageLazy,
-            final Lazy<UserManager> userManagerLazy) {
+            final Lazy<UserManager> userManagerLazy,
+            final Diagnostics diagnostics,
+            final TransitionPlanStore transitionPlanStore) {
 
         mLogger = loggerFactory.create(getClass().getSimpleName());
         mContext = context;
@@ -82,9 +108,12 @@ public final class SubscriptionScheduler {
         mSubscriptionsLazy = subscriptionsLazy;
         mSubscriptionControllerLazy = subscriptionControllerLazy;
         mTelephonyControllerLazy = telephonyControllerLazy;
+        mModemReadinessGateLazy = modemReadinessGateLazy;
         mTelephonyUtilsProvider = telephonyUtilsProvider;
         mPinStorageLazy = pinStorageLazy;
         mUserManagerLazy = userManagerLazy;
+        mDiagnostics = diagnostics;
+        mTransitionPlanStore = transitionPlanStore;
 
         mAlarmIntent = new Intent(context, AlarmReceiver.class);
     }
@@ -137,9 +166,7 @@ public final class SubscriptionScheduler {
     public Optional<SubscriptionScheduleEntity> findNearestBeforeDateTime(final int subId,
             final boolean subEnabled, final @NonNull LocalDateTime dateTime) {
 
-        return mSubscriptionSchedulesDao.findNearestByDayOfWeekAndTime(subId, subEnabled,
-                DaysOfWeek.getDayOfWeekFrom(dateTime), dateTime.toLocalTime(),
-                /*reverseSearch=*/ true);
+        return getWeeklyTransitionIndex(subId).findNearestBefore(subEnabled, dateTime);
     }
 
     /**
@@ -153,9 +180,33 @@ public final class SubscriptionScheduler {
     public Optional<SubscriptionScheduleEntity> findNearestAfterDateTime(final int subId,
             final boolean subEnabled, final @NonNull LocalDateTime dateTime) {
 
-        return mSubscriptionSchedulesDao.findNearestByDayOfWeekAndTime(subId,
-                    subEnabled, DaysOfWeek.getDayOfWeekFrom(dateTime), dateTime.toLocalTime(),
-                    /*reverseSearch=*/ false);
+        return getWeeklyTransitionIndex(subId).findNearestAfter(subEnabled, dateTime);
+    }
+
+    /**
+     * Find the SIM subscription weekly repeat schedules of all SIM subscriptions that occur on or
+     * before the given date-time in a single database transaction.
+     *
+     * @param dateTime The date-time object used for finding the nearest schedules.
+     * @return The nearest schedules keyed by subscription ID.
+     */
+    public @NonNull SparseArrayCompat<NearestSchedules> findAllNearestBeforeDateTime(
+            final @NonNull LocalDateTime dateTime) {
+
+        return findAllNearestByDateTime(dateTime, /*reverseSearch=*/ true);
+    }
+
+    /**
+     * Find the SIM subscription weekly repeat schedules of all SIM subscriptions that occur on or
+     * after the given date-time in a single database transaction.
+     *
+     * @param dateTime The date-time object used for finding the nearest schedules.
+     * @return The nearest schedules keyed by subscription ID.
+     */
+    public @NonNull SparseArrayCompat<NearestSchedules> findAllNearestAfterDateTime(
+            final @NonNull LocalDateTime dateTime) {
+
+        return findAllNearestByDateTime(dateTime, /*reverseSearch=*/ false);
     }
 
     /**
@@ -170,30 +221,53 @@ public final class SubscriptionScheduler {
     public void syncAllSubscriptionsEnabledState(final @NonNull LocalDateTime compareTime,
             final boolean overrideUserPreference) {
 
-        boolean needSleep = false;
+        // Since we don't support seconds and milliseconds, drop them off to don't miss a sync
+        final LocalDateTime compareTime2 = compareTime.truncatedTo(ChronoUnit.MINUTES);
+        // Resolve the nearest schedules from the plan computed when arming the alarm, if still
+        // valid, otherwise fall back to the database
+        final TransitionPlan plan = mTransitionPlanStore.get(compareTime2);
+        final SparseArrayCompat<NearestSchedules> nearestSchedules = plan == null ?
+            findAllNearestBeforeDateTime(compareTime2) : null;
+
+        final List<CompletableFuture<Integer>> pendingRequests = new ArrayList<>();
         for (final Subscription sub : mSubscriptionsLazy.get()) {
             if (sub.getSlotIndex() != INVALID_SIM_SLOT_INDEX) {
                 // For reliability, we need to wait when performing multiple SIM power state
                 // change requests consecutively, as the modem may hang, which requires manually
                 // removing/re-inserting the SIM. Practice shows that this happens *very* rarely
-                // and only when rapidly toggling one SIM after another
-                if (needSleep) {
-                    try {
-                        Thread.sleep(2_000);
-                    } catch (InterruptedException ignored) { }
-                }
+                // and only when rapidly toggling one SIM after another. This returns immediately if
+                // no SIM power state change request has been performed in the meantime
+                mModemReadinessGateLazy.get().awaitAllReady();
             }
 
             mLogger.d("syncAllSubscriptionsEnabledState(compareTime=%s,overrideUserPreference=%s) "
                     + ": Syncing %s.", compareTime, overrideUserPreference, sub);
 
-            final Optional<Boolean> newEnabledState = syncSubscriptionEnabledState(sub.getId(),
-                    compareTime, overrideUserPreference);
+            final Optional<LocalDateTime> nearestEnableTime, nearestDisableTime;
+            if (plan != null) {
+                nearestEnableTime = plan.findNearestBefore(sub.getId(), /*subEnabled=*/ true,
+                        compareTime2);
+                nearestDisableTime = plan.findNearestBefore(sub.getId(), /*subEnabled=*/ false,
+                        compareTime2);
+            } else {
+                final NearestSchedules subNearestSchedules =
+                    nearestSchedules.get(sub.getId(), NearestSchedules.EMPTY);
+                nearestEnableTime = subNearestSchedules.get(/*subEnabled=*/ true)
+                    .flatMap((schedule) -> getDateTimeBefore(schedule, compareTime2));
+                nearestDisableTime = subNearestSchedules.get(/*subEnabled=*/ false)
+                    .flatMap((schedule) -> getDateTimeBefore(schedule, compareTime2));
+            }
 
-            if (sub.getSlotIndex() != INVALID_SIM_SLOT_INDEX) {
-                needSleep = newEnabledState.map((v) -> v != sub.isSimEnabled()).orElse(false);
+            Trace.beginSection("SubscriptionScheduler#syncSubscriptionEnabledState");
+            try {
+                syncSubscriptionEnabledState(sub, compareTime, overrideUserPreference,
+                        nearestEnableTime, nearestDisableTime, pendingRequests);
+            } finally {
+                Trace.endSection();
             }
         }
+
+        awaitPendingRequests(pendingRequests);
     }
 
     /**
@@ -212,60 +286,109 @@ public final class SubscriptionScheduler {
         // Since we don't support seconds and milliseconds, drop them off to don't miss a sync
         final LocalDateTime compareTime2 = compareTime.truncatedTo(ChronoUnit.MINUTES);
 
-        return mSubscriptionsLazy.get().getSubscriptionForSubId(subId).map((sub) -> {
-            // Try to find the date-time of the nearest weekly repeat schedule that should have
-            // enabled or actually enabled the SIM subscription on or before the stated time
-            final Optional<LocalDateTime> nearestEnableTime = findNearestBeforeDateTime(subId,
-                    /*subEnabled=*/ true, compareTime2).flatMap((schedule) ->
-                    getDateTimeBefore(schedule, compareTime2));
-            // Try to find the date-time of the nearest weekly repeat schedule that should have
-            // disabled or actually disabled the SIM subscription on or before the stated time
-            final Optional<LocalDateTime> nearestDisableTime = findNearestBeforeDateTime(subId,
-                    /*subEnabled=*/ false, compareTime2).flatMap((schedule) ->
-                    getDateTimeBefore(schedule, compareTime2));
-
-            final boolean currentEnabled = sub.isSimEnabled();
-            // Figure out the expected SIM subscription state using schedules from the past, if any
-            final boolean expectedEnabled = getSubscriptionExpectedEnabledState(sub,
-                    nearestEnableTime, nearestDisableTime, overrideUserPreference);
-            final boolean isInCall = mTelephonyUtilsProvider.get().isInCall();
-
-            mLogger.d("syncSubscriptionEnabledState(subId=%d,compareTime=%s," +
-                    "overrideUserPreference=%s) : %s,nearestEnableTime=%s,nearestDisableTime=%s," +
-                    "expectedEnabled=%s,isInCall=%s.", subId, compareTime, overrideUserPreference,
-                    sub, nearestEnableTime, nearestDisableTime, expectedEnabled, isInCall);
-
-            // Sync the enabled state of the SIM subscription if it differs
-            if (currentEnabled != expectedEnabled) {
-                if (!expectedEnabled && isInCall) {
-                    // Since there's an ongoing phone call, we postpone deactivation of the SIM
-                    // subscription until the phone call ended.
-                    // SIDE NOTE: although we can't exactly tell if this particular SIM subscription
-                    // is involved in the phone call, we want to *refrain* from disabling SIM cards
-                    // at all during a phone call. One can make a plausible case, for instance, the
-                    // phone can bridge a VoIP call, and use both the cellular phone services of
-                    // SIM1 and mobile data of SIM2
-                    PhoneCallEndObserverService.syncSubscriptionEnabledState(mContext, subId,
-                            compareTime, overrideUserPreference);
-                    PhoneCallEndObserverService
-                        .updateNextWeeklyRepeatScheduleProcessingIter(mContext, compareTime);
-                    return null;
-                }
+        final List<CompletableFuture<Integer>> pendingRequests = new ArrayList<>(1);
+        final Optional<Boolean> newEnabledState =
+            mSubscriptionsLazy.get().getSubscriptionForSubId(subId).flatMap((sub) ->
+                syncSubscriptionEnabledState(sub, compareTime, overrideUserPreference,
+                    findNearestBeforeDateTime(subId, /*subEnabled=*/ true, compareTime2)
+                    .flatMap((schedule) -> getDateTimeBefore(schedule, compareTime2)),
+                    findNearestBeforeDateTime(subId, /*subEnabled=*/ false, compareTime2)
+                    .flatMap((schedule) -> getDateTimeBefore(schedule, compareTime2)),
+                    pendingRequests));
 
-                if (sub.getSlotIndex() == INVALID_SIM_SLOT_INDEX) {
-                    mSubscriptionControllerLazy.get().setUiccApplicationsEnabled(subId,
-                            expectedEnabled);
-                } else {
-                    boolean keepDisabledAcrossBoots =
-                        Optional.ofNullable(sub.getKeepDisabledAcrossBoots()).orElse(false);
-                    keepDisabledAcrossBoots &= !overrideUserPreference;
-                    mTelephonyControllerLazy.get().setSimState(sub.getSlotIndex(), expectedEnabled,
-                            keepDisabledAcrossBoots);
-                }
-                return expectedEnabled;
+        awaitPendingRequests(pendingRequests);
+
+        return newEnabledState;
+    }
+
+    /**
+     * Like {@link #syncSubscriptionEnabledState(int,LocalDateTime,boolean)}, but use the already
+     * resolved date-times of the weekly repeat schedules that occur on or before the stated time.
+     *
+     * @param sub The subscription to sync.
+     * @param compareTime The date-time object used for finding the eligible schedules.
+     * @param overrideUserPreference See {@link #syncSubscriptionEnabledState(int,LocalDateTime,
+     * boolean)}.
+     * @param nearestEnableTime The date-time of the nearest weekly repeat schedule that should
+     * have enabled or actually enabled the subscription on or before the stated time, if any.
+     * @param nearestDisableTime The date-time of the nearest weekly repeat schedule that should
+     * have disabled or actually disabled the subscription on or before the stated time, if any.
+     * @param pendingRequests The list to add the pending SIM power or subscription state change
+     * request to, if any.
+     * @return The new enabled state of the SIM subscription if changed.
+     */
+    private Optional<Boolean> syncSubscriptionEnabledState(final @NonNull Subscription sub,
+            final @NonNull LocalDateTime compareTime, final boolean overrideUserPreference,
+            final Optional<LocalDateTime> nearestEnableTime,
+            final Optional<LocalDateTime> nearestDisableTime,
+            final @NonNull List<CompletableFuture<Integer>> pendingRequests) {
+
+        final int subId = sub.getId();
+        final boolean currentEnabled = sub.isSimEnabled();
+        // Figure out the expected SIM subscription state using schedules from the past, if any
+        final boolean expectedEnabled = getSubscriptionExpectedEnabledState(sub,
+                nearestEnableTime, nearestDisableTime, overrideUserPreference);
+        final boolean isInCall = mTelephonyUtilsProvider.get().isInCall();
+
+        mLogger.d("syncSubscriptionEnabledState(subId=%d,compareTime=%s," +
+                "overrideUserPreference=%s) : %s,nearestEnableTime=%s,nearestDisableTime=%s," +
+                "expectedEnabled=%s,isInCall=%s.", subId, compareTime, overrideUserPreference,
+                sub, nearestEnableTime, nearestDisableTime, expectedEnabled, isInCall);
+
+        // Sync the enabled state of the SIM subscription if it differs
+        if (currentEnabled != expectedEnabled) {
+            if (!expectedEnabled && isInCall) {
+                // Since there's an ongoing phone call, we postpone deactivation of the SIM
+                // subscription until the phone call ended.
+                // SIDE NOTE: although we can't exactly tell if this particular SIM subscription
+                // is involved in the phone call, we want to *refrain* from disabling SIM cards
+                // at all during a phone call. One can make a plausible case, for instance, the
+                // phone can bridge a VoIP call, and use both the cellular phone services of
+                // SIM1 and mobile data of SIM2
+                PhoneCallEndObserverService.syncSubscriptionEnabledState(mContext, subId,
+                        compareTime, overrideUserPreference);
+                PhoneCallEndObserverService
+                    .updateNextWeeklyRepeatScheduleProcessingIter(mContext, compareTime);
+                return Optional.empty();
             }
-            return null;
-        });
+
+            if (sub.getSlotIndex() == INVALID_SIM_SLOT_INDEX) {
+                pendingRequests.add(mSubscriptionControllerLazy.get().setUiccApplicationsEnabled(
+                            subId, expectedEnabled, TransitionSource.SCHEDULE));
+            } else {
+                boolean keepDisabledAcrossBoots =
+                    Optional.ofNullable(sub.getKeepDisabledAcrossBoots()).orElse(false);
+                keepDisabledAcrossBoots &= !overrideUserPreference;
+                pendingRequests.add(mTelephonyControllerLazy.get().setSimState(
+                            sub.getSlotIndex(), expectedEnabled, keepDisabledAcrossBoots,
+                            TransitionSource.SCHEDULE));
+            }
+            return Optional.of(expectedEnabled);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Wait for the completion of the SIM power and subscription state change requests, so that the
+     * caller isn't released, e.g. the wake lock isn't dropped, until they're performed.
+     *
+     * @param pendingRequests The pending SIM power and subscription state change requests.
+     */
+    private void awaitPendingRequests(
+            final @NonNull List<CompletableFuture<Integer>> pendingRequests) {
+
+        if (pendingRequests.isEmpty()) {
+            return;
+        }
+
+        Trace.beginSection("SubscriptionScheduler#awaitPendingRequests");
+        try {
+            CompletableFuture.allOf(pendingRequests.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            mLogger.e("awaitPendingRequests() : Request failed.", e);
+        } finally {
+            Trace.endSection();
+        }
     }
 
     /**
@@ -295,19 +418,26 @@ public final class SubscriptionScheduler {
         // even more alarm accuracy
         final LocalDateTime compareTime2 = compareTime.truncatedTo(ChronoUnit.MINUTES);
 
+        // Resolve the nearest schedules from the plan computed when arming the alarm, if still
+        // valid, otherwise fall back to the database and compute a new plan afterwards
+        final TransitionPlan plan = mTransitionPlanStore.get(compareTime2);
+        final SparseArrayCompat<NearestSchedules> nearestSchedules = plan == null ?
+            findAllNearestAfterDateTime(compareTime2) : null;
+
         Optional<LocalDateTime> nextProcessingTime = Optional.empty();
         // Scan schedules only from currently active SIM subscriptions found on the device
         for (Subscription sub : mSubscriptionsLazy.get()) {
             // Try to find the date-time of the next weekly repeat schedule that will invert the
             // current enabled state of the subscription on or after the provided date-time
-            final Optional<SubscriptionScheduleEntity> nearestSchedule =
-                findNearestAfterDateTime(sub.getId(), !sub.isSimEnabled(), compareTime2);
-            final Optional<LocalDateTime> nearestDateTime = nearestSchedule.flatMap((schedule) ->
-                    getDateTimeAfter(schedule, compareTime2));
+            final Optional<LocalDateTime> nearestDateTime = plan != null ?
+                plan.findNearestAfter(sub.getId(), !sub.isSimEnabled(), compareTime2) :
+                nearestSchedules.get(sub.getId(), NearestSchedules.EMPTY)
+                .get(!sub.isSimEnabled())
+                .flatMap((schedule) -> getDateTimeAfter(schedule, compareTime2));
 
             mLogger.d("updateNextWeeklyRepeatScheduleProcessingIter(compareTime=%s," +
-                    "pinEntities=%s) : Found %s, %s", compareTime, pinEntities, sub,
-                    nearestSchedule);
+                    "pinEntities=%s) : Found %s, nearestDateTime=%s.", compareTime, pinEntities,
+                    sub, nearestDateTime);
 
             if (nearestDateTime.isPresent()) {
                 if (nextProcessingTime.isPresent()) {
@@ -323,22 +453,31 @@ public final class SubscriptionScheduler {
         mLogger.d("updateNextWeeklyRepeatScheduleProcessingIter(compareTime=%s,pinEntities=%s) : " +
                 "nextProcessingTime=%s.", compareTime, pinEntities, nextProcessingTime);
 
+        if (plan == null) {
+            mTransitionPlanStore.set(buildTransitionPlan(compareTime2, nearestSchedules));
+        }
+
         // Since the SIM subscription PIN codes are encrypted using the user authentication bound
         // secret key, for convenience, we want to pass all clear SIM subscription PIN codes to the
         // system's alarm manager as intent extra data. This allows to workaround the KeyStore
         // restrictions while preserving the safety and security of the data, as the extras are
         // stored in the volatile memory of the pending operations controller, and there's no way to
         // directly obtain pending operations from the Android OS until the alarm goes off
-        if (pinEntities != null) {
-            pinEntities.forEach((pinEntity) -> {
+        if (pinEntities != null && !pinEntities.isEmpty()) {
+            Bundle clearPinCodes = mAlarmIntent.getBundleExtra(AlarmReceiver.EXTRA_CLEAR_PIN_CODES);
+            if (clearPinCodes == null) {
+                clearPinCodes = new Bundle();
+            }
+            for (final PinEntity pinEntity : pinEntities) {
                 if (pinEntity.isCorrupted() || pinEntity.isInvalid()) {
                     mPinStorageLazy.get().handleBadPinEntity(pinEntity);
                 }
                 // Note that, we propagate the PIN further even if it may be bad, so that we receive
                 // it back, and re-run the same logic to re-raise awareness of the issue
-                mAlarmIntent.putExtra(String.valueOf(pinEntity.getSubscriptionId()),
+                clearPinCodes.putString(String.valueOf(pinEntity.getSubscriptionId()),
                         pinEntity.getClearPin());
-            });
+            }
+            mAlarmIntent.putExtra(AlarmReceiver.EXTRA_CLEAR_PIN_CODES, clearPinCodes);
         }
 
         // If found an eligible schedule, then re-schedule the old alarm or schedule a new one,
@@ -388,6 +527,7 @@ public final class SubscriptionScheduler {
     private void doSchedulesDatabaseRequest(final List<SubscriptionScheduleEntity> schedules,
             final ScheduleDatabaseOperationType opType) {
 
+        final long startTime = SystemClock.elapsedRealtime();
         switch (opType) {
             case ADD:
                 final List<Long> ids = mSubscriptionSchedulesDao.insertAll(schedules);
@@ -405,6 +545,9 @@ public final class SubscriptionScheduler {
 
             default: throw new RuntimeException("Unhandled operation type: " + opType);
         }
+        mDiagnostics.record("db_schedules_write_ms", SystemClock.elapsedRealtime() - startTime);
+        invalidateWeeklyTransitionIndexCache();
+        mTransitionPlanStore.invalidate();
 
         mLogger.d("doSchedulesDatabaseRequest(schedules=[%s],opType=%s).",
                 schedules.stream().map(Object::toString).collect(Collectors.joining(",")), opType);
@@ -427,6 +570,194 @@ public final class SubscriptionScheduler {
         updateNextWeeklyRepeatScheduleProcessingIter(now.plusMinutes(1), pinEntities);
     }
 
+    /**
+     * Find the SIM subscription weekly repeat schedules of all SIM subscriptions that occur on or
+     * before/after the given date-time.
+     *
+     * @param dateTime The date-time object used for finding the nearest schedules.
+     * @param reverseSearch Whether to search for the nearest schedules that occur on or before the
+     * given date-time.
+     * @return The nearest schedules keyed by subscription ID.
+     */
+    private SparseArrayCompat<NearestSchedules> findAllNearestByDateTime(
+            final LocalDateTime dateTime, final boolean reverseSearch) {
+
+        final long startTime = SystemClock.elapsedRealtime();
+        final List<SubscriptionScheduleEntity> schedules;
+        Trace.beginSection("SubscriptionScheduler#findAllNearestByDateTime");
+        try {
+            schedules = mSubscriptionSchedulesDao.findAllNearestByDayOfWeekAndTime(
+                    DaysOfWeek.getDayOfWeekFrom(dateTime), dateTime.toLocalTime(), reverseSearch);
+        } finally {
+            Trace.endSection();
+        }
+        mDiagnostics.record("db_find_all_nearest_ms", SystemClock.elapsedRealtime() - startTime);
+
+        final SparseArrayCompat<NearestSchedules> nearestSchedules = new SparseArrayCompat<>();
+        for (final SubscriptionScheduleEntity schedule : schedules) {
+            final int subId = schedule.getSubscriptionId();
+            final NearestSchedules other = nearestSchedules.get(subId, NearestSchedules.EMPTY);
+            nearestSchedules.put(subId, schedule.getSubscriptionEnabled() ?
+                    new NearestSchedules(Optional.of(schedule), other.get(false)) :
+                    new NearestSchedules(other.get(true), Optional.of(schedule)));
+        }
+        return nearestSchedules;
+    }
+
+    /**
+     * Get the compiled weekly repeat schedules of a SIM subscription, building them from the
+     * database if not yet cached.
+     *
+     * @param subId The ID of the subscription.
+     * @return The weekly transition index of the subscription.
+     */
+    private @NonNull WeeklyTransitionIndex getWeeklyTransitionIndex(final int subId) {
+        synchronized (mWeeklyTransitionIndexCache) {
+            WeeklyTransitionIndex index = mWeeklyTransitionIndexCache.get(subId);
+            if (index == null) {
+                final long startTime = SystemClock.elapsedRealtime();
+                final List<SubscriptionScheduleEntity> schedules =
+                    mSubscriptionSchedulesDao.findAllBySubscriptionId(subId);
+                mDiagnostics.record("db_find_all_by_sub_id_ms",
+                        SystemClock.elapsedRealtime() - startTime);
+                index = schedules.isEmpty() ? WeeklyTransitionIndex.EMPTY :
+                    new WeeklyTransitionIndex(schedules);
+                mWeeklyTransitionIndexCache.put(subId, index);
+
+                mLogger.v("getWeeklyTransitionIndex(subId=%d) : Built %s.", subId, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Get the compiled weekly repeat schedules of multiple SIM subscriptions at once. The
+     * subscriptions that aren't yet cached are built from a single database query, rather than
+     * querying the schedules of each subscription separately.
+     *
+     * @param subIds The subscription IDs as keys.
+     * @return The weekly transition indexes keyed by subscription ID.
+     */
+    private @NonNull SparseArrayCompat<WeeklyTransitionIndex> getWeeklyTransitionIndexes(
+            final @NonNull SparseArrayCompat<?> subIds) {
+
+        final int size = subIds.size();
+        final SparseArrayCompat<WeeklyTransitionIndex> indexes = new SparseArrayCompat<>(size);
+        synchronized (mWeeklyTransitionIndexCache) {
+            SparseArrayCompat<List<SubscriptionScheduleEntity>> schedulesBySubId = null;
+            for (int i = 0; i < size; i++) {
+                final int subId = subIds.keyAt(i);
+                WeeklyTransitionIndex index = mWeeklyTransitionIndexCache.get(subId);
+                if (index == null) {
+                    if (schedulesBySubId == null) {
+                        schedulesBySubId = loadAllSchedulesGroupedBySubId();
+                    }
+                    final List<SubscriptionScheduleEntity> schedules = schedulesBySubId.get(subId);
+                    index = schedules == null ? WeeklyTransitionIndex.EMPTY :
+                        new WeeklyTransitionIndex(schedules);
+                    mWeeklyTransitionIndexCache.put(subId, index);
+
+                    mLogger.v("getWeeklyTransitionIndexes() : Built %s for subId=%d.", index,
+                            subId);
+                }
+                indexes.put(subId, index);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * @return All SIM subscription weekly repeat schedules in the storage, keyed by subscription
+     * ID.
+     */
+    private @NonNull SparseArrayCompat<List<SubscriptionScheduleEntity>>
+            loadAllSchedulesGroupedBySubId() {
+
+        final long startTime = SystemClock.elapsedRealtime();
+        final List<SubscriptionScheduleEntity> schedules = mSubscriptionSchedulesDao.loadAll();
+        mDiagnostics.record("db_load_all_schedules_ms", SystemClock.elapsedRealtime() - startTime);
+
+        final SparseArrayCompat<List<SubscriptionScheduleEntity>> schedulesBySubId =
+            new SparseArrayCompat<>();
+        for (SubscriptionScheduleEntity schedule : schedules) {
+            List<SubscriptionScheduleEntity> subSchedules =
+                schedulesBySubId.get(schedule.getSubscriptionId());
+            if (subSchedules == null) {
+                subSchedules = new ArrayList<>();
+                schedulesBySubId.put(schedule.getSubscriptionId(), subSchedules);
+            }
+            subSchedules.add(schedule);
+        }
+        return schedulesBySubId;
+    }
+
+    /**
+     * Compute the plan of the upcoming transitions of all SIM subscriptions having weekly repeat
+     * schedules, including those currently missing on the device.
+     *
+     * @param startTime The date-time the plan starts at.
+     * @param nearestSchedules The nearest schedules that occur on or after the start time, keyed
+     * by subscription ID.
+     * @return The plan.
+     */
+    private @NonNull TransitionPlan buildTransitionPlan(final @NonNull LocalDateTime startTime,
+            final @NonNull SparseArrayCompat<NearestSchedules> nearestSchedules) {
+
+        final TransitionPlan.Builder builder = new TransitionPlan.Builder(startTime);
+        final SparseArrayCompat<WeeklyTransitionIndex> indexes =
+            getWeeklyTransitionIndexes(nearestSchedules);
+        for (int i = 0, size = indexes.size(); i < size; i++) {
+            final int subId = indexes.keyAt(i);
+            final WeeklyTransitionIndex index = indexes.valueAt(i);
+            builder.addSubscription(subId,
+                    index.findNearestBefore(/*subEnabled=*/ true, startTime)
+                    .flatMap((schedule) -> getDateTimeBefore(schedule, startTime)),
+                    index.findNearestBefore(/*subEnabled=*/ false, startTime)
+                    .flatMap((schedule) -> getDateTimeBefore(schedule, startTime)),
+                    getUpcomingDateTimes(index, /*subEnabled=*/ true, startTime),
+                    getUpcomingDateTimes(index, /*subEnabled=*/ false, startTime));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Get the date-times of the upcoming transitions of a SIM subscription, in chronological order.
+     *
+     * @param index The weekly transition index of the subscription.
+     * @param subEnabled The scheduled enabled state of the subscription.
+     * @param startTime The date-time on or after which the transitions occur.
+     * @return At most {@link TransitionPlan#MAX_TRANSITIONS_PER_STATE} date-times.
+     */
+    private static @NonNull List<LocalDateTime> getUpcomingDateTimes(
+            final @NonNull WeeklyTransitionIndex index, final boolean subEnabled,
+            final @NonNull LocalDateTime startTime) {
+
+        final List<LocalDateTime> dateTimes =
+            new ArrayList<>(TransitionPlan.MAX_TRANSITIONS_PER_STATE);
+        LocalDateTime dateTime = startTime;
+        while (dateTimes.size() < TransitionPlan.MAX_TRANSITIONS_PER_STATE) {
+            final LocalDateTime compareTime = dateTime;
+            final Optional<LocalDateTime> nextDateTime = index.findNearestAfter(subEnabled,
+                    compareTime).flatMap((schedule) -> getDateTimeAfter(schedule, compareTime));
+            if (!nextDateTime.isPresent()) {
+                break;
+            }
+            dateTimes.add(nextDateTime.get());
+            dateTime = nextDateTime.get().plusMinutes(1);
+        }
+        return dateTimes;
+    }
+
+    /**
+     * Drop all compiled weekly repeat schedules, so that they will be rebuilt from the database on
+     * next lookup.
+     */
+    private void invalidateWeeklyTransitionIndexCache() {
+        synchronized (mWeeklyTransitionIndexCache) {
+            mWeeklyTransitionIndexCache.clear();
+        }
+    }
+
     /**
      * (Re-)schedule the next iteration processing of SIM subscription weekly repeat schedules.
      *
@@ -436,8 +767,15 @@ public final class SubscriptionScheduler {
         mLogger.d("rescheduleNextScheduleProcessingIter(dateTime=%s).", dateTime);
 
         final long millis = dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        mAlarmManagerLazy.get().setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, millis,
-                getPendingIntent());
+        // Let the receiver measure how late the alarm has fired
+        mAlarmIntent.putExtra(AlarmReceiver.EXTRA_TRIGGER_TIME_MILLIS, millis);
+        Trace.beginSection("SubscriptionScheduler#rescheduleNextScheduleProcessingIter");
+        try {
+            mAlarmManagerLazy.get().setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, millis,
+                    getPendingIntent());
+        } finally {
+            Trace.endSection();
+        }
     }
 
     /**
@@ -449,14 +787,33 @@ public final class SubscriptionScheduler {
     private PendingIntent getPendingIntent() {
         int flags = PendingIntent.FLAG_IMMUTABLE;
         // Since we store the list of clear SIM PIN codes in the intent extra data, we want to
-        // replace the existing data only if the new PIN codes are available, otherwise preserve the
-        // existing extra data
-        if (mAlarmIntent.getExtras() != null) {
+        // replace the existing data only if the new PIN codes are available or there are none to
+        // preserve, otherwise preserve the existing extra data. Note that, in the latter case, the
+        // alarm trigger time will be stale too, but the PIN codes take precedence
+        if (hasClearPinCodes() || !mayHoldClearPinCodes()) {
             flags |= PendingIntent.FLAG_UPDATE_CURRENT;
         }
         return PendingIntent.getBroadcast(mContext, /*requestCode=*/ 0, mAlarmIntent, flags);
     }
 
+    /**
+     * @return {@code true} if the alarm intent carries the clear SIM PIN codes, {@code false}
+     * otherwise.
+     */
+    private boolean hasClearPinCodes() {
+        return mAlarmIntent.hasExtra(AlarmReceiver.EXTRA_CLEAR_PIN_CODES);
+    }
+
+    /**
+     * @return {@code true} if the existing pending operation may carry the clear SIM PIN codes,
+     * {@code false} otherwise.
+     */
+    private boolean mayHoldClearPinCodes() {
+        // The clear SIM PIN codes are only available after the user has unlocked the device since
+        // boot, and the pending operations don't survive a reboot
+        return mUserManagerLazy.get().isUserUnlocked() && mPinStorageLazy.get().getCount() > 0;
+    }
+
     /**
      * Determine the expected SIM subscription enabled state using a closed interval
      * ({@code a<=x<=b}) of two opposite schedules.
@@ -467,48 +824,19 @@ public final class SubscriptionScheduler {
      * @param endDateTime The interval end date-time value. This is expected to be the date-time of
      * the weekly repeat schedule, if any, that should disable the SIM subscription.
      * @param overrideUserPreference Whether the user's preference should NOT take precedence over
-     * schedule intervals. For instance, if the SIM subscription is expected to be disabled, but the
-     * user enabled it manually, then pass {@code false} to keep the state within the allowed
-     * period. Note that, when passed in {@code true}, an opened interval ({@code a<x<b}) will be
-     * used instead for comparison.
+     * schedule intervals.
      * @return {@code true} if the SIM subscription is expected to be enabled, {@code false}
      * otherwise.
+     * @see ScheduleEngine#getExpectedEnabledState
      */
     private static boolean getSubscriptionExpectedEnabledState(final Subscription sub,
             final Optional<LocalDateTime> startDateTime, final Optional<LocalDateTime> endDateTime,
             final boolean overrideUserPreference) {
 
-        if (sub.isSimEnabled()) {
-            return endDateTime.map((end) -> {
-                if (!overrideUserPreference && (sub.getLastActivatedTime().equals(end) ||
-                            sub.getLastActivatedTime().isAfter(end))) {
-                    return true;
-                }
-
-                // Note that, as per TelephonyController specs, turning off a SIM card on a device
-                // using legacy RIL won't persist across boots. On reboot, SIM will turn on
-                // normally, but the user may want it to be turned off until turned on again
-                // manually or through a weekly repeat schedule, if any
-                final boolean keepDisabledAcrossBoots =
-                    Optional.ofNullable(sub.getKeepDisabledAcrossBoots()).orElse(false);
-
-                return startDateTime.map((start) -> start.isAfter(end) &&
-                        sub.getLastDeactivatedTime().isBefore(start) &&
-                        !keepDisabledAcrossBoots).orElse(false);
-            }).orElseGet(() -> {
-                return Optional.ofNullable(sub.getKeepDisabledAcrossBoots()).filter((v) -> v)
-                    .map((v) -> startDateTime.map((start) ->
-                            sub.getLastDeactivatedTime().isBefore(start)).orElse(false))
-                    .orElse(true);
-            });
-        }
-        return startDateTime.map((start) -> {
-            if (!overrideUserPreference && (sub.getLastDeactivatedTime().equals(start) ||
-                        sub.getLastDeactivatedTime().isAfter(start))) {
-                return false;
-            }
-            return endDateTime.map((end) -> end.isBefore(start)).orElse(true);
-        }).orElse(false);
+        return ScheduleEngine.getExpectedEnabledState(sub.isSimEnabled(),
+                sub.getLastActivatedTime(), sub.getLastDeactivatedTime(),
+                sub.getKeepDisabledAcrossBoots(), startDateTime, endDateTime,
+                overrideUserPreference);
     }
 
     /**
@@ -523,26 +851,8 @@ public final class SubscriptionScheduler {
             final @NonNull SubscriptionScheduleEntity schedule,
             final @NonNull LocalDateTime compareTime) {
 
-        if (!schedule.getDaysOfWeek().isRepeating()) {
-            return Optional.empty();
-        }
-
-        final @DayOfWeek int compareDayOfWeek = DaysOfWeek.getDayOfWeekFrom(compareTime);
-        final int distanceToPreviousDay;
-        // Check if the schedule is occurring on the same day
-        if (schedule.getDaysOfWeek().isBitOn(compareDayOfWeek) &&
-                (schedule.getTime().equals(compareTime.toLocalTime()) ||
-                 schedule.getTime().isBefore(compareTime.toLocalTime()))) {
-            distanceToPreviousDay = 0;
-        } else {
-            // Start seeking from the previous day of the week when there's no schedule occurring on
-            // the same day
-            distanceToPreviousDay = schedule.getDaysOfWeek()
-                .getDistanceToPreviousDayOfWeek(compareDayOfWeek)
-                .getAsInt();
-        }
-        return Optional.of(compareTime.minusDays(distanceToPreviousDay)
-                .withHour(schedule.getTime().getHour()).withMinute(schedule.getTime().getMinute()));
+        return ScheduleEngine.getDateTimeBefore(schedule.getDaysOfWeek().getBits(),
+                schedule.getTime(), compareTime);
     }
 
     /**
@@ -557,29 +867,42 @@ public final class SubscriptionScheduler {
             final @NonNull SubscriptionScheduleEntity schedule,
             final @NonNull LocalDateTime compareTime) {
 
-        if (!schedule.getDaysOfWeek().isRepeating()) {
-            return Optional.empty();
+        return ScheduleEngine.getDateTimeAfter(schedule.getDaysOfWeek().getBits(),
+                schedule.getTime(), compareTime);
+    }
+
+    /**
+     * This class holds the nearest SIM subscription weekly repeat schedules that will enable and
+     * disable a particular SIM subscription.
+     */
+    public static final class NearestSchedules {
+        static final NearestSchedules EMPTY = new NearestSchedules(Optional.empty(),
+                Optional.empty());
+
+        private final Optional<SubscriptionScheduleEntity> mEnableSchedule;
+        private final Optional<SubscriptionScheduleEntity> mDisableSchedule;
+
+        NearestSchedules(final Optional<SubscriptionScheduleEntity> enableSchedule,
+                final Optional<SubscriptionScheduleEntity> disableSchedule) {
+
+            mEnableSchedule = enableSchedule;
+            mDisableSchedule = disableSchedule;
         }
 
-        @DayOfWeek int compareDayOfWeek = DaysOfWeek.getDayOfWeekFrom(compareTime);
-        final int distanceToNextDay;
-        // Check if the schedule is occurring on the same day
-        if (schedule.getDaysOfWeek().isBitOn(compareDayOfWeek) &&
-                (schedule.getTime().equals(compareTime.toLocalTime()) ||
-                 schedule.getTime().isAfter(compareTime.toLocalTime()))) {
-            distanceToNextDay = 0;
-        } else {
-            compareDayOfWeek++; // skip the current day
-            if (compareDayOfWeek > DayOfWeek.SATURDAY) {
-                compareDayOfWeek = DayOfWeek.SUNDAY;
-            }
-            // Start seeking from the next day of the week when there's no schedule occurring on the
-            // same day
-            distanceToNextDay = schedule.getDaysOfWeek()
-                .getDistanceToNextDayOfWeek(compareDayOfWeek)
-                .getAsInt() + 1;
+        /**
+         * @param subEnabled The scheduled enabled state of the subscription.
+         * @return An Optional containing the schedule, if any.
+         */
+        public Optional<SubscriptionScheduleEntity> get(final boolean subEnabled) {
+            return subEnabled ? mEnableSchedule : mDisableSchedule;
+        }
+
+        @Override
+        public String toString() {
+            return "NearestSchedules {"
+                + " enableSchedule=" + mEnableSchedule
+                + " disableSchedule=" + mDisableSchedule
+                + " }";
         }
-        return Optional.of(compareTime.plusDays(distanceToNextDay)
-                .withHour(schedule.getTime().getHour()).withMinute(schedule.getTime().getMinute()));
     }
 }
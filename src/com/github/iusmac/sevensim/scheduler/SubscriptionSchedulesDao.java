@@ -5,40 +5,21 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
 import androidx.room.RewriteQueriesToDropUnusedColumns;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @Dao
 public interface SubscriptionSchedulesDao {
-    @Insert
-    List<Long> insertAll(List<SubscriptionScheduleEntity> scheduleEntities);
-
-    @Update
-    void updateAll(List<SubscriptionScheduleEntity> scheduleEntities);
-
-    @Delete
-    void deleteAll(List<SubscriptionScheduleEntity> scheduleEntities);
-
-    @Query("SELECT * FROM subscription_schedules WHERE sub_id = :subId")
-    List<SubscriptionScheduleEntity> findAllBySubscriptionId(int subId);
-
     /**
-     * Search for the nearest SIM subscription weekly repeat schedule that occurs on or after the
-     * given day of the week and time.
-     *
-     * @param subId The ID of the subscription.
-     * @param subEnabled The scheduled enabled state of the subscription.
-     * @param dayOfWeek Any of {@link DayOfWeek} values.
-     * @param time Time as seen on a wall clock.
-     * @param reverseSearch Whether to search for the nearest schedule that occurs on or before the
-     * given day of the week and time.
-     * @return An Optional containing the {@link SubscriptionScheduleEntity} instance, if any.
+     * The query of {@link #findNearestByDayOfWeekAndTime(int,boolean,int,LocalTime,boolean)}. It's
+     * kept as a constant, so that its query plan can be checked against the index.
      */
-    @RewriteQueriesToDropUnusedColumns
-    @Query("SELECT *,"
+    String FIND_NEAREST_BY_DAY_OF_WEEK_AND_TIME_QUERY = "SELECT *,"
             // Auxiliary fields to make the placeholder substitution easier for the Room lib
             + ":dayOfWeek AS day_of_week, :time AS time "
         + "FROM subscription_schedules "
@@ -78,10 +59,79 @@ public interface SubscriptionSchedulesDao {
                 + "WHEN days_of_week_bits & (1 << (day_of_week + 6) % 7) > 0 THEN -7 " // -7 days
             + "END "
         + "END * 24 * 60 + minutes_since_midnight - time) "
-    + "LIMIT 1")
+    + "LIMIT 1";
+
+    /** The query of {@link #findAllSubscriptionIds()}. */
+    String FIND_ALL_SUBSCRIPTION_IDS_QUERY = "SELECT DISTINCT sub_id FROM subscription_schedules";
+
+    @Insert
+    List<Long> insertAll(List<SubscriptionScheduleEntity> scheduleEntities);
+
+    @Update
+    void updateAll(List<SubscriptionScheduleEntity> scheduleEntities);
+
+    @Delete
+    void deleteAll(List<SubscriptionScheduleEntity> scheduleEntities);
+
+    @Query("SELECT * FROM subscription_schedules WHERE sub_id = :subId")
+    List<SubscriptionScheduleEntity> findAllBySubscriptionId(int subId);
+
+    @Query("SELECT * FROM subscription_schedules")
+    List<SubscriptionScheduleEntity> loadAll();
+
+    /**
+     * @return The IDs of all SIM subscriptions having weekly repeat schedules.
+     */
+    @Query(FIND_ALL_SUBSCRIPTION_IDS_QUERY)
+    List<Integer> findAllSubscriptionIds();
+
+    /**
+     * Search for the nearest SIM subscription weekly repeat schedule that occurs on or after the
+     * given day of the week and time.
+     *
+     * @param subId The ID of the subscription.
+     * @param subEnabled The scheduled enabled state of the subscription.
+     * @param dayOfWeek Any of {@link DayOfWeek} values.
+     * @param time Time as seen on a wall clock.
+     * @param reverseSearch Whether to search for the nearest schedule that occurs on or before the
+     * given day of the week and time.
+     * @return An Optional containing the {@link SubscriptionScheduleEntity} instance, if any.
+     */
+    @RewriteQueriesToDropUnusedColumns
+    @Query(FIND_NEAREST_BY_DAY_OF_WEEK_AND_TIME_QUERY)
     Optional<SubscriptionScheduleEntity> findNearestByDayOfWeekAndTime(int subId,
             boolean subEnabled, @DayOfWeek int dayOfWeek, LocalTime time, boolean reverseSearch);
 
+    /**
+     * Like {@link #findNearestByDayOfWeekAndTime(int,boolean,int,LocalTime,boolean)}, but search
+     * for the nearest SIM subscription weekly repeat schedule of each subscription and scheduled
+     * enabled state at once.
+     *
+     * <p>The schedules are looked up per subscription and scheduled enabled state, so that every
+     * lookup is a search on the index, rather than a scan of the whole table. All lookups are done
+     * in a single transaction.
+     *
+     * @param dayOfWeek Any of {@link DayOfWeek} values.
+     * @param time Time as seen on a wall clock.
+     * @param reverseSearch Whether to search for the nearest schedules that occur on or before the
+     * given day of the week and time.
+     * @return The list containing at most one {@link SubscriptionScheduleEntity} instance per
+     * subscription and scheduled enabled state.
+     */
+    @Transaction
+    default List<SubscriptionScheduleEntity> findAllNearestByDayOfWeekAndTime(
+            @DayOfWeek int dayOfWeek, LocalTime time, boolean reverseSearch) {
+
+        final List<SubscriptionScheduleEntity> schedules = new ArrayList<>();
+        for (final int subId : findAllSubscriptionIds()) {
+            findNearestByDayOfWeekAndTime(subId, /*subEnabled=*/ true, dayOfWeek, time,
+                    reverseSearch).ifPresent(schedules::add);
+            findNearestByDayOfWeekAndTime(subId, /*subEnabled=*/ false, dayOfWeek, time,
+                    reverseSearch).ifPresent(schedules::add);
+        }
+        return schedules;
+    }
+
     /**
      * Get the total number of weekly repeat schedules for a particular SIM subscription.
      *
@@ -0,0 +1,289 @@
+package com.github.iusmac.sevensim.scheduler;
+
+import androidx.annotation.NonNull;
+import androidx.collection.SparseArrayCompat;
+
+import com.github.iusmac.sevensim.engine.TypeCodecs;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>This class is a precomputed plan of the upcoming transitions of the weekly repeat schedules of
+ * all SIM subscriptions, starting from a particular date-time. For each SIM subscription, the plan
+ * holds the nearest transitions that occurred on or before the start time, and up to
+ * {@link #MAX_TRANSITIONS_PER_STATE} transitions that will occur on or after the start time, per
+ * scheduled enabled state.
+ *
+ * <p>The plan is valid from its start time up to its horizon, i.e., the earliest date-time after
+ * which the plan may miss a transition of any SIM subscription. Within this interval, the nearest
+ * schedules can be resolved without querying the database. SIM subscriptions missing from the plan
+ * have no weekly repeat schedules.
+ *
+ * <p>All date-times are kept as epoch minutes, see {@link TypeCodecs#toEpochMinutes}.
+ *
+ * <p>This class is <strong>immutable</strong>, thus also <strong>thread-safe</strong>.
+ */
+final class TransitionPlan {
+    /** The maximum number of upcoming transitions to plan per SIM subscription enabled state. */
+    static final int MAX_TRANSITIONS_PER_STATE = 8;
+
+    /** The value of the epoch minutes representing the absence of a transition. */
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final long mStartTime;
+    private final long mHorizon;
+    private final SparseArrayCompat<SubscriptionPlan> mSubscriptionPlans;
+
+    private TransitionPlan(final long startTime, final long horizon,
+            final SparseArrayCompat<SubscriptionPlan> subscriptionPlans) {
+
+        mStartTime = startTime;
+        mHorizon = horizon;
+        mSubscriptionPlans = subscriptionPlans;
+    }
+
+    /**
+     * @param dateTime The date-time object to check.
+     * @return {@code true} if the plan can resolve the nearest transitions on or before/after the
+     * given date-time, {@code false} otherwise.
+     */
+    boolean covers(final @NonNull LocalDateTime dateTime) {
+        final long minutes = TypeCodecs.toEpochMinutes(dateTime);
+        return minutes >= mStartTime && minutes <= mHorizon;
+    }
+
+    /**
+     * Find the date-time of the nearest transition that occurs on or before the given date-time.
+     *
+     * @param subId The ID of the subscription.
+     * @param subEnabled The scheduled enabled state of the subscription.
+     * @param dateTime The date-time object covered by the plan.
+     * @return An Optional containing the date-time of the transition, if any.
+     */
+    Optional<LocalDateTime> findNearestBefore(final int subId, final boolean subEnabled,
+            final @NonNull LocalDateTime dateTime) {
+
+        final SubscriptionPlan subPlan = mSubscriptionPlans.get(subId);
+        if (subPlan == null) {
+            return Optional.empty();
+        }
+
+        final long minutes = TypeCodecs.toEpochMinutes(dateTime);
+        long nearest = subPlan.getLastTransitionBefore(subEnabled);
+        for (final long transition : subPlan.getTransitions(subEnabled)) {
+            if (transition > minutes) {
+                break;
+            }
+            nearest = transition;
+        }
+        return toDateTime(nearest);
+    }
+
+    /**
+     * Find the date-time of the nearest transition that occurs on or after the given date-time.
+     *
+     * @param subId The ID of the subscription.
+     * @param subEnabled The scheduled enabled state of the subscription.
+     * @param dateTime The date-time object covered by the plan.
+     * @return An Optional containing the date-time of the transition, if any.
+     */
+    Optional<LocalDateTime> findNearestAfter(final int subId, final boolean subEnabled,
+            final @NonNull LocalDateTime dateTime) {
+
+        final SubscriptionPlan subPlan = mSubscriptionPlans.get(subId);
+        if (subPlan == null) {
+            return Optional.empty();
+        }
+
+        final long minutes = TypeCodecs.toEpochMinutes(dateTime);
+        for (final long transition : subPlan.getTransitions(subEnabled)) {
+            if (transition >= minutes) {
+                return toDateTime(transition);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Serialize the plan into a compact binary form.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If the plan cannot be written.
+     */
+    void writeTo(final @NonNull DataOutputStream out) throws IOException {
+        out.writeLong(mStartTime);
+        out.writeLong(mHorizon);
+        out.writeInt(mSubscriptionPlans.size());
+        for (int i = 0, size = mSubscriptionPlans.size(); i < size; i++) {
+            final SubscriptionPlan subPlan = mSubscriptionPlans.valueAt(i);
+            out.writeInt(mSubscriptionPlans.keyAt(i));
+            out.writeLong(subPlan.mLastEnableTransition);
+            out.writeLong(subPlan.mLastDisableTransition);
+            writeTransitions(out, subPlan.mEnableTransitions);
+            writeTransitions(out, subPlan.mDisableTransitions);
+        }
+    }
+
+    /**
+     * Deserialize the plan written via {@link #writeTo(DataOutputStream)}.
+     *
+     * @param in The stream to read from.
+     * @return The plan.
+     * @throws IOException If the plan cannot be read or is malformed.
+     */
+    static @NonNull TransitionPlan readFrom(final @NonNull DataInputStream in) throws IOException {
+        final long startTime = in.readLong();
+        final long horizon = in.readLong();
+        final int subCount = in.readInt();
+        if (subCount < 0) {
+            throw new IOException("Malformed subscription count: " + subCount);
+        }
+
+        final SparseArrayCompat<SubscriptionPlan> subscriptionPlans =
+            new SparseArrayCompat<>(subCount);
+        for (int i = 0; i < subCount; i++) {
+            final int subId = in.readInt();
+            final long lastEnableTransition = in.readLong();
+            final long lastDisableTransition = in.readLong();
+            subscriptionPlans.put(subId, new SubscriptionPlan(lastEnableTransition,
+                        lastDisableTransition, readTransitions(in), readTransitions(in)));
+        }
+        return new TransitionPlan(startTime, horizon, subscriptionPlans);
+    }
+
+    private static void writeTransitions(final DataOutputStream out, final long[] transitions)
+            throws IOException {
+
+        out.writeByte(transitions.length);
+        for (final long transition : transitions) {
+            out.writeLong(transition);
+        }
+    }
+
+    private static long[] readTransitions(final DataInputStream in) throws IOException {
+        final int count = in.readUnsignedByte();
+        if (count > MAX_TRANSITIONS_PER_STATE) {
+            throw new IOException("Malformed transition count: " + count);
+        }
+
+        final long[] transitions = new long[count];
+        for (int i = 0; i < count; i++) {
+            transitions[i] = in.readLong();
+        }
+        return transitions;
+    }
+
+    private static Optional<LocalDateTime> toDateTime(final long minutes) {
+        return minutes == NONE ? Optional.empty() :
+            Optional.of(TypeCodecs.fromEpochMinutes(minutes));
+    }
+
+    private static long toMinutes(final Optional<LocalDateTime> dateTime) {
+        return dateTime.map(TypeCodecs::toEpochMinutes).orElse(NONE);
+    }
+
+    @Override
+    public String toString() {
+        return "TransitionPlan {"
+            + " startTime=" + TypeCodecs.fromEpochMinutes(mStartTime)
+            + " horizon=" + (mHorizon == Long.MAX_VALUE ? "none" :
+                    TypeCodecs.fromEpochMinutes(mHorizon))
+            + " subCount=" + mSubscriptionPlans.size()
+            + " }";
+    }
+
+    /** A helper class for building a {@link TransitionPlan}. */
+    static final class Builder {
+        private final long mStartTime;
+        private final SparseArrayCompat<SubscriptionPlan> mSubscriptionPlans =
+            new SparseArrayCompat<>();
+
+        /**
+         * @param startTime The date-time the plan starts at.
+         */
+        Builder(final @NonNull LocalDateTime startTime) {
+            mStartTime = TypeCodecs.toEpochMinutes(startTime);
+        }
+
+        /**
+         * Add the transitions of a SIM subscription to the plan.
+         *
+         * @param subId The ID of the subscription.
+         * @param lastEnableTime The date-time of the nearest transition that enabled the
+         * subscription on or before the start time, if any.
+         * @param lastDisableTime The date-time of the nearest transition that disabled the
+         * subscription on or before the start time, if any.
+         * @param enableTimes The sorted date-times of the upcoming transitions that will enable
+         * the subscription, on or after the start time.
+         * @param disableTimes The sorted date-times of the upcoming transitions that will disable
+         * the subscription, on or after the start time.
+         * @return This builder.
+         */
+        @NonNull Builder addSubscription(final int subId,
+                final Optional<LocalDateTime> lastEnableTime,
+                final Optional<LocalDateTime> lastDisableTime,
+                final @NonNull List<LocalDateTime> enableTimes,
+                final @NonNull List<LocalDateTime> disableTimes) {
+
+            mSubscriptionPlans.put(subId, new SubscriptionPlan(toMinutes(lastEnableTime),
+                        toMinutes(lastDisableTime), toTransitions(enableTimes),
+                        toTransitions(disableTimes)));
+            return this;
+        }
+
+        @NonNull TransitionPlan build() {
+            // The plan is only as far-reaching as the shortest list of upcoming transitions, as
+            // past its last transition, the plan can no longer tell the nearest one after
+            long horizon = Long.MAX_VALUE;
+            for (int i = 0, size = mSubscriptionPlans.size(); i < size; i++) {
+                final SubscriptionPlan subPlan = mSubscriptionPlans.valueAt(i);
+                horizon = Math.min(horizon, getLast(subPlan.mEnableTransitions));
+                horizon = Math.min(horizon, getLast(subPlan.mDisableTransitions));
+            }
+            return new TransitionPlan(mStartTime, horizon, mSubscriptionPlans.clone());
+        }
+
+        private static long[] toTransitions(final List<LocalDateTime> dateTimes) {
+            final int count = Math.min(dateTimes.size(), MAX_TRANSITIONS_PER_STATE);
+            final long[] transitions = new long[count];
+            for (int i = 0; i < count; i++) {
+                transitions[i] = TypeCodecs.toEpochMinutes(dateTimes.get(i));
+            }
+            return transitions;
+        }
+
+        private static long getLast(final long[] transitions) {
+            return transitions.length > 0 ? transitions[transitions.length - 1] : Long.MAX_VALUE;
+        }
+    }
+
+    /** The transitions of a particular SIM subscription, in epoch minutes. */
+    private static final class SubscriptionPlan {
+        final long mLastEnableTransition;
+        final long mLastDisableTransition;
+        final long[] mEnableTransitions;
+        final long[] mDisableTransitions;
+
+        SubscriptionPlan(final long lastEnableTransition, final long lastDisableTransition,
+                final long[] enableTransitions, final long[] disableTransitions) {
+
+            mLastEnableTransition = lastEnableTransition;
+            mLastDisableTransition = lastDisableTransition;
+            mEnableTransitions = enableTransitions;
+            mDisableTransitions = disableTransitions;
+        }
+
+        long getLastTransitionBefore(final boolean subEnabled) {
+            return subEnabled ? mLastEnableTransition : mLastDisableTransition;
+        }
+
+        long[] getTransitions(final boolean subEnabled) {
+            return subEnabled ? mEnableTransitions : mDisableTransitions;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.iusmac.sevensim.scheduler;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.iusmac.sevensim.Diagnostics;
+import com.github.iusmac.sevensim.Logger;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * <p>This class persists the {@link TransitionPlan} computed when arming the alarm of the next
+ * iteration processing of the weekly repeat schedules, so that when the alarm goes off, even in a
+ * fresh process, the scheduler can act on the plan without querying the database.
+ *
+ * <p>The plan is kept in the device encrypted storage, so that it's available before the user
+ * unlocks the device, and is written atomically, so that a crash never leaves a partial plan.
+ *
+ * <p>This class is <strong>thread-safe</strong>.
+ */
+@Singleton
+public final class TransitionPlanStore {
+    private static final String FILE_NAME = "transition_plan.bin";
+
+    private static final int MAGIC = 0x37535450; // 7STP
+    private static final int VERSION = 1;
+
+    private final Logger mLogger;
+    private final Diagnostics mDiagnostics;
+    private final AtomicFile mFile;
+
+    /** The plan currently in effect, if loaded. */
+    @GuardedBy("this")
+    private TransitionPlan mPlan;
+
+    @GuardedBy("this")
+    private boolean mIsLoaded;
+
+    @Inject
+    public TransitionPlanStore(final @ApplicationContext Context context,
+            final Logger.Factory loggerFactory, final Diagnostics diagnostics) {
+
+        mLogger = loggerFactory.create(getClass().getSimpleName());
+        mDiagnostics = diagnostics;
+        mFile = new AtomicFile(new File(context.createDeviceProtectedStorageContext().getFilesDir(),
+                    FILE_NAME));
+    }
+
+    /**
+     * Get the plan in effect, if it covers the given date-time.
+     *
+     * @param dateTime The date-time object the plan must cover.
+     * @return The plan, or {@code null} if it's missing or stale.
+     */
+    synchronized @Nullable TransitionPlan get(final @NonNull LocalDateTime dateTime) {
+        if (!mIsLoaded) {
+            mPlan = load();
+            mIsLoaded = true;
+        }
+
+        final boolean isCovered = mPlan != null && mPlan.covers(dateTime);
+        mDiagnostics.increment(isCovered ? "transition_plan_hit" : "transition_plan_miss");
+
+        mLogger.v("get(dateTime=%s) : isCovered=%s,plan=%s.", dateTime, isCovered, mPlan);
+
+        return isCovered ? mPlan : null;
+    }
+
+    /**
+     * Replace the plan in effect.
+     *
+     * @param plan The new plan.
+     */
+    synchronized void set(final @NonNull TransitionPlan plan) {
+        mLogger.d("set(plan=%s).", plan);
+
+        mPlan = plan;
+        mIsLoaded = true;
+
+        FileOutputStream fos = null;
+        try {
+            fos = mFile.startWrite();
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            plan.writeTo(out);
+            out.flush();
+            mFile.finishWrite(fos);
+        } catch (IOException e) {
+            mLogger.e("set() : Failed to write the plan.", e);
+            if (fos != null) {
+                mFile.failWrite(fos);
+            }
+        }
+    }
+
+    /**
+     * Drop the plan in effect, so that the nearest schedules will be resolved from the database
+     * until a new plan is set.
+     */
+    synchronized void invalidate() {
+        mLogger.d("invalidate().");
+
+        mPlan = null;
+        mIsLoaded = true;
+        mFile.delete();
+    }
+
+    @GuardedBy("this")
+    private @Nullable TransitionPlan load() {
+        try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(mFile.openRead()))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                mLogger.w("load() : Discarding the plan of an unknown format.");
+                return null;
+            }
+            return TransitionPlan.readFrom(in);
+        } catch (FileNotFoundException ignored) {
+            return null;
+        } catch (IOException e) {
+            mLogger.e("load() : Failed to read the plan.", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.iusmac.sevensim.scheduler;
+
+import androidx.annotation.NonNull;
+
+import com.github.iusmac.sevensim.engine.WeeklyTransitions;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>This class is a compiled form of all weekly repeat schedules of a particular SIM
+ * subscription, where each schedule is unfolded into its transitions, i.e., the minutes of the
+ * week at which the schedule will enable or disable the SIM subscription.
+ *
+ * <p>The transitions are kept sorted in {@link WeeklyTransitions}, so that the nearest schedule
+ * that occurs on or before/after a given date-time can be resolved using a binary search, without
+ * querying the database.
+ *
+ * <p>This class is <strong>immutable</strong>, thus also <strong>thread-safe</strong>. Note that,
+ * the {@link SubscriptionScheduleEntity} instances returned by this class are shared, and
+ * <strong>must not</strong> be mutated.
+ */
+final class WeeklyTransitionIndex {
+    /** The index representing a SIM subscription without weekly repeat schedules. */
+    static final WeeklyTransitionIndex EMPTY = new WeeklyTransitionIndex(new ArrayList<>(0));
+
+    /** The sorted transitions of the schedules that will enable the SIM subscription. */
+    private final WeeklyTransitions<SubscriptionScheduleEntity> mEnableTransitions;
+
+    /** The sorted transitions of the schedules that will disable the SIM subscription. */
+    private final WeeklyTransitions<SubscriptionScheduleEntity> mDisableTransitions;
+
+    /**
+     * @param schedules The weekly repeat schedules of a SIM subscription to compile. Disabled and
+     * non-repeating schedules will be skipped.
+     */
+    WeeklyTransitionIndex(final @NonNull List<SubscriptionScheduleEntity> schedules) {
+        final WeeklyTransitions.Builder<SubscriptionScheduleEntity> enableTransitions =
+            new WeeklyTransitions.Builder<>();
+        final WeeklyTransitions.Builder<SubscriptionScheduleEntity> disableTransitions =
+            new WeeklyTransitions.Builder<>();
+        for (final SubscriptionScheduleEntity schedule : schedules) {
+            if (!schedule.getEnabled() || !schedule.getDaysOfWeek().isRepeating()) {
+                continue;
+            }
+            (schedule.getSubscriptionEnabled() ? enableTransitions : disableTransitions)
+                .add(schedule.getDaysOfWeek().getBits(), schedule.getTime(), schedule);
+        }
+        mEnableTransitions = enableTransitions.build();
+        mDisableTransitions = disableTransitions.build();
+    }
+
+    /**
+     * Find the weekly repeat schedule that occurs on or before the given date-time.
+     *
+     * @param subEnabled The scheduled enabled state of the subscription.
+     * @param dateTime The date-time object used for finding the nearest schedule.
+     * @return An Optional containing the schedule, if any.
+     */
+    Optional<SubscriptionScheduleEntity> findNearestBefore(final boolean subEnabled,
+            final @NonNull LocalDateTime dateTime) {
+
+        return getTransitions(subEnabled).findNearestBefore(dateTime);
+    }
+
+    /**
+     * Find the weekly repeat schedule that occurs on or after the given date-time.
+     *
+     * @param subEnabled The scheduled enabled state of the subscription.
+     * @param dateTime The date-time object used for finding the nearest schedule.
+     * @return An Optional containing the schedule, if any.
+     */
+    Optional<SubscriptionScheduleEntity> findNearestAfter(final boolean subEnabled,
+            final @NonNull LocalDateTime dateTime) {
+
+        return getTransitions(subEnabled).findNearestAfter(dateTime);
+    }
+
+    private WeeklyTransitions<SubscriptionScheduleEntity> getTransitions(
+            final boolean subEnabled) {
+
+        return subEnabled ? mEnableTransitions : mDisableTransitions;
+    }
+
+    @Override
+    public String toString() {
+        return "WeeklyTransitionIndex {"
+            + " enableTransitions=" + mEnableTransitions
+            + " disableTransitions=" + mDisableTransitions
+            + " }";
+    }
+}
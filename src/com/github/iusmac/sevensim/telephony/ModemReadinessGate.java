@@ -0,0 +1,209 @@
+package com.github.iusmac.sevensim.telephony;
+
+import android.os.SystemClock;
+import android.telephony.TelephonyManager;
+import android.util.SparseLongArray;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.WorkerThread;
+
+import com.github.iusmac.sevensim.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * <p>The responsibility of this class is to tell when the modem has settled after a SIM power state
+ * change request, so that the next request can be safely performed. On devices using the legacy
+ * Radio Interface Layer (RIL), the modem may hang when rapidly toggling one SIM after another,
+ * which requires manually removing/re-inserting the SIM.
+ *
+ * <p>The SIM slot is considered settled as soon as the {@link TelephonyManager.SimState} reaches
+ * a terminal state, or when the wait times out. The observed settle time is recorded per SIM slot
+ * as an exponentially weighted moving average, that is used to shorten the timeout for modems
+ * that are known to settle fast. A wait that times out isn't recorded, as the actual settle time
+ * is unknown, so the modems that never emit the terminal state keep waiting for the upper bound.
+ *
+ * <p>This class is <strong>thread-safe</strong>.
+ *
+ * @see TelephonyController
+ */
+@Singleton
+public final class ModemReadinessGate {
+    /** The upper bound of the time to wait for a SIM slot to settle. */
+    private static final long MAX_SETTLE_TIMEOUT_MILLIS = 5_000;
+
+    /** The lower bound of the time to wait for a SIM slot to settle. */
+    private static final long MIN_SETTLE_TIMEOUT_MILLIS = 500;
+
+    /** The safety margin applied to the average settle time when computing the timeout. */
+    private static final int SETTLE_TIMEOUT_MULTIPLIER = 2;
+
+    /** The weight in percent of the newest settle time sample in the moving average. */
+    private static final int SETTLE_TIME_SAMPLE_WEIGHT_PERCENT = 30;
+
+    private final Logger mLogger;
+    private final SubscriptionsImplLegacy mSubscriptions;
+
+    /** The elapsed realtime of the last SIM power state change request per SIM slot. */
+    @GuardedBy("this")
+    private final SparseLongArray mPendingSlots = new SparseLongArray(2);
+
+    /** The average settle time per SIM slot. */
+    @GuardedBy("this")
+    private final SparseLongArray mAverageSettleTimes = new SparseLongArray(2);
+
+    private final Subscriptions.OnSimStatusChangedListener mSimStatusChangedListener =
+        this::onSimStatusChanged;
+
+    @GuardedBy("this")
+    private boolean mListening;
+
+    @Inject
+    public ModemReadinessGate(final Logger.Factory loggerFactory,
+            final SubscriptionsImplLegacy subscriptions) {
+
+        mLogger = loggerFactory.create(getClass().getSimpleName());
+        mSubscriptions = subscriptions;
+    }
+
+    /**
+     * Mark the SIM slot as unsettled. This should be called right before performing the SIM power
+     * state change request.
+     *
+     * @param slotIndex The slot index of the SIM card whose power state is being changed.
+     */
+    public void arm(final int slotIndex) {
+        mLogger.v("arm(slotIndex=%d).", slotIndex);
+
+        synchronized (this) {
+            mPendingSlots.put(slotIndex, SystemClock.elapsedRealtime());
+
+            if (!mListening) {
+                mListening = true;
+                mSubscriptions.addOnSimStatusChangedListener(mSimStatusChangedListener);
+            }
+        }
+    }
+
+    /**
+     * Mark the SIM slot as settled without recording the settle time. This should be called when
+     * the SIM power state change request was aborted before reaching the modem.
+     *
+     * @param slotIndex The slot index previously passed to {@link #arm(int)}.
+     */
+    public void disarm(final int slotIndex) {
+        mLogger.v("disarm(slotIndex=%d).", slotIndex);
+
+        synchronized (this) {
+            mPendingSlots.delete(slotIndex);
+            notifyAll();
+            stopListeningIfIdle();
+        }
+    }
+
+    /**
+     * Block until all SIM slots previously passed to {@link #arm(int)} are settled or their timeout
+     * elapses. This returns immediately if there are no unsettled SIM slots.
+     */
+    @WorkerThread
+    public void awaitAllReady() {
+        synchronized (this) {
+            while (mPendingSlots.size() > 0) {
+                final int slotIndex = mPendingSlots.keyAt(0);
+                final long armedAt = mPendingSlots.valueAt(0);
+                final long remainingMillis = armedAt + getSettleTimeoutMillis(slotIndex) -
+                    SystemClock.elapsedRealtime();
+
+                if (remainingMillis <= 0) {
+                    mLogger.w("awaitAllReady() : Timed out waiting for slotIndex=%d.", slotIndex);
+                    // Don't record the settle time, as the modem may settle much later, if ever
+                    mPendingSlots.removeAt(0);
+                    continue;
+                }
+
+                try {
+                    wait(remainingMillis);
+                } catch (InterruptedException e) {
+                    mLogger.w("awaitAllReady() : Wait interrupted.");
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            stopListeningIfIdle();
+        }
+    }
+
+    /**
+     * @param slotIndex The corresponding SIM slot index.
+     * @return The time to wait for the SIM slot to settle based on its average settle time.
+     */
+    @GuardedBy("this")
+    private long getSettleTimeoutMillis(final int slotIndex) {
+        final long averageSettleTime = mAverageSettleTimes.get(slotIndex, -1);
+        if (averageSettleTime < 0) {
+            return MAX_SETTLE_TIMEOUT_MILLIS;
+        }
+        return Math.max(MIN_SETTLE_TIMEOUT_MILLIS, Math.min(MAX_SETTLE_TIMEOUT_MILLIS,
+                    averageSettleTime * SETTLE_TIMEOUT_MULTIPLIER));
+    }
+
+    /**
+     * Mark the SIM slot as settled and record the observed settle time.
+     *
+     * @param slotIndex The corresponding SIM slot index.
+     * @param armedAt The elapsed realtime of the SIM power state change request.
+     */
+    @GuardedBy("this")
+    private void onSettled(final int slotIndex, final long armedAt) {
+        final long settleTime = SystemClock.elapsedRealtime() - armedAt;
+        final long averageSettleTime = mAverageSettleTimes.get(slotIndex, -1);
+        final long newAverageSettleTime = averageSettleTime < 0 ? settleTime :
+            (settleTime * SETTLE_TIME_SAMPLE_WEIGHT_PERCENT +
+             averageSettleTime * (100 - SETTLE_TIME_SAMPLE_WEIGHT_PERCENT)) / 100;
+
+        mLogger.d("onSettled(slotIndex=%d) : settleTime=%d,averageSettleTime=%d.", slotIndex,
+                settleTime, newAverageSettleTime);
+
+        mAverageSettleTimes.put(slotIndex, newAverageSettleTime);
+        mPendingSlots.delete(slotIndex);
+        notifyAll();
+    }
+
+    @GuardedBy("this")
+    private void stopListeningIfIdle() {
+        if (mListening && mPendingSlots.size() == 0) {
+            mListening = false;
+            mSubscriptions.removeOnSimStatusChangedListener(mSimStatusChangedListener);
+        }
+    }
+
+    private void onSimStatusChanged(final int slotIndex,
+            final @TelephonyManager.SimState int state) {
+
+        mLogger.v("onSimStatusChanged(slotIndex=%d,state=%d).", slotIndex, state);
+
+        // Filter out all transitional states, as the modem is still busy
+        switch (state) {
+            case TelephonyManager.SIM_STATE_ABSENT: // 1
+            case TelephonyManager.SIM_STATE_PIN_REQUIRED: // 2
+            case TelephonyManager.SIM_STATE_PUK_REQUIRED: // 3
+            case TelephonyManager.SIM_STATE_NETWORK_LOCKED: // 4
+            case TelephonyManager.SIM_STATE_PERM_DISABLED: // 7
+            case TelephonyManager.SIM_STATE_CARD_IO_ERROR: // 8
+            case TelephonyManager.SIM_STATE_CARD_RESTRICTED: // 9
+            case TelephonyManager.SIM_STATE_LOADED: // 10
+                break;
+            default: return;
+        }
+
+        synchronized (this) {
+            final int index = mPendingSlots.indexOfKey(slotIndex);
+            if (index >= 0) {
+                onSettled(slotIndex, mPendingSlots.valueAt(index));
+                stopListeningIfIdle();
+            }
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package com.github.iusmac.sevensim.telephony;
 
 import android.content.Context;
+import android.os.Handler;
 import android.os.RemoteException;
 import android.os.ServiceManager;
-import android.telephony.SubscriptionManager;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.telephony.TelephonyManager;
 
+import androidx.annotation.AnyThread;
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.collection.SparseArrayCompat;
 
 import com.android.internal.telephony.ITelephony;
 
+import com.github.iusmac.sevensim.Diagnostics;
 import com.github.iusmac.sevensim.Logger;
 import com.github.iusmac.sevensim.NotificationManager;
 import com.github.iusmac.sevensim.Utils;
@@ -22,18 +27,37 @@ import dagger.assisted.AssistedFactory;
 import dagger.assisted.AssistedInject;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <p>This class will attempt to unlock all enabled SIM cards currently available in the system
  * using {@link PinEntity}s passed in when constructing this class via {@link Factory#create(List)}.
  *
- * <p>The work will be offloaded onto a separate thread after invoking the {@link #start()} method.
- * It's possible to start slightly before the SIM cards are in {@code PIN_REQUIRED} state; if
- * necessary, we'll wait a maximum of 10 seconds for them to enter into the PIN state.
+ * <p>The work will be offloaded onto the shared {@link SimPinFeederExecutor} after invoking the
+ * {@link #start()} method, which returns a future that completes asynchronously. It's possible to
+ * start slightly before the SIM cards are in {@code PIN_REQUIRED} state; if necessary, we'll wait a
+ * maximum of 10 seconds for them to enter into the PIN state.
+ *
+ * <p>The SIM cards are unlocked concurrently on a bounded pool of threads as soon as each of them
+ * enters into the PIN state, so that a slow SIM card won't delay the others.
  */
-public final class SimPinFeeder extends Thread {
-    private boolean mSimStatusChanged;
+public final class SimPinFeeder {
+    /** The time to wait for more SIM status change events before finishing. */
+    private static final long SIM_STATUS_WAIT_TIMEOUT_MILLIS = 10_000;
+
+    private final Object mTimeoutToken = new Object();
+    private final CompletableFuture<Void> mResult = new CompletableFuture<>();
+    private final SimStatusChangedListener mSimStatusChangedListener =
+        new SimStatusChangedListener();
+
+    @GuardedBy("this")
+    private boolean mStarted;
+
     private volatile boolean mReleased;
+
+    // The following fields are confined to the thread of the SimPinFeederExecutor's handler
+    private boolean mListening;
+    private boolean mFinished;
     private final SparseArrayCompat<PinEntity> mPinEntities;
     private final SparseArrayCompat<SimCard> mSimCardsCache = new SparseArrayCompat<>();
 
@@ -42,12 +66,16 @@ public final class SimPinFeeder extends Thread {
     private final TelephonyManager mTelephonyManager;
     private final Lazy<PinStorage> mPinStorageLazy;
     private final Lazy<NotificationManager> mNotificationManagerLazy;
+    private final SimPinFeederExecutor mExecutor;
+    private final Handler mHandler;
+    private final Diagnostics mDiagnostics;
 
     @AssistedInject
     SimPinFeeder(final Logger.Factory loggerFactory, final Subscriptions subscriptions,
             final TelephonyUtils telephonyUtils, final TelephonyManager telephonyManager,
             final Lazy<PinStorage> pinStorageLazy,
             final Lazy<NotificationManager> notificationManagerLazy,
+            final SimPinFeederExecutor executor, final Diagnostics diagnostics,
             final @Assisted @NonNull List<PinEntity> decryptedPinEntities) {
 
         mLogger = loggerFactory.create(getClass().getSimpleName());
@@ -55,6 +83,9 @@ public final class SimPinFeeder extends Thread {
         mTelephonyManager = telephonyManager;
         mPinStorageLazy = pinStorageLazy;
         mNotificationManagerLazy = notificationManagerLazy;
+        mExecutor = executor;
+        mHandler = executor.getHandler();
+        mDiagnostics = diagnostics;
 
         // Convert to a sparse array for easier mutation and querying by subscription ID
         mPinEntities = new SparseArrayCompat<>(decryptedPinEntities.size());
@@ -66,142 +97,250 @@ public final class SimPinFeeder extends Thread {
         }
     }
 
-    @Override
-    public void run() {
+    /**
+     * Start supplying the SIM PIN codes to the SIM cards that require them. This method returns
+     * immediately, and subsequent calls return the same future.
+     *
+     * @return The future that completes when no more SIM cards can be unlocked. Cancelling the
+     * future is equivalent to calling {@link #cancel()}.
+     */
+    @AnyThread
+    public synchronized CompletableFuture<Void> start() {
+        if (!mStarted) {
+            mStarted = true;
+            mResult.whenComplete((unused, throwable) -> {
+                if (mResult.isCancelled()) {
+                    cancel();
+                }
+            });
+            mHandler.post(this::onStart);
+        }
+        return mResult;
+    }
+
+    /** Gracefully stop unlocking the remaining SIM cards. */
+    @AnyThread
+    public void cancel() {
+        mLogger.d("cancel().");
+
+        mReleased = true;
+        mHandler.post(this::finish);
+    }
+
+    private void onStart() {
         mLogger.d("Started.");
 
         if (mPinEntities.isEmpty()) {
             mLogger.d("Finishing earlier due to the absence of usable SIM PIN entities.");
+            finish();
             return;
         }
 
         mLogger.d("mPinEntities: %s", mPinEntities);
 
-        final SimStatusChangedListener simStatusChangedListener = new SimStatusChangedListener();
-        mSubscriptions.addOnSimStatusChangedListener(simStatusChangedListener);
-
-        threadLoop:
-        while (!mReleased) {
-            refreshSimCardCacheList();
-
-            unlockAllSimCardsLoop:
-            for (int i = 0, size = mSimCardsCache.size(); !mReleased && i < size &&
-                    mPinEntities.size() > 0; i++) {
-                final SimCard simCard = mSimCardsCache.valueAt(i);
-                PinEntity pinEntity = mPinEntities.get(simCard.getSubId());
-
-                mLogger.v("Processing %s with PIN: %s.", simCard, pinEntity);
-
-                if (pinEntity != null && simCard.isPinRequired()) {
-                    // The SIM card is locked and requires the user's SIM PIN to unlock, but the
-                    // remaining PIN attempt counter doesn't equal to 3, which means the user is
-                    // racing with us and may have already tried to unlock the SIM card and made a
-                    // mistake, or this could be another request to unlock all SIM cards that had
-                    // previously failed, possibly due to an incorrect SIM PIN the user has provided
-                    // to us. In any case, we absolutely want to *STOP* here in order to prevent
-                    // things from getting critical, like putting the device into the PUK state
-                    if (simCard.getPinAttemptsRemaining() < 3) {
-                        mLogger.w("Aborting SIM unlock to avoid blocking SIM PIN for: %s.",
-                                simCard);
-                        pinEntity = null;
-                        mPinEntities.remove(simCard.getSubId());
-                        continue unlockAllSimCardsLoop;
-                    }
+        mListening = true;
+        mSubscriptions.addOnSimStatusChangedListener(mSimStatusChangedListener);
 
-                    retrySupplyPinLoop:
-                    for (int retries = 1; retries <= 3; retries++) {
-                        final PinResultWrapper result = simCard.supplyPin(pinEntity.getClearPin());
-
-                        mLogger.d("Attempted to unlock %s with %s.", simCard, result);
-
-                        switch (result.getResult()) {
-                            case PinResultWrapper.PIN_RESULT_TYPE_SUCCESS:
-                                // Persist on disk the PIN that was marked as invalid the last time
-                                // it was used, which is now valid
-                                if (pinEntity.isInvalid()) {
-                                    mPinStorageLazy.get().getPin(pinEntity.getSubscriptionId())
-                                        .ifPresent((encryptedPin) -> {
-                                            encryptedPin.setInvalid(false);
-                                            mPinStorageLazy.get().storePin(encryptedPin);
-                                        });
-                                }
-                                break;
-
-                            case PinResultWrapper.PIN_RESULT_TYPE_INCORRECT:
-                                // Detected an incorrect SIM PIN code. Mark it as such and delegate
-                                // to the PIN storage to do its job
-                                pinEntity.setInvalid(true);
-                                mPinStorageLazy.get().handleBadPinEntity(pinEntity);
-                                break;
-
-                            default:
-                                mLogger.w("Retry attempt %d of 3 failed to unlock SIM card: %s.",
-                                        retries, simCard);
-                                // No idea what this was and no way to find out. Retrying... :/
-                                continue retrySupplyPinLoop;
-                        }
-
-                        // PIN entity has been successfully supplied -- dropping it
-                        pinEntity = null;
-                        mPinEntities.remove(simCard.getSubId());
-                        break retrySupplyPinLoop;
-                    }
+        dispatchUnlocks(/*simStatusChanged=*/ true);
+    }
 
-                    // For unknown reasons, the SIM card unlock failed -- at least notify the user
-                    if (pinEntity != null) {
-                        mLogger.e("Failed to unlock SIM card %s with PIN %s.", simCard, pinEntity);
+    /**
+     * Dispatch the unlock of all SIM cards that entered into the PIN state onto the bounded pool of
+     * unlock threads. The SIM cards come back from power-up at different times, so we unlock them
+     * concurrently, as each SIM PIN supply request is a blocking call into the radio.
+     *
+     * @param simStatusChanged Whether the SIM card states need to be re-read from the radio. This
+     * is only needed when notified about a SIM status change, not when an unlock has finished.
+     */
+    private void dispatchUnlocks(final boolean simStatusChanged) {
+        if (mFinished) {
+            return;
+        }
 
-                        mNotificationManagerLazy.get()
-                            .showSimPinOperationFailedNotification(simCard.getSubscription());
-                        mPinEntities.remove(simCard.getSubId());
-                    }
-                }
+        if (mReleased) {
+            finish();
+            return;
+        }
+
+        refreshSimCardCacheList();
+
+        for (int i = 0, size = mSimCardsCache.size(); i < size; i++) {
+            final SimCard simCard = mSimCardsCache.valueAt(i);
+            final PinEntity pinEntity = mPinEntities.get(simCard.getSubId());
+
+            // The SIM cards added to the cache in this pass have just read their state
+            final boolean isSnapshotFresh = simCard.mIsSnapshotFresh;
+            simCard.mIsSnapshotFresh = false;
+
+            if (pinEntity == null || simCard.mState != SimCard.STATE_IDLE) {
+                continue;
             }
 
-            // We finish at this point since we've consumed all the usable PIN entities we had, and
-            // no more SIM cards can be unlocked
-            if (mPinEntities.isEmpty()) {
-                break threadLoop;
+            if (simStatusChanged && !isSnapshotFresh) {
+                simCard.refreshSnapshot();
             }
 
-            if (!mReleased) {
-                // Wait to be notified about new SIM state changes or finish on timeout
-                synchronized (simStatusChangedListener) {
-                    if (!mSimStatusChanged) {
-                        try {
-                            // Note that for reliability, we want to wait a maximum of 10 seconds
-                            // for more SIM card state change events before finishing. Normally,
-                            // these events are delivered within a second, but in some edge cases,
-                            // such as under high memory pressure, delivery may be delayed even by
-                            // 2-3 seconds. This also serves as a "window" to give time to the SIM
-                            // cards to enter the PIN state in case we started slightly earlier
-                            simStatusChangedListener.wait(10_000L);
-                            if (!mSimStatusChanged) {
-                                // Timed out. No more events
-                                break threadLoop;
-                            }
-                        } catch (InterruptedException ignored) {
-                            if (mReleased) {
-                                break threadLoop;
-                            }
-                        }
+            mLogger.v("Processing %s with PIN: %s.", simCard, pinEntity);
+
+            if (simCard.isPinRequired()) {
+                simCard.mState = SimCard.STATE_UNLOCKING;
+                mExecutor.execute(() -> {
+                    final long startTime = SystemClock.elapsedRealtime();
+                    Trace.beginSection("SimPinFeeder#unlockSimCard");
+                    try {
+                        unlockSimCard(simCard, pinEntity);
+                    } finally {
+                        Trace.endSection();
+                        mDiagnostics.record("sim_unlock_ms",
+                                SystemClock.elapsedRealtime() - startTime);
+                        mHandler.post(() -> onSimCardUnlockFinished(simCard));
                     }
-                    mSimStatusChanged = false;
-                }
+                });
             }
         }
 
-        mSubscriptions.removeOnSimStatusChangedListener(simStatusChangedListener);
+        // We finish at this point since we've consumed all the usable PIN entities we had, and no
+        // more SIM cards can be unlocked
+        if (mPinEntities.isEmpty()) {
+            finish();
+            return;
+        }
+
+        // Note that for reliability, we want to wait a maximum of 10 seconds for more SIM card
+        // state change events before finishing. Normally, these events are delivered within a
+        // second, but in some edge cases, such as under high memory pressure, delivery may be
+        // delayed even by 2-3 seconds. This also serves as a "window" to give time to the SIM cards
+        // to enter the PIN state in case we started slightly earlier
+        mHandler.removeCallbacksAndMessages(mTimeoutToken);
+        mHandler.postDelayed(this::onTimeout, mTimeoutToken, SIM_STATUS_WAIT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param simCard The SIM card whose unlock has been attempted.
+     */
+    private void onSimCardUnlockFinished(final SimCard simCard) {
+        simCard.mState = SimCard.STATE_FINISHED;
+        // The PIN entity has been either supplied or can no longer be used -- dropping it
+        mPinEntities.remove(simCard.getSubId());
+        dispatchUnlocks(/*simStatusChanged=*/ false);
+    }
+
+    private void onTimeout() {
+        if (isUnlocking()) {
+            // Keep waiting, as the SIM PIN supply requests can't be interrupted anyway
+            mLogger.w("Still waiting for unlock tasks to complete.");
+            mHandler.postDelayed(this::onTimeout, mTimeoutToken, SIM_STATUS_WAIT_TIMEOUT_MILLIS);
+            return;
+        }
+
+        // Timed out. No more events
+        finish();
+    }
+
+    private void finish() {
+        if (mFinished) {
+            return;
+        }
+
+        if (mListening) {
+            mListening = false;
+            mSubscriptions.removeOnSimStatusChangedListener(mSimStatusChangedListener);
+        }
+
+        // Let the in-flight unlock tasks complete, as the SIM PIN supply requests can't be
+        // interrupted anyway. We'll be called again once they finish
+        if (isUnlocking()) {
+            return;
+        }
+
+        mFinished = true;
+        mHandler.removeCallbacksAndMessages(mTimeoutToken);
 
         mLogger.d("Finished.");
+
+        mResult.complete(null);
     }
 
-    /** Gracefully stop unlocking the remaining SIM cards. */
-    public void cancel() {
-        mLogger.d("cancel().");
+    /**
+     * Attempt to unlock a SIM card with the SIM PIN code. This is a blocking call.
+     *
+     * @param simCard The SIM card to unlock.
+     * @param pinEntity The decrypted SIM PIN entity of the SIM card.
+     */
+    private void unlockSimCard(final SimCard simCard, PinEntity pinEntity) {
+        // The SIM card is locked and requires the user's SIM PIN to unlock, but the remaining PIN
+        // attempt counter doesn't equal to 3, which means the user is racing with us and may have
+        // already tried to unlock the SIM card and made a mistake, or this could be another
+        // request to unlock all SIM cards that had previously failed, possibly due to an incorrect
+        // SIM PIN the user has provided to us. In any case, we absolutely want to *STOP* here in
+        // order to prevent things from getting critical, like putting the device into the PUK
+        // state
+        if (simCard.getPinAttemptsRemaining() < 3) {
+            mLogger.w("Aborting SIM unlock to avoid blocking SIM PIN for: %s.", simCard);
+            return;
+        }
 
-        mReleased = true;
-        interrupt();
+        retrySupplyPinLoop:
+        for (int retries = 1; !mReleased && retries <= 3; retries++) {
+            final PinResultWrapper result;
+            Trace.beginSection("SimPinFeeder#supplyPin");
+            try {
+                result = simCard.supplyPin(pinEntity.getClearPin());
+            } finally {
+                Trace.endSection();
+            }
+
+            mLogger.d("Attempted to unlock %s with %s.", simCard, result);
+
+            switch (result.getResult()) {
+                case PinResultWrapper.PIN_RESULT_TYPE_SUCCESS:
+                    // Persist on disk the PIN that was marked as invalid the last time it was
+                    // used, which is now valid
+                    if (pinEntity.isInvalid()) {
+                        mPinStorageLazy.get().getPin(pinEntity.getSubscriptionId())
+                            .ifPresent((encryptedPin) -> {
+                                encryptedPin.setInvalid(false);
+                                mPinStorageLazy.get().storePin(encryptedPin);
+                            });
+                    }
+                    break;
+
+                case PinResultWrapper.PIN_RESULT_TYPE_INCORRECT:
+                    // Detected an incorrect SIM PIN code. Mark it as such and delegate to the PIN
+                    // storage to do its job
+                    pinEntity.setInvalid(true);
+                    mPinStorageLazy.get().handleBadPinEntity(pinEntity);
+                    break;
+
+                default:
+                    mLogger.w("Retry attempt %d of 3 failed to unlock SIM card: %s.", retries,
+                            simCard);
+                    // No idea what this was and no way to find out. Retrying... :/
+                    continue retrySupplyPinLoop;
+            }
+
+            // PIN entity has been successfully supplied
+            pinEntity = null;
+            break retrySupplyPinLoop;
+        }
+
+        // For unknown reasons, the SIM card unlock failed -- at least notify the user
+        if (pinEntity != null && !mReleased) {
+            mLogger.e("Failed to unlock SIM card %s with PIN %s.", simCard, pinEntity);
+
+            mNotificationManagerLazy.get()
+                .showSimPinOperationFailedNotification(simCard.getSubscription());
+        }
+    }
+
+    /** Whether there's at least one SIM card being unlocked. */
+    private boolean isUnlocking() {
+        for (int i = 0, size = mSimCardsCache.size(); i < size; i++) {
+            if (mSimCardsCache.valueAt(i).mState == SimCard.STATE_UNLOCKING) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /** Refresh the list of currently enabled SIM cards in the system. */
@@ -219,16 +358,47 @@ public final class SimPinFeeder extends Thread {
                     mSimCardsCache.put(subId, new SimCard(sub, tm));
                 }
             } else {
-                mSimCardsCache.remove(subId);
+                // Keep the SIM card being unlocked to not unlock it twice
+                final SimCard simCard = mSimCardsCache.get(subId);
+                if (simCard != null && simCard.mState != SimCard.STATE_UNLOCKING) {
+                    mSimCardsCache.remove(subId);
+                }
             }
         }
     }
 
-    /** A helper class representing a SIM card used to facilitate PIN unlocking. */
+    /**
+     * A helper class representing a SIM card used to facilitate PIN unlocking. Each SIM card goes
+     * through the {@link #STATE_IDLE} → {@link #STATE_UNLOCKING} → {@link #STATE_FINISHED}
+     * states.
+     */
     private final class SimCard {
+        /** The SIM card is waiting to enter the PIN state. */
+        static final int STATE_IDLE = 0;
+        /** The SIM card is being unlocked on the {@link SimPinFeederExecutor}. */
+        static final int STATE_UNLOCKING = 1;
+        /** The SIM card unlock has been attempted. */
+        static final int STATE_FINISHED = 2;
+
         final Subscription mSubscription;
         final TelephonyManager mTelephonyManager;
 
+        /** Confined to the thread of the {@link SimPinFeederExecutor}'s handler. */
+        int mState = STATE_IDLE;
+
+        /**
+         * Whether the state has been read from the radio upon creation and not yet consumed by
+         * {@link #dispatchUnlocks}. Confined to the thread of the {@link SimPinFeederExecutor}'s
+         * handler.
+         */
+        boolean mIsSnapshotFresh;
+
+        /** The last known {@link TelephonyManager.SimState} read from the radio. */
+        volatile int mSimState = TelephonyManager.SIM_STATE_UNKNOWN;
+
+        /** The last known remaining PIN attempt number, or -1 if not read from the radio yet. */
+        volatile int mPinAttemptsRemaining = -1;
+
         /**
          * @param subscription The corresponding subscription instance representing the SIM card.
          * @param telephonyManager The {@link TelephonyManager} pinned to the SIM subscription ID.
@@ -236,6 +406,19 @@ public final class SimPinFeeder extends Thread {
         SimCard(final Subscription subscription, final TelephonyManager telephonyManager) {
             mSubscription = subscription;
             mTelephonyManager = telephonyManager;
+            refreshSnapshot();
+            mIsSnapshotFresh = true;
+        }
+
+        /**
+         * Re-read the SIM card state from the radio. This should be called once per SIM status
+         * change, as all decisions and logging rely on the cached state to avoid redundant calls
+         * into the telephony service.
+         */
+        void refreshSnapshot() {
+            mSimState = mTelephonyManager.getSimState();
+            // The remaining PIN attempt number will be lazily read again when needed
+            mPinAttemptsRemaining = -1;
         }
 
         /** Return the corresponding subscription ID this SIM card is pinned to. */
@@ -253,9 +436,12 @@ public final class SimPinFeeder extends Thread {
          * require a PUK code.
          */
         int getPinAttemptsRemaining() {
-            // As per AOSP, need to supply an empty PIN string to retrieve the current remaining PIN
-            // attempt number. See https://android.googlesource.com/platform/frameworks/base/+/refs/tags/android-10.0.0_r41/packages/SystemUI/src/com/android/keyguard/KeyguardSimPinView.java#139
-            return supplyPin("").getAttemptsRemaining();
+            if (mPinAttemptsRemaining < 0) {
+                // As per AOSP, need to supply an empty PIN string to retrieve the current remaining
+                // PIN attempt number. See https://android.googlesource.com/platform/frameworks/base/+/refs/tags/android-10.0.0_r41/packages/SystemUI/src/com/android/keyguard/KeyguardSimPinView.java#139
+                supplyPin("");
+            }
+            return mPinAttemptsRemaining;
         }
 
         /**
@@ -266,7 +452,8 @@ public final class SimPinFeeder extends Thread {
          */
         PinResultWrapper supplyPin(final String pin) {
             if (Utils.IS_AT_LEAST_S) {
-                return new PinResultWrapper(mTelephonyManager.supplyIccLockPin(pin));
+                return updatePinAttemptsRemaining(
+                        new PinResultWrapper(mTelephonyManager.supplyIccLockPin(pin)));
             } else {
                 int[] result;
                 if (Utils.IS_AT_LEAST_R) {
@@ -287,32 +474,44 @@ public final class SimPinFeeder extends Thread {
                     }
                 }
                 if (result.length > 0) {
-                    return new PinResultWrapper(result[0], result[1]);
+                    return updatePinAttemptsRemaining(new PinResultWrapper(result[0], result[1]));
                 }
             }
-            return PinResultWrapper.getDefaultFailedResult();
+            return updatePinAttemptsRemaining(PinResultWrapper.getDefaultFailedResult());
+        }
+
+        /**
+         * Cache the remaining PIN attempt number reported by the SIM PIN supply request, so that
+         * it doesn't have to be read from the radio again.
+         *
+         * @param result The result of the SIM PIN supply request.
+         * @return The same result for convenience.
+         */
+        private PinResultWrapper updatePinAttemptsRemaining(final PinResultWrapper result) {
+            mPinAttemptsRemaining = result.getAttemptsRemaining();
+            return result;
         }
 
         /** Whether the SIM card is locked and requires the user's SIM PIN to unlock. */
         boolean isPinRequired() {
-            return mTelephonyManager.getSimState() == TelephonyManager.SIM_STATE_PIN_REQUIRED;
+            return mSimState == TelephonyManager.SIM_STATE_PIN_REQUIRED;
         }
 
         @Override
         public String toString() {
             return "SimCard {"
                 + " subscription=" + mSubscription
-                + " slotIndex=" + SubscriptionManager.getSlotIndex(mSubscription.getId())
-                + " state=" + mTelephonyManager.getSimState()
+                + " slotIndex=" + mSubscription.getSlotIndex()
+                + " state=" + mSimState
                 + " isPinRequired=" + isPinRequired()
-                + " pinAttemptsRemaining=" + (isPinRequired() ? getPinAttemptsRemaining() : -1)
+                + " pinAttemptsRemaining=" + mPinAttemptsRemaining
                 + " }";
         }
     }
 
     /**
      * The callback listener that will notify of changes to the {@link TelephonyManager.SimState}
-     * for all available SIM cards when waiting on the instance of this object's monitor.
+     * for all available SIM cards to unlock those that entered into the PIN state.
      */
     private final class SimStatusChangedListener implements OnSimStatusChangedListener {
         @Override
@@ -321,10 +520,7 @@ public final class SimPinFeeder extends Thread {
 
             mLogger.v("onSimStatusChanged(slotIndex=%d,state=%d).", slotIndex, state);
 
-            synchronized (this) {
-                mSimStatusChanged = true;
-                notify();
-            }
+            mHandler.post(() -> dispatchUnlocks(/*simStatusChanged=*/ true));
         }
     }
 
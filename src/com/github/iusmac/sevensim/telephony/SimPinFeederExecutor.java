@@ -0,0 +1,71 @@
+package com.github.iusmac.sevensim.telephony;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * <p>This class holds the long-lived threads shared by all {@link SimPinFeeder} instances, so that
+ * no thread needs to be created and torn down per SIM unlock request.
+ *
+ * <p>The {@link SimPinFeeder} reacts to the SIM status changes on a single thread that is never
+ * blocked waiting, while the blocking SIM PIN supply requests are executed on a bounded pool of
+ * threads that are kept alive for a short while after the last request.
+ */
+@Singleton
+public final class SimPinFeederExecutor implements Executor {
+    /** The maximum number of SIM cards to unlock concurrently. */
+    private static final int MAX_CONCURRENT_UNLOCKS = 4;
+
+    /** The time to keep the idle unlock threads alive before terminating them. */
+    private static final long KEEP_ALIVE_MILLIS = 30_000;
+
+    private final Handler mHandler;
+    private final ThreadPoolExecutor mUnlockExecutor;
+
+    @Inject
+    public SimPinFeederExecutor() {
+        final String name = getClass().getSimpleName();
+
+        final HandlerThread handlerThread = new HandlerThread(name);
+        handlerThread.setDaemon(true);
+        handlerThread.start();
+        mHandler = Handler.createAsync(handlerThread.getLooper());
+
+        mUnlockExecutor = new ThreadPoolExecutor(MAX_CONCURRENT_UNLOCKS, MAX_CONCURRENT_UNLOCKS,
+                KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                (runnable) -> {
+                    final Thread thread = new Thread(runnable, name + "Unlock");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        mUnlockExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return The {@link Handler} running on the thread the {@link SimPinFeeder} state is confined
+     * to.
+     */
+    @NonNull Handler getHandler() {
+        return mHandler;
+    }
+
+    /**
+     * Execute a blocking SIM PIN supply request on the bounded pool of unlock threads.
+     *
+     * @param command The task to execute.
+     */
+    @Override
+    public void execute(final @NonNull Runnable command) {
+        mUnlockExecutor.execute(command);
+    }
+}
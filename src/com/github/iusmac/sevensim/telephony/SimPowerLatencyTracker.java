@@ -0,0 +1,187 @@
+package com.github.iusmac.sevensim.telephony;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+
+import androidx.annotation.GuardedBy;
+
+import com.github.iusmac.sevensim.Logger;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * <p>This class keeps track of how long the modem takes to respond to the SIM power state change
+ * requests, separately for each SIM slot and direction (power up/down), and derives the timeout to
+ * wait for the response from it.
+ *
+ * <p>Only the most recent response times are kept, and the older ones weigh less when computing
+ * the percentile, so that the timeout follows the modem behavior over time. A request the modem
+ * didn't respond to in time counts as having taken at least as long as its timeout, so that the
+ * timeout grows on modems that keep timing out. The response times are persisted in the device
+ * encrypted storage, so that they survive the process death and are available before the user
+ * unlocks the device.
+ *
+ * <p>This class is <strong>thread-safe</strong>.
+ *
+ * @see TelephonyController
+ */
+@Singleton
+public final class SimPowerLatencyTracker {
+    /** The timeout used until enough response times have been collected. */
+    private static final long DEFAULT_TIMEOUT_MILLIS = 3_000;
+
+    /**
+     * The lower bound of the timeout to not give up on a modem that happened to be fast. This
+     * matches the timeout used before collecting response times, as a shorter wait turns slow
+     * responses into spurious failures.
+     */
+    private static final long MIN_TIMEOUT_MILLIS = DEFAULT_TIMEOUT_MILLIS;
+
+    /** The upper bound of the timeout to not hold the wake lock for too long. */
+    static final long MAX_TIMEOUT_MILLIS = 8_000;
+
+    /** The minimum number of response times needed to derive the timeout. */
+    private static final int MIN_SAMPLE_COUNT = 3;
+
+    /** The maximum number of the most recent response times to keep. */
+    private static final int MAX_SAMPLE_COUNT = 16;
+
+    /** The weight of a response time relative to the next more recent one. */
+    private static final double SAMPLE_DECAY_FACTOR = 0.85d;
+
+    /** The percentile of the response times the timeout is derived from. */
+    private static final double TIMEOUT_PERCENTILE = 0.95d;
+
+    /** The safety margin applied to the percentile of the response times. */
+    private static final double TIMEOUT_MULTIPLIER = 1.5d;
+
+    private static final String SHARED_PREFS_NAME = "sim_power_latency";
+
+    private final Logger mLogger;
+
+    @GuardedBy("this")
+    private final SharedPreferences mSharedPrefs;
+
+    @Inject
+    public SimPowerLatencyTracker(final @ApplicationContext Context context,
+            final Logger.Factory loggerFactory) {
+
+        mLogger = loggerFactory.create(getClass().getSimpleName());
+        mSharedPrefs = context.createDeviceProtectedStorageContext()
+            .getSharedPreferences(SHARED_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Record the time the modem took to respond to a SIM power state change request.
+     *
+     * @param slotIndex The slot index of the SIM card whose power state has been changed.
+     * @param enabled Whether the SIM card was being powered up or down.
+     * @param latencyMillis The response time in milliseconds, or the timeout if the modem didn't
+     * respond in time.
+     */
+    public synchronized void recordLatency(final int slotIndex, final boolean enabled,
+            final long latencyMillis) {
+
+        final String key = getKey(slotIndex, enabled);
+        final long[] samples = getSamples(key);
+        final int keepCount = Math.min(samples.length, MAX_SAMPLE_COUNT - 1);
+
+        final StringBuilder builder = new StringBuilder();
+        for (int i = samples.length - keepCount; i < samples.length; i++) {
+            builder.append(samples[i]).append(',');
+        }
+        builder.append(Math.max(0, latencyMillis));
+
+        mLogger.d("recordLatency(slotIndex=%d,enabled=%s,latencyMillis=%d).", slotIndex, enabled,
+                latencyMillis);
+
+        mSharedPrefs.edit().putString(key, builder.toString()).apply();
+    }
+
+    /**
+     * Get the time to wait for the modem to respond to a SIM power state change request.
+     *
+     * @param slotIndex The slot index of the SIM card whose power state is being changed.
+     * @param enabled Whether the SIM card is being powered up or down.
+     * @return The timeout in milliseconds.
+     */
+    public synchronized long getTimeoutMillis(final int slotIndex, final boolean enabled) {
+        final long[] samples = getSamples(getKey(slotIndex, enabled));
+        final long timeoutMillis;
+        if (samples.length < MIN_SAMPLE_COUNT) {
+            timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        } else {
+            timeoutMillis = Math.max(MIN_TIMEOUT_MILLIS, Math.min(MAX_TIMEOUT_MILLIS,
+                        (long) (getWeightedPercentile(samples, TIMEOUT_PERCENTILE) *
+                            TIMEOUT_MULTIPLIER)));
+        }
+
+        mLogger.v("getTimeoutMillis(slotIndex=%d,enabled=%s) : samples=%s,timeoutMillis=%d.",
+                slotIndex, enabled, Arrays.toString(samples), timeoutMillis);
+
+        return timeoutMillis;
+    }
+
+    /**
+     * Compute the percentile of the response times, where each response time weighs
+     * {@link #SAMPLE_DECAY_FACTOR} times less than the next more recent one.
+     *
+     * @param samples The response times ordered from the oldest to the most recent.
+     * @param percentile The percentile between 0 and 1.
+     * @return The response time at the percentile.
+     */
+    private static long getWeightedPercentile(final long[] samples, final double percentile) {
+        final int count = samples.length;
+        final long[][] weighted = new long[count][];
+        final double[] weights = new double[count];
+        double weight = 1d, totalWeight = 0d;
+        for (int i = count - 1; i >= 0; i--) {
+            weighted[i] = new long[] { samples[i], i };
+            weights[i] = weight;
+            totalWeight += weight;
+            weight *= SAMPLE_DECAY_FACTOR;
+        }
+
+        Arrays.sort(weighted, (a, b) -> Long.compare(a[0], b[0]));
+
+        final double targetWeight = totalWeight * percentile;
+        double cumulativeWeight = 0d;
+        for (long[] sample : weighted) {
+            cumulativeWeight += weights[(int) sample[1]];
+            if (cumulativeWeight >= targetWeight) {
+                return sample[0];
+            }
+        }
+        return weighted[count - 1][0];
+    }
+
+    /**
+     * @param key The key of the response times in the shared preferences.
+     * @return The response times ordered from the oldest to the most recent.
+     */
+    @GuardedBy("this")
+    private long[] getSamples(final String key) {
+        final String value = mSharedPrefs.getString(key, null);
+        if (TextUtils.isEmpty(value)) {
+            return new long[0];
+        }
+
+        try {
+            return Arrays.stream(value.split(",")).mapToLong(Long::parseLong).toArray();
+        } catch (NumberFormatException e) {
+            mLogger.e("getSamples(key=%s) : Invalid value: %s.", key, value);
+            return new long[0];
+        }
+    }
+
+    private static String getKey(final int slotIndex, final boolean enabled) {
+        return String.format(Locale.US, "slot%d_%s", slotIndex, enabled ? "up" : "down");
+    }
+}
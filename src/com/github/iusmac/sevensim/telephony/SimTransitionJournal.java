@@ -0,0 +1,406 @@
+package com.github.iusmac.sevensim.telephony;
+
+import android.content.Context;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.iusmac.sevensim.Logger;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * <p>This class keeps an append-only journal of the SIM card enabled state transitions requested
+ * via the {@link TelephonyController} and {@link SubscriptionController}, so that it's possible to
+ * tell when a transition actually happened and how long it took, long after the fact.
+ *
+ * <p>The journal is a binary file in the device encrypted storage, so that it's available before
+ * the user unlocks the device. It consists of a header followed by fixed-size records, and holds
+ * at most {@link #CAPACITY} records, after which the oldest ones are overwritten. The records are
+ * written through a {@link FileChannel} at their final position, so appending a record costs two
+ * positional writes regardless of the journal size.
+ *
+ * <p>The header layout (all values are big-endian):
+ * <pre>
+ *  0: int magic
+ *  4: int version
+ *  8: int record size
+ * 12: int capacity
+ * 16: long total number of the appended records
+ * 24: 8 reserved bytes
+ * </pre>
+ *
+ * <p>The record layout:
+ * <pre>
+ *  0: long requested time in milliseconds since the epoch
+ *  8: long observed time in milliseconds since the epoch
+ * 16: int subscription ID
+ * 20: int slot index
+ * 24: int result code
+ * 28: byte kind
+ * 29: byte source
+ * 30: byte enabled
+ * 31: 1 reserved byte
+ * </pre>
+ *
+ * <p>This class is <strong>thread-safe</strong>.
+ */
+@Singleton
+public final class SimTransitionJournal {
+    /** The transition has been requested by powering up/down the SIM card. */
+    public static final int KIND_SIM_POWER = 1;
+
+    /** The transition has been requested by enabling/disabling the UICC applications. */
+    public static final int KIND_UICC_APPLICATIONS = 2;
+
+    private static final String FILE_NAME = "sim_transitions.journal";
+
+    private static final int MAGIC = 0x37534a4c; // 7SJL
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+    private static final int COUNT_OFFSET = 16;
+
+    /** The maximum number of records to keep, which takes 128 KiB on disk. */
+    private static final int CAPACITY = 4096;
+
+    /** The number of records read at once by the {@link Reader}. */
+    private static final int READ_CHUNK_RECORD_COUNT = 64;
+
+    private final Logger mLogger;
+    private final File mFile;
+
+    @GuardedBy("this")
+    private FileChannel mChannel;
+
+    @GuardedBy("this")
+    private long mCount;
+
+    @GuardedBy("this")
+    private final ByteBuffer mRecordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+
+    @GuardedBy("this")
+    private final ByteBuffer mCountBuffer = ByteBuffer.allocate(Long.BYTES);
+
+    @Inject
+    public SimTransitionJournal(final @ApplicationContext Context context,
+            final Logger.Factory loggerFactory) {
+
+        mLogger = loggerFactory.create(getClass().getSimpleName());
+        mFile = new File(context.createDeviceProtectedStorageContext().getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Append a record to the journal, overwriting the oldest one if the journal is full. Failing
+     * to write the record is logged, but otherwise ignored.
+     *
+     * @param entry The entry to append.
+     */
+    public synchronized void append(final @NonNull Entry entry) {
+        try {
+            final FileChannel channel = getChannel();
+
+            mRecordBuffer.clear();
+            entry.writeTo(mRecordBuffer);
+            mRecordBuffer.flip();
+            writeFully(channel, mRecordBuffer, getRecordPosition(mCount));
+
+            mCountBuffer.clear();
+            mCountBuffer.putLong(mCount + 1).flip();
+            writeFully(channel, mCountBuffer, COUNT_OFFSET);
+            mCount++;
+
+            mLogger.v("append() : %s,count=%d.", entry, mCount);
+        } catch (IOException e) {
+            mLogger.e("append() : Failed to write the journal.", e);
+            closeChannel();
+        }
+    }
+
+    /**
+     * Open a reader that streams the records currently in the journal from the oldest to the
+     * newest. The records appended after opening the reader aren't returned.
+     *
+     * @return The reader, which the caller must close.
+     * @throws IOException If the journal cannot be read.
+     */
+    public @NonNull Reader openReader() throws IOException {
+        synchronized (this) {
+            // Make sure the journal exists and has a valid header
+            getChannel();
+        }
+        return new Reader(FileChannel.open(mFile.toPath(), StandardOpenOption.READ));
+    }
+
+    /**
+     * Print all records currently in the journal from the oldest to the newest.
+     *
+     * @param pw The writer to print to.
+     */
+    public void dump(final @NonNull PrintWriter pw) {
+        pw.println("SimTransitionJournal:");
+        try (Reader reader = openReader()) {
+            Entry entry;
+            while ((entry = reader.next()) != null) {
+                pw.println("  " + entry);
+            }
+        } catch (IOException e) {
+            pw.println("  Failed to read the journal: " + e);
+        }
+    }
+
+    @GuardedBy("this")
+    private FileChannel getChannel() throws IOException {
+        if (mChannel != null) {
+            return mChannel;
+        }
+
+        final FileChannel channel = FileChannel.open(mFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            final boolean isHeaderRead = readFully(channel, header, 0);
+            header.flip();
+            if (isHeaderRead && header.getInt() == MAGIC && header.getInt() == VERSION &&
+                    header.getInt() == RECORD_SIZE && header.getInt() == CAPACITY) {
+                mCount = header.getLong();
+            } else {
+                mLogger.w("getChannel() : Initializing a new journal. size=%d.", channel.size());
+
+                channel.truncate(0);
+                header.clear();
+                header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(CAPACITY)
+                    .putLong(0).putLong(0).flip();
+                writeFully(channel, header, 0);
+                mCount = 0;
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        mChannel = channel;
+        return channel;
+    }
+
+    @GuardedBy("this")
+    private void closeChannel() {
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (IOException ignored) {}
+            mChannel = null;
+        }
+    }
+
+    /**
+     * @param index The sequential number of the record since the journal has been created.
+     * @return The position of the record in the file.
+     */
+    private static long getRecordPosition(final long index) {
+        return HEADER_SIZE + (index % CAPACITY) * RECORD_SIZE;
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer,
+            long position) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * @return {@code true} if the buffer has been filled, {@code false} if the end of the file
+     * has been reached earlier.
+     */
+    private static boolean readFully(final FileChannel channel, final ByteBuffer buffer,
+            long position) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    /**
+     * A forward-only reader streaming the journal records in chunks, so that the journal can be
+     * exported without loading it entirely in memory.
+     */
+    public static final class Reader implements Closeable {
+        private final FileChannel mChannel;
+        private final ByteBuffer mBuffer =
+            ByteBuffer.allocate(READ_CHUNK_RECORD_COUNT * RECORD_SIZE);
+        private final long mEnd;
+        private long mNext;
+
+        private Reader(final FileChannel channel) throws IOException {
+            mChannel = channel;
+            try {
+                final ByteBuffer countBuffer = ByteBuffer.allocate(Long.BYTES);
+                mEnd = readFully(channel, countBuffer, COUNT_OFFSET) ?
+                    countBuffer.getLong(0) : 0;
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            mNext = Math.max(0, mEnd - CAPACITY);
+            mBuffer.limit(0);
+        }
+
+        /**
+         * @return The next record, or {@code null} if there are no more records.
+         * @throws IOException If the journal cannot be read.
+         */
+        public @Nullable Entry next() throws IOException {
+            if (!mBuffer.hasRemaining()) {
+                if (mNext >= mEnd) {
+                    return null;
+                }
+                // Read up to the end of the file, as the records wrap around to the beginning
+                final long index = mNext % CAPACITY;
+                final int recordCount = (int) Math.min(Math.min(READ_CHUNK_RECORD_COUNT,
+                            CAPACITY - index), mEnd - mNext);
+                mBuffer.clear();
+                mBuffer.limit(recordCount * RECORD_SIZE);
+                if (!readFully(mChannel, mBuffer, getRecordPosition(mNext))) {
+                    throw new IOException("Unexpected end of the journal at record " + mNext);
+                }
+                mBuffer.flip();
+            }
+            mNext++;
+            return Entry.readFrom(mBuffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            mChannel.close();
+        }
+    }
+
+    /** A holder class representing a single SIM card enabled state transition. */
+    public static final class Entry {
+        private final int mKind;
+        private final @TransitionSource int mSource;
+        private final int mSubscriptionId;
+        private final int mSlotIndex;
+        private final boolean mEnabled;
+        private final long mRequestedTimeMillis;
+        private final long mObservedTimeMillis;
+        private final int mResultCode;
+
+        /**
+         * @param kind Any of the {@code KIND_*} constants.
+         * @param source The origin of the request.
+         * @param subId The ID of the subscription, if known.
+         * @param slotIndex The slot index of the SIM card, if known.
+         * @param enabled The target enabled state of the SIM card.
+         * @param requestedTimeMillis The time the transition has been requested at, in
+         * milliseconds since the epoch.
+         * @param observedTimeMillis The time the result of the transition has been observed at, in
+         * milliseconds since the epoch.
+         * @param resultCode The response code from the modem, or any of the custom
+         * {@code TelephonyController.SET_SIM_POWER_STATE_*} response codes.
+         */
+        public Entry(final int kind, final @TransitionSource int source, final int subId,
+                final int slotIndex, final boolean enabled, final long requestedTimeMillis,
+                final long observedTimeMillis, final int resultCode) {
+
+            mKind = kind;
+            mSource = source;
+            mSubscriptionId = subId;
+            mSlotIndex = slotIndex;
+            mEnabled = enabled;
+            mRequestedTimeMillis = requestedTimeMillis;
+            mObservedTimeMillis = observedTimeMillis;
+            mResultCode = resultCode;
+        }
+
+        public int getKind() {
+            return mKind;
+        }
+
+        public @TransitionSource int getSource() {
+            return mSource;
+        }
+
+        public int getSubscriptionId() {
+            return mSubscriptionId;
+        }
+
+        public int getSlotIndex() {
+            return mSlotIndex;
+        }
+
+        public boolean isEnabled() {
+            return mEnabled;
+        }
+
+        public long getRequestedTimeMillis() {
+            return mRequestedTimeMillis;
+        }
+
+        public long getObservedTimeMillis() {
+            return mObservedTimeMillis;
+        }
+
+        public int getResultCode() {
+            return mResultCode;
+        }
+
+        private void writeTo(final ByteBuffer buffer) {
+            buffer.putLong(mRequestedTimeMillis)
+                .putLong(mObservedTimeMillis)
+                .putInt(mSubscriptionId)
+                .putInt(mSlotIndex)
+                .putInt(mResultCode)
+                .put((byte) mKind)
+                .put((byte) mSource)
+                .put((byte) (mEnabled ? 1 : 0))
+                .put((byte) 0);
+        }
+
+        private static Entry readFrom(final ByteBuffer buffer) {
+            final long requestedTimeMillis = buffer.getLong();
+            final long observedTimeMillis = buffer.getLong();
+            final int subId = buffer.getInt();
+            final int slotIndex = buffer.getInt();
+            final int resultCode = buffer.getInt();
+            final int kind = buffer.get();
+            final int source = buffer.get();
+            final boolean enabled = buffer.get() != 0;
+            buffer.get();
+            return new Entry(kind, source, subId, slotIndex, enabled, requestedTimeMillis,
+                    observedTimeMillis, resultCode);
+        }
+
+        @Override
+        public String toString() {
+            return "Entry {"
+                + " kind=" + mKind
+                + " source=" + mSource
+                + " subId=" + mSubscriptionId
+                + " slotIndex=" + mSlotIndex
+                + " enabled=" + mEnabled
+                + " requestedTime=" + Instant.ofEpochMilli(mRequestedTimeMillis)
+                + " durationMillis=" + (mObservedTimeMillis - mRequestedTimeMillis)
+                + " resultCode=" + mResultCode
+                + " }";
+        }
+    }
+}
@@ -12,11 +12,11 @@ import androidx.room.Entity;
 import androidx.room.Ignore;
 import androidx.room.PrimaryKey;
 
+import com.github.iusmac.sevensim.engine.TypeCodecs;
+
 import java.time.LocalDateTime;
-import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.Objects;
-import java.util.Optional;
 
 import static android.telephony.SubscriptionManager.INVALID_SIM_SLOT_INDEX;
 import static android.telephony.SubscriptionManager.INVALID_SUBSCRIPTION_ID;
@@ -32,6 +32,9 @@ import static android.telephony.SubscriptionManager.INVALID_SUBSCRIPTION_ID;
     tableName = "subscriptions"
 )
 public final class Subscription implements Parcelable {
+    /** The parcelled value of the {@link #getKeepDisabledAcrossBoots()} when it's not set. */
+    private static final int KEEP_DISABLED_ACROSS_BOOTS_UNSET = -1;
+
     @PrimaryKey
     @ColumnInfo(name = "id")
     private int mId = INVALID_SUBSCRIPTION_ID;
@@ -57,6 +60,25 @@ public final class Subscription implements Parcelable {
     @ColumnInfo(name = "keepDisabledAcrossBoots")
     private Boolean mKeepDisabledAcrossBoots;
 
+    public Subscription() {}
+
+    /**
+     * Create a shallow copy of another {@link Subscription}.
+     *
+     * @param other The subscription to copy the data from.
+     */
+    @Ignore
+    public Subscription(final @NonNull Subscription other) {
+        mId = other.mId;
+        mSlotIndex = other.mSlotIndex;
+        mSimState = other.mSimState;
+        mIconTint = other.mIconTint;
+        mName = other.mName;
+        mLastActivatedTime = other.mLastActivatedTime;
+        mLastDeactivatedTime = other.mLastDeactivatedTime;
+        mKeepDisabledAcrossBoots = other.mKeepDisabledAcrossBoots;
+    }
+
     @IntRange(from = INVALID_SUBSCRIPTION_ID)
     public int getId() {
         return mId;
@@ -170,10 +192,10 @@ public final class Subscription implements Parcelable {
         dest.writeInt(mSimState);
         dest.writeInt(mIconTint);
         dest.writeString(mName);
-        dest.writeString(mLastActivatedTime.toString());
-        dest.writeString(mLastDeactivatedTime.toString());
-        dest.writeString(mKeepDisabledAcrossBoots != null ?
-                mKeepDisabledAcrossBoots.toString() : null);
+        dest.writeLong(TypeCodecs.toEpochMinutes(mLastActivatedTime));
+        dest.writeLong(TypeCodecs.toEpochMinutes(mLastDeactivatedTime));
+        dest.writeInt(mKeepDisabledAcrossBoots == null ? KEEP_DISABLED_ACROSS_BOOTS_UNSET :
+                (mKeepDisabledAcrossBoots ? 1 : 0));
     }
 
     @Override
@@ -190,23 +212,12 @@ public final class Subscription implements Parcelable {
             sub.setSimState(in.readInt());
             sub.setIconTint(in.readInt());
             sub.setSimName(in.readString());
-            try {
-                final String lastActivatedTime = in.readString();
-                if (lastActivatedTime != null) {
-                    sub.setLastActivatedTime(LocalDateTime.parse(lastActivatedTime));
-                }
-            } catch (DateTimeParseException ignored) {}
-
-            try {
-                final String lastDeactivatedTime = in.readString();
-                if (lastDeactivatedTime != null) {
-                    sub.setLastDeactivatedTime(LocalDateTime.parse(lastDeactivatedTime));
-                }
-            } catch (DateTimeParseException ignored) {}
-
-            Optional.ofNullable(in.readString()).ifPresent((v) ->
-                    sub.keepDisabledAcrossBoots(Boolean.parseBoolean(v)));
-
+            sub.setLastActivatedTime(TypeCodecs.fromEpochMinutes(in.readLong()));
+            sub.setLastDeactivatedTime(TypeCodecs.fromEpochMinutes(in.readLong()));
+            final int keepDisabledAcrossBoots = in.readInt();
+            if (keepDisabledAcrossBoots != KEEP_DISABLED_ACROSS_BOOTS_UNSET) {
+                sub.keepDisabledAcrossBoots(keepDisabledAcrossBoots != 0);
+            }
             return sub;
         }
 
@@ -1,17 +1,26 @@
 package com.github.iusmac.sevensim.telephony;
 
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.telephony.SubscriptionManager;
+import android.util.SparseBooleanArray;
 
-import androidx.annotation.WorkerThread;
+import androidx.annotation.AnyThread;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.collection.SparseArrayCompat;
 
+import com.github.iusmac.sevensim.Diagnostics;
 import com.github.iusmac.sevensim.Logger;
 
 import java.time.LocalDateTime;
-import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import static android.telephony.SubscriptionManager.INVALID_SIM_SLOT_INDEX;
+
 /**
  * <p>The responsibility of this class is to provide to devices using the newer Radio Interface
  * Layer (RIL) the ability to control the subscription state on individual physical (non-eUICC) SIM
@@ -26,48 +35,169 @@ import javax.inject.Singleton;
  * <p>A device is considered to be using the newer RIL when the response of
  * {@link TelephonyUtils#canDisableUiccSubscription} is {@code true}.
  *
+ * <p>The subscription state change requests are performed on a background thread. Consecutive
+ * requests for the same subscription that haven't been performed yet are collapsed into the last
+ * one.
+ *
  * <p>This class is <strong>thread-safe</strong>.
  *
  * @see SubscriptionsImpl
  */
 @Singleton
 public final class SubscriptionController {
+    /** The response code when the subscription state change request has been made. */
+    public static final int SET_UICC_APPLICATIONS_SUCCESS = 0;
+
     private final Logger mLogger;
     private final SubscriptionManager mSubManager;
     private final SubscriptionsImpl mSubscriptions;
+    private final Diagnostics mDiagnostics;
+    private final SimTransitionJournal mSimTransitionJournal;
+
+    private final Handler mHandler;
+
+    /** The requests not performed yet per subscription. */
+    @GuardedBy("this")
+    private final SparseArrayCompat<UiccApplicationsRequest> mPendingRequests =
+        new SparseArrayCompat<>(2);
+
+    /** The target enabled state of the last performed request per subscription. */
+    @GuardedBy("this")
+    private final SparseBooleanArray mLastRequestedStates = new SparseBooleanArray(2);
 
     @Inject
     public SubscriptionController(final Logger.Factory loggerFactory,
             final SubscriptionManager subscriptionManager,
-            final SubscriptionsImpl subscriptions) {
+            final SubscriptionsImpl subscriptions,
+            final Diagnostics diagnostics,
+            final SimTransitionJournal simTransitionJournal) {
 
         mLogger = loggerFactory.create(getClass().getSimpleName());
         mSubManager = subscriptionManager;
         mSubscriptions = subscriptions;
+        mDiagnostics = diagnostics;
+        mSimTransitionJournal = simTransitionJournal;
+
+        final HandlerThread handlerThread = new HandlerThread(getClass().getSimpleName());
+        handlerThread.setDaemon(true);
+        handlerThread.start();
+        mHandler = Handler.createAsync(handlerThread.getLooper());
     }
 
     /**
      * <p>Disable or re-enable a subscription.
      *
+     * <p>The request is performed asynchronously. If there's already a pending request for the
+     * same subscription, then it'll be superseded by this request, e.g. enable→disable→enable
+     * results in a single enable request. The request will be skipped if the subscription is
+     * already in the target state.
+     *
      * <p>In order to be notified when the setting for the subscription is applied, the callers must
      * monitor the {@link Subscriptions}.
      *
      * @param subId The subscription ID whose state is being changed.
      * @param enabled {@code true} if the subscription should be enabled, otherwise {@code false}.
+     * @param source The origin of the request to record in the {@link SimTransitionJournal}.
+     * @return The future that will complete with {@link #SET_UICC_APPLICATIONS_SUCCESS}, or any of
+     * the custom {@code TelephonyController.SET_SIM_POWER_STATE_*} response codes, once the request
+     * that superseded this one, if any, is performed.
+     */
+    @AnyThread
+    public @NonNull CompletableFuture<Integer> setUiccApplicationsEnabled(final int subId,
+            final boolean enabled, final @TransitionSource int source) {
+
+        mLogger.d("setUiccApplicationsEnabled(subId=%d,enabled=%s,source=%d).", subId, enabled,
+                source);
+
+        final long requestedAtMillis = System.currentTimeMillis();
+        synchronized (this) {
+            final UiccApplicationsRequest pendingRequest = mPendingRequests.get(subId);
+            final CompletableFuture<Integer> result = pendingRequest != null ?
+                pendingRequest.result : new CompletableFuture<>();
+            mPendingRequests.put(subId, new UiccApplicationsRequest(enabled, source,
+                        requestedAtMillis, result));
+            if (pendingRequest != null) {
+                final long coalescedRequestCount =
+                    mDiagnostics.increment("uicc_applications_request_coalesced");
+
+                mLogger.d("setUiccApplicationsEnabled(subId=%d,enabled=%s) : Coalesced. " +
+                        "coalescedRequestCount=%d.", subId, enabled, coalescedRequestCount);
+                return result;
+            }
+
+            mHandler.post(() -> performPendingRequest(subId));
+            return result;
+        }
+    }
+
+    /**
+     * Perform the last pending request for a subscription.
+     *
+     * @param subId The subscription ID whose state is being changed.
      */
-    @WorkerThread
-    public void setUiccApplicationsEnabled(final int subId, final boolean enabled) {
-        final String logPrefix = String.format(Locale.getDefault(), "setUiccApplicationsEnabled(" +
-                "subId=%d,enabled=%s)", subId, enabled);
+    private void performPendingRequest(final int subId) {
+        final UiccApplicationsRequest request;
+        final boolean enabled, lastRequestedEnabled;
+        synchronized (this) {
+            final int index = mPendingRequests.indexOfKey(subId);
+            if (index < 0) {
+                return;
+            }
+            request = mPendingRequests.valueAt(index);
+            mPendingRequests.removeAt(index);
+            enabled = request.enabled;
+            lastRequestedEnabled = mLastRequestedStates.get(subId, enabled);
+        }
+
+        mLogger.d("performPendingRequest(subId=%d,enabled=%s).", subId, enabled);
 
-        mLogger.d(logPrefix);
+        try {
+            request.result.complete(performRequest(subId, request, lastRequestedEnabled));
+        } catch (RuntimeException e) {
+            mLogger.e("performPendingRequest() : Request failed.", e);
+            request.result.completeExceptionally(e);
+        }
+    }
 
+    /**
+     * @param subId The subscription ID whose state is being changed.
+     * @param request The request to perform.
+     * @param lastRequestedEnabled The target enabled state of the last performed request.
+     * @return The response code of the request.
+     */
+    private int performRequest(final int subId, final UiccApplicationsRequest request,
+            final boolean lastRequestedEnabled) {
+
+        final boolean enabled = request.enabled;
         final Subscription sub = mSubscriptions.getSubscriptionForSubId(subId).orElse(null);
 
         if (sub == null) {
-            mLogger.e(logPrefix + " Aborting due to missing subscription.");
+            mLogger.e("performPendingRequest(subId=%d,enabled=%s) : Aborting due to missing " +
+                    "subscription.", subId, enabled);
+            recordTransition(subId, request, TelephonyController.SET_SIM_POWER_STATE_ABORTED);
+            mSubscriptions.notifyAllListeners();
+            return TelephonyController.SET_SIM_POWER_STATE_ABORTED;
+        }
+
+        // Drop the request if the subscription is already in the target state. Note that, we also
+        // check the last requested state, because the subscriptions may not yet reflect the
+        // outcome of the previous request
+        if (sub.isSimEnabled() == enabled && lastRequestedEnabled == enabled) {
+            final long skippedRequestCount =
+                mDiagnostics.increment("uicc_applications_request_skipped");
+
+            mLogger.d("performPendingRequest(subId=%d,enabled=%s) : Skipping as already in " +
+                    "state. skippedRequestCount=%d.", subId, enabled, skippedRequestCount);
+            recordTransition(subId, request, TelephonyController.SET_SIM_POWER_STATE_SKIPPED);
+
+            // Let the callers stay tuned to actual state, as they may have optimistically
+            // reflected the requested state
             mSubscriptions.notifyAllListeners();
-            return;
+            return TelephonyController.SET_SIM_POWER_STATE_SKIPPED;
+        }
+
+        synchronized (this) {
+            mLastRequestedStates.put(subId, enabled);
         }
 
         sub.setSimState(TelephonyUtils.simStateInt(enabled));
@@ -76,5 +206,45 @@ public final class SubscriptionController {
         mSubscriptions.persistSubscription(sub);
 
         mSubManager.setUiccApplicationsEnabled(subId, enabled);
+        recordTransition(subId, request, SET_UICC_APPLICATIONS_SUCCESS);
+        return SET_UICC_APPLICATIONS_SUCCESS;
+    }
+
+    /**
+     * Record the outcome of the subscription state change request in the journal.
+     *
+     * @param subId The subscription ID whose state has been changed.
+     * @param request The finished request.
+     * @param resCode {@link #SET_UICC_APPLICATIONS_SUCCESS} or any of the custom
+     * {@code TelephonyController.SET_SIM_POWER_STATE_*} response codes.
+     */
+    private void recordTransition(final int subId, final UiccApplicationsRequest request,
+            final int resCode) {
+
+        mSimTransitionJournal.append(new SimTransitionJournal.Entry(
+                    SimTransitionJournal.KIND_UICC_APPLICATIONS, request.source, subId,
+                    INVALID_SIM_SLOT_INDEX, request.enabled, request.requestedAtMillis,
+                    System.currentTimeMillis(), resCode));
+    }
+
+    /** The subscription state change request not performed yet. */
+    private static final class UiccApplicationsRequest {
+        final boolean enabled;
+        final @TransitionSource int source;
+
+        /** The wall clock time of when the request was made, in milliseconds since the epoch. */
+        final long requestedAtMillis;
+
+        /** The future shared with the requests superseded by this one. */
+        final CompletableFuture<Integer> result;
+
+        UiccApplicationsRequest(final boolean enabled, final @TransitionSource int source,
+                final long requestedAtMillis, final CompletableFuture<Integer> result) {
+
+            this.enabled = enabled;
+            this.source = source;
+            this.requestedAtMillis = requestedAtMillis;
+            this.result = result;
+        }
     }
 }
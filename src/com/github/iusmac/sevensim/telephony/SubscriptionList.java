@@ -3,6 +3,8 @@ package com.github.iusmac.sevensim.telephony;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 
+import androidx.collection.SparseArrayCompat;
+
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -17,8 +19,23 @@ abstract class SubscriptionList implements Iterator<Subscription> {
      */
     protected final List<SubscriptionInfo> mVisibleSubInfoList;
 
-    protected SubscriptionList(final SubscriptionManager subscriptionManager) {
+    /**
+     * All {@link Subscription}s persisted on disk mapped by their subscription ID. They're
+     * prefetched in bulk, so that a single query is issued per iteration pass, regardless of the
+     * number of subscriptions.
+     */
+    protected final SparseArrayCompat<Subscription> mPersistedSubscriptions;
+
+    protected SubscriptionList(final SubscriptionManager subscriptionManager,
+            final SubscriptionsDao subscriptionsDao) {
+
         mVisibleSubInfoList = subscriptionManager.getSelectableSubscriptionInfoList();
+
+        final List<Subscription> persistedSubs = subscriptionsDao.loadAll();
+        mPersistedSubscriptions = new SparseArrayCompat<>(persistedSubs.size());
+        for (Subscription sub : persistedSubs) {
+            mPersistedSubscriptions.put(sub.getId(), sub);
+        }
     }
 
     /**
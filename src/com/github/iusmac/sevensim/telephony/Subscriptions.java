@@ -4,6 +4,7 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.os.Trace;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
@@ -12,6 +13,7 @@ import android.text.TextUtils;
 import androidx.annotation.CallSuper;
 import androidx.annotation.NonNull;
 import androidx.annotation.WorkerThread;
+import androidx.collection.SparseArrayCompat;
 import androidx.core.content.ContextCompat;
 
 import com.android.internal.telephony.PhoneConstants;
@@ -31,6 +33,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 
 import javax.inject.Named;
@@ -74,7 +77,7 @@ public abstract class Subscriptions implements Iterable<Subscription> {
     private final BroadcastReceiver mCarrierConfigChangedReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(final Context context, final Intent intent) {
-            mLogger.v("onReceive() : intent=" + intent);
+            mLogger.v("onReceive() : intent=%s.", intent);
 
             switch (intent.getAction()) {
                 case TelephonyManager.ACTION_SIM_CARD_STATE_CHANGED:
@@ -99,6 +102,21 @@ public abstract class Subscriptions implements Iterable<Subscription> {
      */
     private final AtomicBoolean mCarrierConfigChangedReceiverRegistered = new AtomicBoolean();
 
+    /**
+     * Atomic flag indicating whether the listeners invalidating the {@link #mSnapshot} have been
+     * registered or not. Once registered, they're kept for the entire lifetime of the process.
+     */
+    private final AtomicBoolean mSnapshotInvalidationRegistered = new AtomicBoolean();
+
+    /**
+     * The version of the subscriptions data, that is bumped whenever the data is known to have
+     * changed.
+     */
+    private final AtomicLong mVersion = new AtomicLong();
+
+    /** The last known snapshot of the subscriptions data, or {@code null} if not built yet. */
+    private volatile SubscriptionsSnapshot mSnapshot;
+
     private final Context mContext;
     protected final Logger mLogger;
     protected final SubscriptionManager mSubscriptionManager;
@@ -142,11 +160,68 @@ public abstract class Subscriptions implements Iterable<Subscription> {
     }
 
     /**
-     * Return an iterator allowing iteration over all available subscriptions found on the device
-     * using {@link SubscriptionManager}.
+     * <p>Return an iterator allowing iteration over all available subscriptions found on the
+     * device using {@link SubscriptionManager}.
+     *
+     * <p>The subscriptions are served from the last known snapshot, that is rebuilt only when the
+     * subscriptions data changes. Each returned {@link Subscription} is a copy, which the caller is
+     * free to mutate.
      */
     @Override
-    public abstract Iterator<Subscription> iterator();
+    @WorkerThread
+    public final Iterator<Subscription> iterator() {
+        return getSnapshot().iterator();
+    }
+
+    /**
+     * Create an iterator allowing iteration over all available subscriptions found on the device
+     * using {@link SubscriptionManager}, querying the system and the database on the go.
+     *
+     * @return The iterator returning newly created {@link Subscription} DTOs.
+     */
+    @WorkerThread
+    protected abstract Iterator<Subscription> createSubscriptionIterator();
+
+    /**
+     * Get the last known snapshot of the subscriptions data, rebuilding it if stale.
+     *
+     * @return The snapshot of the subscriptions data.
+     */
+    @WorkerThread
+    protected final SubscriptionsSnapshot getSnapshot() {
+        registerSnapshotInvalidation();
+
+        final SubscriptionsSnapshot snapshot = mSnapshot;
+        final long version = mVersion.get();
+        if (snapshot != null && snapshot.getVersion() == version) {
+            return snapshot;
+        }
+
+        final SubscriptionsSnapshot newSnapshot;
+        Trace.beginSection("Subscriptions#buildSnapshot");
+        try {
+            newSnapshot = new SubscriptionsSnapshot(version, createSubscriptionIterator());
+        } finally {
+            Trace.endSection();
+        }
+        // Publish the new snapshot only if the subscriptions data didn't change while building,
+        // otherwise, the next caller will rebuild it anyway
+        if (mVersion.get() == version) {
+            mSnapshot = newSnapshot;
+        }
+
+        mLogger.v("getSnapshot() : Built %s.", newSnapshot);
+
+        return newSnapshot;
+    }
+
+    /**
+     * Mark the last known snapshot of the subscriptions data as stale, so that it will be rebuilt
+     * on next access.
+     */
+    protected final void invalidateSnapshot() {
+        mVersion.incrementAndGet();
+    }
 
     /**
      * Get a subscription satisfying the custom predicate.
@@ -173,8 +248,9 @@ public abstract class Subscriptions implements Iterable<Subscription> {
      * @return An Optional containing the {@link Subscription}, if any.
      */
     @CallSuper
+    @WorkerThread
     public Optional<Subscription> getSubscriptionForSubId(final int subId) {
-        return getSubscription((sub) -> sub.getId() == subId);
+        return getSnapshot().getSubscriptionForSubId(subId);
     }
 
     /**
@@ -182,18 +258,21 @@ public abstract class Subscriptions implements Iterable<Subscription> {
      * {@link SubscriptionInfo} DTO produced by the {@link SubscriptionManager}.
      *
      * @param subInfo The {@link SubscriptionInfo} to extract data from.
+     * @param persistedSubs All {@link Subscription}s persisted on disk mapped by their
+     * subscription ID.
      * @return An instance of {@link Subscription} with all business-related information.
      */
     @CallSuper
-    @WorkerThread
-    protected Subscription createSubscription(final @NonNull SubscriptionInfo subInfo) {
+    protected Subscription createSubscription(final @NonNull SubscriptionInfo subInfo,
+            final @NonNull SparseArrayCompat<Subscription> persistedSubs) {
+
         final Subscription subscription = new Subscription();
         subscription.setId(subInfo.getSubscriptionId());
         subscription.setIconTint(subInfo.getIconTint());
         Optional.ofNullable(subInfo.getDisplayName()).ifPresent((name) ->
                 subscription.setSimName(name.toString()));
 
-        mSubscriptionsDao.findBySubscriptionId(subInfo.getSubscriptionId()).ifPresent((sub) -> {
+        Optional.ofNullable(persistedSubs.get(subInfo.getSubscriptionId())).ifPresent((sub) -> {
             subscription.setLastActivatedTime(sub.getLastActivatedTime());
             subscription.setLastDeactivatedTime(sub.getLastDeactivatedTime());
             subscription.keepDisabledAcrossBoots(sub.getKeepDisabledAcrossBoots());
@@ -217,6 +296,8 @@ public abstract class Subscriptions implements Iterable<Subscription> {
         persistSubscriptionState(sub.getId(), sub.getSimState());
 
         mSubscriptionsDao.upsert(sub);
+
+        invalidateSnapshot();
     }
 
     /**
@@ -272,8 +353,9 @@ public abstract class Subscriptions implements Iterable<Subscription> {
 
         mOnSubscriptionsChangedListeners.remove(listener);
 
-        // Stop listening for the SubscriptionManager if the last listener unsubscribed
-        if (mOnSubscriptionsChangedListeners.isEmpty()) {
+        // Stop listening for the SubscriptionManager if the last listener unsubscribed, unless we
+        // need it to keep the snapshot of the subscriptions data up-to-date
+        if (mOnSubscriptionsChangedListeners.isEmpty() && !mSnapshotInvalidationRegistered.get()) {
             unregisterSubscriptionManagerListener();
         }
     }
@@ -334,33 +416,65 @@ public abstract class Subscriptions implements Iterable<Subscription> {
         persistUsableSubIds(usableSubIds);
 
         // Process the list of SIM subscription IDs that doesn't exist anymore in the system
+        final List<Integer> removedSubIdInts = new ArrayList<>(removedSubIds.size());
         for (final String subId : removedSubIds) {
             try {
-                final int subIdInt = Integer.parseInt(subId);
-                final Optional<Subscription> sub = mSubscriptionsDao.findBySubscriptionId(subIdInt);
-
-                sub.ifPresent((sub1) -> {
-                    mLogger.d("syncSubscriptions(dateTime=%s) : %s.", dateTime, sub1);
-
-                    // Reset the last activated/deactivated times on SIM subscription removal. This
-                    // is because we expect the schedules to take precedence over user preference
-                    // when re-inserted
-                    sub1.setLastActivatedTime(LocalDateTime.MIN);
-                    sub1.setLastDeactivatedTime(LocalDateTime.MIN);
-                    sub1.setSimState(SimState.UNKNOWN);
-                    persistSubscription(sub1);
-                });
-
-                if (!sub.isPresent()) {
-                    // Reset the SIM subscription enabled state in volatile memory to be able to
-                    // detect alterations from outside when re-inserted
-                    persistSubscriptionState(subIdInt, SimState.UNKNOWN);
-                }
+                removedSubIdInts.add(Integer.parseInt(subId));
             } catch (NumberFormatException e) {
                 mLogger.e("syncSubscriptions(dateTime=%s) : Invalid subscription ID: %s.",
                         dateTime, subId);
             }
         }
+        if (removedSubIdInts.isEmpty()) {
+            return;
+        }
+
+        // Fetch all removed SIM subscriptions in a single query
+        final SparseArrayCompat<Subscription> removedSubs =
+            new SparseArrayCompat<>(removedSubIdInts.size());
+        for (Subscription sub : mSubscriptionsDao.findAllBySubscriptionIds(removedSubIdInts)) {
+            removedSubs.put(sub.getId(), sub);
+        }
+
+        for (final int subId : removedSubIdInts) {
+            final Subscription sub = removedSubs.get(subId);
+            if (sub != null) {
+                mLogger.d("syncSubscriptions(dateTime=%s) : %s.", dateTime, sub);
+
+                // Reset the last activated/deactivated times on SIM subscription removal. This
+                // is because we expect the schedules to take precedence over user preference
+                // when re-inserted
+                sub.setLastActivatedTime(LocalDateTime.MIN);
+                sub.setLastDeactivatedTime(LocalDateTime.MIN);
+                sub.setSimState(SimState.UNKNOWN);
+                persistSubscription(sub);
+            } else {
+                // Reset the SIM subscription enabled state in volatile memory to be able to
+                // detect alterations from outside when re-inserted
+                persistSubscriptionState(subId, SimState.UNKNOWN);
+            }
+        }
+    }
+
+    /**
+     * Start listening for all events that may change the subscriptions data, in order to
+     * invalidate the snapshot. This is done only once per process.
+     */
+    private void registerSnapshotInvalidation() {
+        if (mSnapshotInvalidationRegistered.getAndSet(true)) {
+            return;
+        }
+
+        mLogger.v("registerSnapshotInvalidation().");
+
+        if (!mSubscriptionManagerListenerRegistered.getAndSet(true)) {
+            // The legacy SubscriptionManager API binds the listener to the looper of the calling
+            // thread, so ensure we're registering it from the main thread
+            mContext.getMainExecutor().execute(this::registerSubscriptionManagerListener);
+        }
+        if (!mCarrierConfigChangedReceiverRegistered.getAndSet(true)) {
+            registerCarrierConfigChangedReceiver();
+        }
     }
 
     /**
@@ -415,6 +529,8 @@ public abstract class Subscriptions implements Iterable<Subscription> {
     protected void notifyAllListeners() {
         mLogger.v("notifyAllListeners().");
 
+        invalidateSnapshot();
+
         // Note, because of the use of CopyOnWriteArrayList, we *must* use an iterator to perform
         // the subscription data change dispatching. The iterator is a safe guard against listeners
         // that could mutate the list by calling the various add/remove methods. This prevents the
@@ -437,6 +553,8 @@ public abstract class Subscriptions implements Iterable<Subscription> {
 
         mLogger.v("dispatchOnSimStatusChanged(slotIndex=%d,state=%d).", slotIndex, state);
 
+        invalidateSnapshot();
+
         // Note, because of the use of CopyOnWriteArrayList, we *must* use an iterator to perform
         // the subscriptions data change dispatching. The iterator is a safe guard against
         // listeners that could mutate the list by calling the various add/remove methods. This
@@ -487,8 +605,9 @@ public abstract class Subscriptions implements Iterable<Subscription> {
 
         mOnSimStatusChangedListeners.remove(listener);
 
-        // Stop the receiver if the last listener unsubscribed
-        if (mOnSimStatusChangedListeners.isEmpty()) {
+        // Stop the receiver if the last listener unsubscribed, unless we need it to keep the
+        // snapshot of the subscriptions data up-to-date
+        if (mOnSimStatusChangedListeners.isEmpty() && !mSnapshotInvalidationRegistered.get()) {
             unregisterCarrierConfigChangedReceiver();
         }
     }
@@ -4,6 +4,8 @@ import androidx.room.Dao;
 import androidx.room.Query;
 import androidx.room.Upsert;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Dao
@@ -13,4 +15,10 @@ public interface SubscriptionsDao {
 
     @Query("SELECT * FROM subscriptions WHERE id = :subId")
     Optional<Subscription> findBySubscriptionId(int subId);
+
+    @Query("SELECT * FROM subscriptions WHERE id IN (:subIds)")
+    List<Subscription> findAllBySubscriptionIds(Collection<Integer> subIds);
+
+    @Query("SELECT * FROM subscriptions")
+    List<Subscription> loadAll();
 }
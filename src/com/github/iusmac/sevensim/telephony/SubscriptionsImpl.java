@@ -5,6 +5,7 @@ import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 
 import androidx.annotation.WorkerThread;
+import androidx.collection.SparseArrayCompat;
 
 import com.github.iusmac.sevensim.AppDatabaseDE;
 import com.github.iusmac.sevensim.Logger;
@@ -47,8 +48,8 @@ public final class SubscriptionsImpl extends Subscriptions {
      */
     @Override
     @WorkerThread
-    public Iterator<Subscription> iterator() {
-        return new SubscriptionList(mSubscriptionManager) {
+    protected Iterator<Subscription> createSubscriptionIterator() {
+        return new SubscriptionList(mSubscriptionManager, mSubscriptionsDao) {
             /**
              * {@inheritDoc}
              *
@@ -60,7 +61,8 @@ public final class SubscriptionsImpl extends Subscriptions {
                     for (int i = mLastIndex; i < mVisibleSubInfoList.size(); i++) {
                         final SubscriptionInfo subInfo;
                         if (!(subInfo = mVisibleSubInfoList.get(i)).isEmbedded()) {
-                            mNextElementCandidate = createSubscription(subInfo);
+                            mNextElementCandidate = createSubscription(subInfo,
+                                    mPersistedSubscriptions);
                             mCurrentIndex = i;
                             return true;
                         }
@@ -76,8 +78,10 @@ public final class SubscriptionsImpl extends Subscriptions {
      */
     @Override
     @WorkerThread
-    protected Subscription createSubscription(final SubscriptionInfo subInfo) {
-        final Subscription sub = super.createSubscription(subInfo);
+    protected Subscription createSubscription(final SubscriptionInfo subInfo,
+            final SparseArrayCompat<Subscription> persistedSubs) {
+
+        final Subscription sub = super.createSubscription(subInfo, persistedSubs);
 
         // Note that, we intentionally don't assign the slot index for the subscription here,
         // because from "real life" testing, it turned out that a disabled subscription will no
@@ -9,6 +9,7 @@ import androidx.annotation.ColorInt;
 import androidx.annotation.IntRange;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
+import androidx.collection.SparseArrayCompat;
 
 import com.github.iusmac.sevensim.AppDatabaseDE;
 import com.github.iusmac.sevensim.Logger;
@@ -87,8 +88,8 @@ public final class SubscriptionsImplLegacy extends Subscriptions {
      */
     @Override
     @WorkerThread
-    public Iterator<Subscription> iterator() {
-        return new SubscriptionList(mSubscriptionManager) {
+    protected Iterator<Subscription> createSubscriptionIterator() {
+        return new SubscriptionList(mSubscriptionManager, mSubscriptionsDao) {
             /**
              * {@inheritDoc}
              *
@@ -100,7 +101,8 @@ public final class SubscriptionsImplLegacy extends Subscriptions {
                     if (mVisibleSubInfoList != null) {
                         for (SubscriptionInfo subInfo : mVisibleSubInfoList) {
                             if (subInfo.getSimSlotIndex() == i) {
-                                mNextElementCandidate = createSubscription(subInfo);
+                                mNextElementCandidate = createSubscription(subInfo,
+                                        mPersistedSubscriptions);
                                 mCurrentIndex = i;
                                 return true;
                             }
@@ -110,7 +112,7 @@ public final class SubscriptionsImplLegacy extends Subscriptions {
                     // If there's no SubscriptionInfo for slot index, but SIM card appears to be
                     // disabled, then we restore the last subscription registered in the slot
                     if (getPersistedSimState(i) == SimState.DISABLED) {
-                        mNextElementCandidate = restoreSubscription(i);
+                        mNextElementCandidate = restoreSubscription(i, mPersistedSubscriptions);
                         mCurrentIndex = i;
                         return true;
                     }
@@ -132,15 +134,17 @@ public final class SubscriptionsImplLegacy extends Subscriptions {
      */
     @WorkerThread
     public Optional<Subscription> getSubscriptionForSimSlotIndex(final int slotIndex) {
-        return getSubscription((sub) -> sub.getSlotIndex() == slotIndex);
+        return getSnapshot().getSubscriptionForSimSlotIndex(slotIndex);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected Subscription createSubscription(final SubscriptionInfo subInfo) {
-        final Subscription sub = super.createSubscription(subInfo);
+    protected Subscription createSubscription(final SubscriptionInfo subInfo,
+            final SparseArrayCompat<Subscription> persistedSubs) {
+
+        final Subscription sub = super.createSubscription(subInfo, persistedSubs);
 
         sub.setSlotIndex(subInfo.getSimSlotIndex());
         // Subscriptions having a SubscriptionInfo mean that the SIM slot is powered up and there's
@@ -176,13 +180,16 @@ public final class SubscriptionsImplLegacy extends Subscriptions {
      * {@link #persistSubscription(Subscription)}.
      *
      * @param slotIndex The corresponding slot index.
+     * @param persistedSubs All {@link Subscription}s persisted on disk mapped by their
+     * subscription ID.
      * @return An instance of {@link Subscription}.
      */
-    @WorkerThread
-    private Subscription restoreSubscription(final int slotIndex) {
+    private Subscription restoreSubscription(final int slotIndex,
+            final SparseArrayCompat<Subscription> persistedSubs) {
+
         final int subId = getPersistedSubscriptionId(slotIndex);
         final Subscription subscription =
-            mSubscriptionsDao.findBySubscriptionId(subId).orElseGet(() -> {
+            Optional.ofNullable(persistedSubs.get(subId)).orElseGet(() -> {
                 final Subscription sub = new Subscription();
                 sub.setId(subId);
                 return sub;
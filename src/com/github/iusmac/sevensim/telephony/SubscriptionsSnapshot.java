@@ -0,0 +1,105 @@
+package com.github.iusmac.sevensim.telephony;
+
+import androidx.annotation.NonNull;
+import androidx.collection.SparseArrayCompat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static android.telephony.SubscriptionManager.INVALID_SIM_SLOT_INDEX;
+
+/**
+ * <p>This class holds the {@link Subscription} DTOs of all available subscriptions found on the
+ * device at a particular point in time, indexed by subscription ID and SIM slot index.
+ *
+ * <p>This class is <strong>immutable</strong>, thus also <strong>thread-safe</strong>. To keep it
+ * so, all {@link Subscription} DTOs are handed out as copies, which the caller is free to mutate.
+ */
+final class SubscriptionsSnapshot implements Iterable<Subscription> {
+    /** The version of the subscriptions data this snapshot was built from. */
+    private final long mVersion;
+
+    /** The subscriptions in the same order as they were discovered. */
+    private final List<Subscription> mSubscriptions;
+
+    private final SparseArrayCompat<Subscription> mSubscriptionsBySubId;
+    private final SparseArrayCompat<Subscription> mSubscriptionsBySlotIndex;
+
+    /**
+     * @param version The version of the subscriptions data this snapshot is built from.
+     * @param subscriptions The iterator over all available subscriptions. Note that, the
+     * subscriptions will be owned by this snapshot.
+     */
+    SubscriptionsSnapshot(final long version, final @NonNull Iterator<Subscription> subscriptions) {
+        mVersion = version;
+
+        final List<Subscription> list = new ArrayList<>(2);
+        final SparseArrayCompat<Subscription> bySubId = new SparseArrayCompat<>(2);
+        final SparseArrayCompat<Subscription> bySlotIndex = new SparseArrayCompat<>(2);
+        while (subscriptions.hasNext()) {
+            final Subscription sub = subscriptions.next();
+            list.add(sub);
+            bySubId.put(sub.getId(), sub);
+            if (sub.getSlotIndex() != INVALID_SIM_SLOT_INDEX) {
+                bySlotIndex.put(sub.getSlotIndex(), sub);
+            }
+        }
+        mSubscriptions = Collections.unmodifiableList(list);
+        mSubscriptionsBySubId = bySubId;
+        mSubscriptionsBySlotIndex = bySlotIndex;
+    }
+
+    /**
+     * @return The version of the subscriptions data this snapshot was built from.
+     */
+    long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @param subId The corresponding subscription ID.
+     * @return An Optional containing a copy of the {@link Subscription}, if any.
+     */
+    Optional<Subscription> getSubscriptionForSubId(final int subId) {
+        return Optional.ofNullable(mSubscriptionsBySubId.get(subId)).map(Subscription::new);
+    }
+
+    /**
+     * @param slotIndex The corresponding SIM slot index.
+     * @return An Optional containing a copy of the {@link Subscription}, if any.
+     */
+    Optional<Subscription> getSubscriptionForSimSlotIndex(final int slotIndex) {
+        return Optional.ofNullable(mSubscriptionsBySlotIndex.get(slotIndex))
+            .map(Subscription::new);
+    }
+
+    /**
+     * @return An iterator returning copies of the {@link Subscription} DTOs.
+     */
+    @Override
+    public Iterator<Subscription> iterator() {
+        final Iterator<Subscription> it = mSubscriptions.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Subscription next() {
+                return new Subscription(it.next());
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriptionsSnapshot {"
+            + " version=" + mVersion
+            + " subscriptions=" + mSubscriptions
+            + " }";
+    }
+}
@@ -1,13 +1,19 @@
 package com.github.iusmac.sevensim.telephony;
 
 import android.content.Context;
-import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.telephony.TelephonyManager;
+import android.util.SparseBooleanArray;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.GuardedBy;
-import androidx.annotation.WorkerThread;
-import androidx.core.os.BundleCompat;
+import androidx.annotation.NonNull;
+import androidx.collection.SparseArrayCompat;
 
+import com.github.iusmac.sevensim.Diagnostics;
 import com.github.iusmac.sevensim.Logger;
 import com.github.iusmac.sevensim.R;
 import com.github.iusmac.sevensim.Utils;
@@ -15,12 +21,15 @@ import com.github.iusmac.sevensim.Utils;
 import dagger.hilt.android.qualifiers.ApplicationContext;
 
 import java.time.LocalDateTime;
-import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import static android.telephony.SubscriptionManager.INVALID_SUBSCRIPTION_ID;
+
 /**
  * <p>The responsibility of this class is to provide to devices using the legacy Radio Interface
  * Layer (RIL) the ability to control the enable state of individual physical (non-eUICC) SIM cards.
@@ -34,60 +43,127 @@ import javax.inject.Singleton;
  * <p>A device is considered to be using the legacy RIL when the response of
  * {@link TelephonyUtils#canDisableUiccSubscription()} is {@code false}.
  *
+ * <p>The SIM power state change requests are queued per SIM slot and performed on a background
+ * thread, so that requests for different SIM slots proceed independently, and the callers are
+ * never blocked.
+ *
  * <p>This class is <strong>thread-safe</strong>.
  *
  * @see SubscriptionsImplLegacy
  */
 @Singleton
 public final class TelephonyController {
-    /**
-     * Timeout used to wait for the response after performing SIM power state change request via
-     * {@link #setSimPowerStateForSlot}.
-     */
-    private static final int SET_SIM_POWER_STATE_REQUEST_TIMEOUT_MILLIS = 3_000;
-
     /**
      * <p>Custom SIM power state response codes used to handle uncovered edge cases when performing
      * modem requests.
      *
      * <p>Note, the values **must** be less than zero to not collide with the system ones.
      */
-    private static final int SET_SIM_POWER_STATE_SIM_ABSENT = -1;
-    private static final int SET_SIM_POWER_STATE_MODEM_TIMEOUT = -2;
+    public static final int SET_SIM_POWER_STATE_SIM_ABSENT = -1;
+    public static final int SET_SIM_POWER_STATE_MODEM_TIMEOUT = -2;
+    public static final int SET_SIM_POWER_STATE_ABORTED = -3;
+    public static final int SET_SIM_POWER_STATE_SKIPPED = -4;
+
+    /** The name of the async trace slice spanning a request from being queued to its completion. */
+    private static final String TRACE_SET_SIM_STATE = "TelephonyController#setSimState";
+
+    /** The name of the async trace slice spanning the modem round-trip of a request. */
+    private static final String TRACE_SET_SIM_POWER_STATE_FOR_SLOT =
+        "TelephonyController#setSimPowerStateForSlot";
+
+    /** The tail of the SIM power state change request queue per SIM slot. */
+    @GuardedBy("this")
+    private final SparseArrayCompat<CompletableFuture<Integer>> mSlotPipelines =
+        new SparseArrayCompat<>(2);
+
+    /**
+     * The last SIM power state change request queued per SIM slot that hasn't started yet. Any
+     * newer request for the same SIM slot will supersede it.
+     */
+    @GuardedBy("this")
+    private final SparseArrayCompat<SimPowerRequest> mQueuedRequests = new SparseArrayCompat<>(2);
+
+    /** The target enabled state of the last SIM power state change request per SIM slot. */
+    @GuardedBy("this")
+    private final SparseBooleanArray mLastRequestedStates = new SparseBooleanArray(2);
+
+    /** The SIM power state change requests awaiting the modem response per SIM slot. */
+    @GuardedBy("this")
+    private final SparseArrayCompat<SimPowerRequest> mInFlightRequests =
+        new SparseArrayCompat<>(2);
+
+    /**
+     * The timed out SIM power state change requests per SIM slot that still await a late modem
+     * response to learn the actual latency from.
+     */
+    @GuardedBy("this")
+    private final SparseArrayCompat<SimPowerRequest> mLateResponseRequests =
+        new SparseArrayCompat<>(2);
 
-    /** For request metadata fields. */
-    private static final String KEY_SUBSCRIPTION = "subscription";
-    private static final String KEY_LAST_ACTIVATED_TIME = "last_activated_time";
-    private static final String KEY_LAST_DEACTIVATED_TIME = "last_deactivated_time";
-    private static final String KEY_KEEP_DISABLED_ACROSS_BOOTS = "keep_disabled_across_boots";
+    /** The names of the per-SIM slot metrics, cached to not build them on each request. */
+    @GuardedBy("this")
+    private final SparseArrayCompat<String> mRttMetricNames = new SparseArrayCompat<>(2);
+    @GuardedBy("this")
+    private final SparseArrayCompat<String> mTimeoutMetricNames = new SparseArrayCompat<>(2);
 
-    /** The globally accessible request metadata used when performing SIM power state mutations. */
+    /** The ID of the next SIM power state change request, used to correlate the trace slices. */
     @GuardedBy("this")
-    private final Bundle mRequestMetadata = new Bundle(4);
+    private int mNextRequestId;
+
+    private final SimStatusChangedListener mSimStatusChangedListener =
+        new SimStatusChangedListener();
 
     @GuardedBy("this")
-    private SimStatusChangedListener mSimStatusChangedListener;
+    private boolean mSimStatusChangedListenerRegistered;
 
     private final Context mContext;
     private final Logger mLogger;
     private final TelephonyManager mTelephonyManager;
     private final SubscriptionsImplLegacy mSubscriptions;
+    private final ModemReadinessGate mModemReadinessGate;
+    private final SimPowerLatencyTracker mSimPowerLatencyTracker;
+    private final Diagnostics mDiagnostics;
+    private final SimTransitionJournal mSimTransitionJournal;
+
+    private final Handler mHandler;
+    private final Executor mExecutor;
 
     @Inject
     public TelephonyController(final @ApplicationContext Context context,
             final Logger.Factory loggerFactory,
             final TelephonyManager telephonyManager,
-            final SubscriptionsImplLegacy subscriptions) {
+            final SubscriptionsImplLegacy subscriptions,
+            final ModemReadinessGate modemReadinessGate,
+            final SimPowerLatencyTracker simPowerLatencyTracker,
+            final Diagnostics diagnostics,
+            final SimTransitionJournal simTransitionJournal) {
 
         mContext = context;
         mLogger = loggerFactory.create(getClass().getSimpleName());
         mTelephonyManager = telephonyManager;
         mSubscriptions = subscriptions;
+        mModemReadinessGate = modemReadinessGate;
+        mSimPowerLatencyTracker = simPowerLatencyTracker;
+        mDiagnostics = diagnostics;
+        mSimTransitionJournal = simTransitionJournal;
+
+        final HandlerThread handlerThread = new HandlerThread(getClass().getSimpleName());
+        handlerThread.setDaemon(true);
+        handlerThread.start();
+        mHandler = Handler.createAsync(handlerThread.getLooper());
+        mExecutor = mHandler::post;
     }
 
     /**
      * <p>Disable or re-enable a SIM card.
      *
+     * <p>The request is queued after the pending requests for the same SIM slot, if any, and
+     * performed on a background thread. If there's already a queued request for the same SIM slot
+     * that hasn't started yet, then it'll be superseded by this request, and both callers will
+     * receive the same future, e.g. enable→disable→enable results in a single enable request.
+     * The request will be skipped without touching the modem if the SIM card is already in the
+     * target state.
+     *
      * <p>In order to be notified when the setting for the SIM card is applied, the callers must
      * monitor the {@link Subscriptions}.
      *
@@ -95,109 +171,363 @@ public final class TelephonyController {
      * @param enabled {@code true} if SIM card should be enabled, {@code false} otherwise.
      * @param keepDisabledAcrossBoots Whether the disabled state of the SIM card should persist
      * across boots.
+     * @param source The origin of the request to record in the {@link SimTransitionJournal}.
+     * @return The future that will complete with the response code from the modem, or any of the
+     * custom {@code SET_SIM_POWER_STATE_*} response codes.
      */
-    @WorkerThread
-    public void setSimState(final int slotIndex, final boolean enabled,
-            final boolean keepDisabledAcrossBoots) {
+    @AnyThread
+    public @NonNull CompletableFuture<Integer> setSimState(final int slotIndex,
+            final boolean enabled, final boolean keepDisabledAcrossBoots,
+            final @TransitionSource int source) {
 
-        final String logPrefix = String.format(Locale.getDefault(), "setSimState(slotIndex=%d," +
-                "enabled=%s,keepDisabledAcrossBoots=%s) : ", slotIndex, enabled,
-                keepDisabledAcrossBoots);
+        final long requestedAtMillis = System.currentTimeMillis();
+
+        // Let the next SIM power state change request wait for the modem to settle. Note that, we
+        // do this right away rather than when the request starts, to ensure the callers won't
+        // observe a settled modem in the meantime
+        mModemReadinessGate.arm(slotIndex);
+
+        synchronized (this) {
+            final SimPowerRequest queuedRequest = mQueuedRequests.get(slotIndex);
+            if (queuedRequest != null) {
+                queuedRequest.enabled = enabled;
+                queuedRequest.newKeepDisabledAcrossBoots = keepDisabledAcrossBoots;
+                queuedRequest.source = source;
+                queuedRequest.requestedAtMillis = requestedAtMillis;
+                final long coalescedRequestCount =
+                    mDiagnostics.increment("sim_power_request_coalesced");
+
+                mLogger.d("setSimState() : Coalesced into %s. coalescedRequestCount=%d.",
+                        queuedRequest, coalescedRequestCount);
+
+                return queuedRequest.result;
+            }
+
+            final SimPowerRequest request = new SimPowerRequest(mNextRequestId++, slotIndex,
+                    enabled, keepDisabledAcrossBoots, source, requestedAtMillis);
+            mQueuedRequests.put(slotIndex, request);
+            Trace.beginAsyncSection(TRACE_SET_SIM_STATE, request.id);
+
+            mLogger.d("setSimState() : Enqueue %s.", request);
+
+            final CompletableFuture<Integer> tail = mSlotPipelines.get(slotIndex);
+            final CompletableFuture<Integer> pipeline = (tail != null ? tail :
+                    CompletableFuture.<Integer>completedFuture(null))
+                .handle((resCode, throwable) -> null)
+                .thenComposeAsync((unused) -> startRequest(request), mExecutor);
+            mSlotPipelines.put(slotIndex, pipeline);
+
+            // Drop the queue of the SIM slot as soon as it drains
+            pipeline.whenComplete((resCode, throwable) -> {
+                Trace.endAsyncSection(TRACE_SET_SIM_STATE, request.id);
+                synchronized (TelephonyController.this) {
+                    if (mSlotPipelines.get(slotIndex) == pipeline) {
+                        mSlotPipelines.remove(slotIndex);
+                    }
+                }
+            });
+            return pipeline;
+        }
+    }
+
+    /**
+     * Start the SIM power state change request.
+     *
+     * @param request The request to start.
+     * @return The future that will complete when the request finishes.
+     */
+    private CompletableFuture<Integer> startRequest(final SimPowerRequest request) {
+        final int slotIndex = request.slotIndex;
+        final boolean enabled, keepDisabledAcrossBoots, lastRequestedEnabled;
+        synchronized (this) {
+            // From now on, the request can no longer be superseded
+            mQueuedRequests.remove(slotIndex);
+            enabled = request.enabled;
+            keepDisabledAcrossBoots = request.newKeepDisabledAcrossBoots;
+            lastRequestedEnabled = mLastRequestedStates.get(slotIndex, enabled);
+        }
+
+        mLogger.d("startRequest() : %s.", request);
 
         // From testing, it turned out that SIM power state change request ignores Airplane mode,
         // so we can allow disabling but not enabling request
         if (enabled && TelephonyUtils.isAirplaneModeOn(mContext)) {
-            mLogger.w(logPrefix + "Aborting due to Airplane mode.");
+            mLogger.w("startRequest() : Aborting due to Airplane mode. %s.", request);
 
             Utils.makeToast(mContext, mContext.getString(R.string.airplane_mode_enabled));
 
-            mSubscriptions.notifyAllListeners();
-            return;
+            return finishRequestEarly(request, SET_SIM_POWER_STATE_ABORTED);
         }
 
-        synchronized (this) {
-            mLogger.d(logPrefix + "In sync block.");
-
-            final Subscription sub =
-                mSubscriptions.getSubscriptionForSimSlotIndex(slotIndex).orElse(null);
-
-            if (sub == null) {
-                mLogger.e(logPrefix + "Aborting due to missing subscription.");
-                mSubscriptions.notifyAllListeners();
-                return;
-            }
+        final Subscription sub =
+            mSubscriptions.getSubscriptionForSimSlotIndex(slotIndex).orElse(null);
 
-            // Globally save metadata needed when handling SIM power change request termination
-            mRequestMetadata.putParcelable(KEY_SUBSCRIPTION, sub);
-            if (sub.getKeepDisabledAcrossBoots() != null) {
-                mRequestMetadata.putBoolean(KEY_KEEP_DISABLED_ACROSS_BOOTS,
-                        sub.getKeepDisabledAcrossBoots());
-            }
+        if (sub == null) {
+            mLogger.e("startRequest() : Aborting due to missing subscription. %s.", request);
+            return finishRequestEarly(request, SET_SIM_POWER_STATE_ABORTED);
+        }
 
-            // Keep track of SIM state whenever it's mutated. This will be persisted in a volatile
-            // memory, so that we can further restore all relevant data. This because when powering
-            // down the SIM is the same as removing it, which means the SIM will completely
-            // disappear from the system and we won't be able to grab the subscription data from
-            // SubscriptionManager anymore, even though the SIM is still present in the slot
-            sub.setSimState(TelephonyUtils.simStateInt(enabled));
+        // Drop the request if the SIM card is already in the target state. Note that, we also
+        // check the last requested state, because the subscriptions may not yet reflect the
+        // outcome of the previous request
+        if (sub.isSimEnabled() == enabled && lastRequestedEnabled == enabled) {
+            final long skippedRequestCount = mDiagnostics.increment("sim_power_request_skipped");
 
-            mRequestMetadata.putString(KEY_LAST_ACTIVATED_TIME,
-                    sub.getLastActivatedTime().toString());
-            mRequestMetadata.putString(KEY_LAST_DEACTIVATED_TIME,
-                    sub.getLastDeactivatedTime().toString());
+            mLogger.d("startRequest() : Skipping as already in state. %s,skippedRequestCount=%d.",
+                    request, skippedRequestCount);
 
-            sub.setLastActivatedTime(enabled ? LocalDateTime.now() : LocalDateTime.MIN);
-            sub.setLastDeactivatedTime(!enabled ? LocalDateTime.now() : LocalDateTime.MIN);
+            return finishRequestEarly(request, SET_SIM_POWER_STATE_SKIPPED);
+        }
 
-            sub.keepDisabledAcrossBoots(keepDisabledAcrossBoots);
+        // Save the data needed when handling SIM power change request termination
+        request.sub = sub;
+        request.lastActivatedTime = sub.getLastActivatedTime();
+        request.lastDeactivatedTime = sub.getLastDeactivatedTime();
+        request.keepDisabledAcrossBoots = sub.getKeepDisabledAcrossBoots();
+
+        // Keep track of SIM state whenever it's mutated. This will be persisted in a volatile
+        // memory, so that we can further restore all relevant data. This because when powering
+        // down the SIM is the same as removing it, which means the SIM will completely disappear
+        // from the system and we won't be able to grab the subscription data from
+        // SubscriptionManager anymore, even though the SIM is still present in the slot
+        sub.setSimState(TelephonyUtils.simStateInt(enabled));
+
+        sub.setLastActivatedTime(enabled ? LocalDateTime.now() : LocalDateTime.MIN);
+        sub.setLastDeactivatedTime(!enabled ? LocalDateTime.now() : LocalDateTime.MIN);
+
+        sub.keepDisabledAcrossBoots(keepDisabledAcrossBoots);
+
+        // Before making any request, persist the subscription associated with the SIM whose
+        // power state we're going to change, to immediately reflect the changes on the callers
+        // side, since this request is generally successful and pretty fast. In case the SIM
+        // power change request fails, everything will be reverted to the actual state and the
+        // callers will be notified again
+        mSubscriptions.persistSubscription(sub);
+
+        // Stop waiting for the late response of the previous request, if any, as the responses
+        // for the SIM slot can no longer be told apart
+        final SimPowerRequest lateResponseRequest;
+        synchronized (this) {
+            lateResponseRequest = mLateResponseRequests.get(slotIndex);
+        }
+        if (lateResponseRequest != null) {
+            mHandler.removeCallbacksAndMessages(lateResponseRequest);
+            finishLateResponseWindow(lateResponseRequest);
+        }
 
-            // Before making any request, persist the subscription associated with the SIM whose
-            // power state we're going to change, to immediately reflect the changes on the callers
-            // side, since this request is generally successful and pretty fast. In case the SIM
-            // power change request fails, everything will be reverted to the actual state and the
-            // callers will be notified again
-            mSubscriptions.persistSubscription(sub);
+        synchronized (this) {
+            mInFlightRequests.put(slotIndex, request);
+            mLastRequestedStates.put(slotIndex, enabled);
 
             // Start to listen to the state mutations of all available SIM cards on versions prior
             // to Android 12 (API 31). On newer versions we have an executor+callback API to handle
             // the response
-            if (Utils.IS_OLDER_THAN_S) {
-                mSimStatusChangedListener = new SimStatusChangedListener();
+            if (Utils.IS_OLDER_THAN_S && !mSimStatusChangedListenerRegistered) {
+                mSimStatusChangedListenerRegistered = true;
                 mSubscriptions.addOnSimStatusChangedListener(mSimStatusChangedListener);
             }
+        }
+
+        // The time to wait for the response is derived from how fast the modem responded before
+        final long timeoutMillis = mSimPowerLatencyTracker.getTimeoutMillis(slotIndex, enabled);
+
+        request.timeoutMillis = timeoutMillis;
+        request.startedAtMillis = SystemClock.elapsedRealtime();
+        Trace.beginAsyncSection(TRACE_SET_SIM_POWER_STATE_FOR_SLOT, request.id);
+        setSimPowerStateForSlot(slotIndex, simStateInt(enabled),
+                (resCode) -> finishRequest(request, resCode));
+
+        mHandler.postDelayed(() -> {
+            final int resCode;
+            if (enabled) {
+                // When trying to enable SIM, but the response from modem timeouts, then we know
+                // there's no SIM card in the slot. This is an implicit edge case that needs to be
+                // handled manually, because by Android telephony design, a powered up modem won't
+                // respond if there's no SIM card
+                resCode = SET_SIM_POWER_STATE_SIM_ABSENT;
+            } else {
+                // When trying to disable SIM, but the response from modem timeouts, then most
+                // likely the device modem does not support TelephonyManager#setSimPowerStateForSlot
+                // call. So far, this can occur on non-QCOM SoCs
+                resCode = SET_SIM_POWER_STATE_MODEM_TIMEOUT;
+            }
+            finishRequest(request, resCode);
+        }, request, timeoutMillis);
+
+        return request.result;
+    }
+
+    /**
+     * Finish the SIM power state change request before reaching the modem.
+     *
+     * @param request The request to finish.
+     * @param resCode Any of the custom {@code SET_SIM_POWER_STATE_*} response codes.
+     * @return The completed future of the request.
+     */
+    private CompletableFuture<Integer> finishRequestEarly(final SimPowerRequest request,
+            final int resCode) {
+
+        mModemReadinessGate.disarm(request.slotIndex);
+        recordTransition(request, resCode);
+        // Let the callers stay tuned to actual state, as they may have optimistically reflected
+        // the requested state
+        mSubscriptions.notifyAllListeners();
+        request.result.complete(resCode);
+        return request.result;
+    }
 
-            setSimPowerStateForSlot(slotIndex, simStateInt(enabled));
+    /**
+     * Finish the SIM power state change request awaiting the modem response. Only the first
+     * response will be handled, while the subsequent ones, e.g. those arrived after the timeout,
+     * are only used to learn the modem latency.
+     *
+     * @param request The request to finish.
+     * @param resCode The response code from the modem, or any of the custom
+     * {@code SET_SIM_POWER_STATE_*} response codes on timeout.
+     */
+    private void finishRequest(final SimPowerRequest request, final int resCode) {
+        // Learn from the first modem response, even if arrived after the timeout but within the
+        // late response window, so that the timeout can grow on slow modems. Note that, the same
+        // response may be reported by both the modem and the SIM status listener
+        final boolean isFirstResponse;
+        final String rttMetricName, timeoutMetricName;
+        synchronized (this) {
+            isFirstResponse = resCode >= 0 && !request.isLatencyRecorded;
+            request.isLatencyRecorded |= isFirstResponse;
+            rttMetricName = getSlotMetricName(mRttMetricNames, "sim_power_rtt_ms.slot",
+                    request.slotIndex);
+            timeoutMetricName = getSlotMetricName(mTimeoutMetricNames,
+                    "sim_power_request_timeout.slot", request.slotIndex);
+        }
+        if (isFirstResponse) {
+            final long latencyMillis = SystemClock.elapsedRealtime() - request.startedAtMillis;
+            mSimPowerLatencyTracker.recordLatency(request.slotIndex, request.enabled,
+                    latencyMillis);
+            mDiagnostics.record(rttMetricName, latencyMillis);
+        } else if (resCode == SET_SIM_POWER_STATE_MODEM_TIMEOUT) {
+            mDiagnostics.increment(timeoutMetricName);
+        }
 
-            try {
-                wait(SET_SIM_POWER_STATE_REQUEST_TIMEOUT_MILLIS);
-            } catch (InterruptedException e) {
-                mLogger.w(logPrefix + "Acquire wait interrupted.");
+        final boolean isTimeout = resCode == SET_SIM_POWER_STATE_SIM_ABSENT ||
+            resCode == SET_SIM_POWER_STATE_MODEM_TIMEOUT;
+        // On versions prior to Android 12 (API 31), a timed out disabling request is reverted, so
+        // a late SIM status change can't be told apart from the revert outcome
+        final boolean awaitLateResponse = isTimeout &&
+            (Utils.IS_AT_LEAST_S || resCode == SET_SIM_POWER_STATE_SIM_ABSENT);
+        synchronized (this) {
+            if (mInFlightRequests.get(request.slotIndex) != request) {
+                if (isFirstResponse && mLateResponseRequests.get(request.slotIndex) == request) {
+                    mLateResponseRequests.remove(request.slotIndex);
+                    mHandler.removeCallbacksAndMessages(request);
+                    maybeRemoveSimStatusChangedListener();
+                }
+                return;
             }
+            mInFlightRequests.remove(request.slotIndex);
+            Trace.endAsyncSection(TRACE_SET_SIM_POWER_STATE_FOR_SLOT, request.id);
 
-            if (Utils.IS_OLDER_THAN_S) {
-                mSubscriptions.removeOnSimStatusChangedListener(mSimStatusChangedListener);
-                mSimStatusChangedListener = null;
+            if (awaitLateResponse) {
+                mLateResponseRequests.put(request.slotIndex, request);
             }
+            maybeRemoveSimStatusChangedListener();
+        }
 
-            if (!mRequestMetadata.isEmpty()) { // Timed out
-                final int resCode;
-                if (enabled) {
-                    // When trying to enable SIM, but the response from modem timeouts, then we
-                    // know there's no SIM card in the slot. This is an implicit edge case that
-                    // needs to be handled manually, because by Android telephony design, a powered
-                    // up modem won't respond if there's no SIM card
-                    resCode = SET_SIM_POWER_STATE_SIM_ABSENT;
-                } else {
-                    // When trying to disable SIM, but the response from modem timeouts, then most
-                    // likely the device modem does not support TelephonyManager#setSimPowerStateForSlot
-                    // call. So far, this can occur on non-QCOM SoCs
-                    resCode = SET_SIM_POWER_STATE_MODEM_TIMEOUT;
-                }
-                handleOnSetSimPowerStateForSlotFinished(resCode);
+        // Cancel the timeout, if any
+        mHandler.removeCallbacksAndMessages(request);
+
+        if (awaitLateResponse) {
+            // Keep listening for the modem response until the longest timeout would elapse
+            mHandler.postDelayed(() -> finishLateResponseWindow(request), request,
+                    Math.max(0, SimPowerLatencyTracker.MAX_TIMEOUT_MILLIS -
+                        request.timeoutMillis));
+        } else if (isTimeout) {
+            finishLateResponseWindow(request);
+        }
+
+        recordTransition(request, resCode);
+
+        handleOnSetSimPowerStateForSlotFinished(request, resCode);
+
+        request.result.complete(resCode);
+    }
+
+    /**
+     * Stop waiting for the late modem response of the timed out SIM power state change request.
+     * If the modem hasn't responded yet, the timeout is recorded as the latency, so that the
+     * timeout can grow on modems that never respond in time.
+     *
+     * @param request The timed out request.
+     */
+    private void finishLateResponseWindow(final SimPowerRequest request) {
+        final boolean isLatencyRecorded;
+        synchronized (this) {
+            if (mLateResponseRequests.get(request.slotIndex) == request) {
+                mLateResponseRequests.remove(request.slotIndex);
+                maybeRemoveSimStatusChangedListener();
             }
+            isLatencyRecorded = request.isLatencyRecorded;
+            request.isLatencyRecorded = true;
+        }
+        if (!isLatencyRecorded) {
+            mSimPowerLatencyTracker.recordLatency(request.slotIndex, request.enabled,
+                    request.timeoutMillis);
         }
     }
 
+    /**
+     * Stop listening to the SIM status changes on versions prior to Android 12 (API 31), unless
+     * there are requests still awaiting the modem response.
+     */
+    @GuardedBy("this")
+    private void maybeRemoveSimStatusChangedListener() {
+        if (mSimStatusChangedListenerRegistered && mInFlightRequests.isEmpty() &&
+                mLateResponseRequests.isEmpty()) {
+            mSimStatusChangedListenerRegistered = false;
+            mSubscriptions.removeOnSimStatusChangedListener(mSimStatusChangedListener);
+        }
+    }
+
+    /**
+     * @param names The cached metric names per SIM slot.
+     * @param prefix The prefix of the metric name.
+     * @param slotIndex The SIM slot index.
+     * @return The name of the metric for the SIM slot, built only once.
+     */
+    @GuardedBy("this")
+    private static String getSlotMetricName(final SparseArrayCompat<String> names,
+            final String prefix, final int slotIndex) {
+
+        String name = names.get(slotIndex);
+        if (name == null) {
+            name = prefix + slotIndex;
+            names.put(slotIndex, name);
+        }
+        return name;
+    }
+
+    /**
+     * Record the outcome of the SIM power state change request in the journal.
+     *
+     * @param request The finished request.
+     * @param resCode The response code from the modem, or any of the custom
+     * {@code SET_SIM_POWER_STATE_*} response codes.
+     */
+    private void recordTransition(final SimPowerRequest request, final int resCode) {
+        final boolean enabled;
+        final @TransitionSource int source;
+        final long requestedAtMillis;
+        synchronized (this) {
+            enabled = request.enabled;
+            source = request.source;
+            requestedAtMillis = request.requestedAtMillis;
+        }
+        mSimTransitionJournal.append(new SimTransitionJournal.Entry(
+                    SimTransitionJournal.KIND_SIM_POWER, source,
+                    request.sub != null ? request.sub.getId() : INVALID_SUBSCRIPTION_ID,
+                    request.slotIndex, enabled, requestedAtMillis, System.currentTimeMillis(),
+                    resCode));
+    }
+
     /**
      * Set SIM card power state.
      *
@@ -205,31 +535,25 @@ public final class TelephonyController {
      * @param state One of the following SIM states:
      * {@link TelephonyManager#CARD_POWER_UP}
      * {@link TelephonyManager#CARD_POWER_DOWN}
+     * @param callback The callback to be invoked on the background thread with the response code
+     * from the modem on Android 12 (API 31) and newer.
      */
-    @GuardedBy("this")
-    private void setSimPowerStateForSlot(final int slotIndex, final int state) {
+    private void setSimPowerStateForSlot(final int slotIndex, final int state,
+            final Consumer<Integer> callback) {
+
         if (Utils.IS_AT_LEAST_S) {
-            final Consumer<Integer> callback = (resCode) -> {
-                synchronized (TelephonyController.this) {
-                    handleOnSetSimPowerStateForSlotFinished(resCode);
-                    TelephonyController.this.notifyAll();
-                }
-            };
-            mTelephonyManager.setSimPowerStateForSlot(slotIndex, state, (runnable) ->
-                    runnable.run(), callback);
+            mTelephonyManager.setSimPowerStateForSlot(slotIndex, state, mExecutor, callback);
         } else {
             ApiDeprecated.setSimPowerStateForSlot(mTelephonyManager, slotIndex, state);
         }
     }
 
     /**
+     * @param request The finished request.
      * @param resCode The response code from the modem.
      */
-    @GuardedBy("this")
-    private void handleOnSetSimPowerStateForSlotFinished(final int resCode) {
-        final String logPrefix = String.format(Locale.getDefault(),
-                "handleOnSetSimPowerStateForSlotFinished(resCode=%d) : requestMetadata=%s",
-                resCode, mRequestMetadata);
+    private void handleOnSetSimPowerStateForSlotFinished(final SimPowerRequest request,
+            final int resCode) {
 
         boolean shouldNotifyAllListeners = false;
         boolean requestFailed = false;
@@ -254,7 +578,8 @@ public final class TelephonyController {
                     break;
 
                 default:
-                    mLogger.e(logPrefix + ". Unexpected resCode.");
+                    mLogger.e("handleOnSetSimPowerStateForSlotFinished(resCode=%d) : %s. " +
+                            "Unexpected resCode.", resCode, request);
             }
         } else {
             switch (resCode) {
@@ -271,8 +596,7 @@ public final class TelephonyController {
             }
         }
 
-        final Subscription sub = BundleCompat.getParcelable(mRequestMetadata, KEY_SUBSCRIPTION,
-                Subscription.class);
+        final Subscription sub = request.sub;
 
         final boolean expectedEnabled = sub.isSimEnabled();
 
@@ -282,29 +606,18 @@ public final class TelephonyController {
                         resCode));
 
             sub.setSimState(TelephonyUtils.simStateInt(!expectedEnabled));
-            sub.setLastActivatedTime(LocalDateTime.parse(mRequestMetadata.getString(
-                            KEY_LAST_ACTIVATED_TIME)));
-            sub.setLastDeactivatedTime(LocalDateTime.parse(mRequestMetadata.getString(
-                            KEY_LAST_DEACTIVATED_TIME)));
-            sub.keepDisabledAcrossBoots(
-                mRequestMetadata.containsKey(KEY_KEEP_DISABLED_ACROSS_BOOTS) ?
-                mRequestMetadata.getBoolean(KEY_KEEP_DISABLED_ACROSS_BOOTS) : null);
+            sub.setLastActivatedTime(request.lastActivatedTime);
+            sub.setLastDeactivatedTime(request.lastDeactivatedTime);
+            sub.keepDisabledAcrossBoots(request.keepDisabledAcrossBoots);
 
             mSubscriptions.persistSubscription(sub);
 
-            final int revertState = simStateInt(!expectedEnabled);
-
             // When trying to change SIM state, but the request fails, then we must revert the SIM
             // power state to its actual state to avoid side effects on some devices, like when the
             // SIM is operational but Android telephony layer (e.g SubscriptionManager) believes
             // it's not. This behavior was discovered by manually testing the app on real devices
             // and it's likely to occur on non-QCOM SoCs
-            if (Utils.IS_AT_LEAST_S) {
-                mTelephonyManager.setSimPowerStateForSlot(sub.getSlotIndex(), revertState,
-                        (runnable) -> runnable.run(), (x) -> {});
-            } else {
-                setSimPowerStateForSlot(sub.getSlotIndex(), revertState);
-            }
+            setSimPowerStateForSlot(sub.getSlotIndex(), simStateInt(!expectedEnabled), (x) -> {});
         }
 
         // If the user pulled out the SIM card while attempting to enable it, there's no guarantee
@@ -318,16 +631,13 @@ public final class TelephonyController {
         // to explicitly notify listeners, so they can stay tuned to actual state
         shouldNotifyAllListeners |= requestFailed;
 
-        mLogger.d(logPrefix + ", requestFailed=%s,shouldNotifyAllListeners=%s", requestFailed,
+        mLogger.d("handleOnSetSimPowerStateForSlotFinished(resCode=%d) : %s,requestFailed=%s," +
+                "shouldNotifyAllListeners=%s.", resCode, request, requestFailed,
                 shouldNotifyAllListeners);
 
         if (shouldNotifyAllListeners) {
             mSubscriptions.notifyAllListeners();
         }
-
-        // Nullify all the metadata as we no longer need them + this will also signal that the
-        // response has been successfully handled within the timeout interval
-        mRequestMetadata.clear();
     }
 
     /**
@@ -338,15 +648,83 @@ public final class TelephonyController {
         return enabled ? TelephonyManager.CARD_POWER_UP : TelephonyManager.CARD_POWER_DOWN;
     }
 
+    /**
+     * The SIM power state change request holding the data needed to handle its termination.
+     */
+    private static final class SimPowerRequest {
+        final int id;
+        final int slotIndex;
+
+        /**
+         * The target state of the request. This can be altered by newer requests for the same SIM
+         * slot until the request is started, thus must be accessed while holding the lock of the
+         * {@link TelephonyController}.
+         */
+        boolean enabled;
+        boolean newKeepDisabledAcrossBoots;
+        @TransitionSource int source;
+
+        /** The wall clock time of when the request was made, in milliseconds since the epoch. */
+        long requestedAtMillis;
+
+        /** The future that will complete with the response code when the request finishes. */
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        /** The elapsed realtime of when the request reached the modem. */
+        long startedAtMillis;
+
+        /** The time to wait for the modem response. */
+        long timeoutMillis;
+
+        /**
+         * Whether the latency of the modem response has been recorded. This must be accessed while
+         * holding the lock of the {@link TelephonyController}.
+         */
+        boolean isLatencyRecorded;
+
+        /** The subscription associated with the SIM whose power state is being changed. */
+        Subscription sub;
+
+        /** The original data of the subscription used to revert on failure. */
+        LocalDateTime lastActivatedTime;
+        LocalDateTime lastDeactivatedTime;
+        Boolean keepDisabledAcrossBoots;
+
+        SimPowerRequest(final int id, final int slotIndex, final boolean enabled,
+                final boolean newKeepDisabledAcrossBoots, final @TransitionSource int source,
+                final long requestedAtMillis) {
+
+            this.id = id;
+            this.slotIndex = slotIndex;
+            this.enabled = enabled;
+            this.newKeepDisabledAcrossBoots = newKeepDisabledAcrossBoots;
+            this.source = source;
+            this.requestedAtMillis = requestedAtMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "SimPowerRequest {"
+                + " id=" + id
+                + " slotIndex=" + slotIndex
+                + " enabled=" + enabled
+                + " newKeepDisabledAcrossBoots=" + newKeepDisabledAcrossBoots
+                + " source=" + source
+                + " sub=" + sub
+                + " }";
+        }
+    }
+
     /**
      * <p>The callback listener used on versions prior to Android 12 (API 31) that will notify us of
      * changes to the {@link TelephonyManager.SimState} for all available SIM cards. This is needed
-     * to determine success or failure of {@link #setSimPowerStateForSlot(int,int)} request.
+     * to determine success or failure of {@link #setSimPowerStateForSlot} request.
      *
      * <p>The listener will react to various carrier config changes, but here we're only interested in
      * some SIM states emitted by {@link TelephonyManager#ACTION_SIM_CARD_STATE_CHANGED} action.
      *
-     * <p>The listener will be unregistered after a timeout.
+     * <p>The listener will be unregistered as soon as there are no requests awaiting the modem
+     * response, including the late response of the timed out requests.
      */
     private class SimStatusChangedListener implements Subscriptions.OnSimStatusChangedListener {
         @Override
@@ -366,19 +744,17 @@ public final class TelephonyController {
                 default: return;
             }
 
-            final Subscription sub = BundleCompat.getParcelable(mRequestMetadata, KEY_SUBSCRIPTION,
-                    Subscription.class);
-
-            if (sub.getSlotIndex() != slotIndex) {
-                // Since we're listening to state mutations of all available SIM cards, we can
-                // hypothetically receive a concurrent update for a different SIM card than the one
-                // whose SIM power state we expect to change
-                return;
+            // Since we're listening to state mutations of all available SIM cards, we only pick
+            // the request awaiting the modem response for this particular SIM card
+            final SimPowerRequest request;
+            synchronized (TelephonyController.this) {
+                final SimPowerRequest inFlightRequest = mInFlightRequests.get(slotIndex);
+                request = inFlightRequest != null ? inFlightRequest :
+                    mLateResponseRequests.get(slotIndex);
             }
 
-            synchronized (TelephonyController.this) {
-                handleOnSetSimPowerStateForSlotFinished(state);
-                TelephonyController.this.notifyAll();
+            if (request != null) {
+                mHandler.post(() -> finishRequest(request, state));
             }
         }
     }
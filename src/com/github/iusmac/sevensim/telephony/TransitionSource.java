@@ -0,0 +1,35 @@
+package com.github.iusmac.sevensim.telephony;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The origin of a request to change the enabled state of a SIM card.
+ *
+ * @see SimTransitionJournal
+ */
+@Retention(RetentionPolicy.SOURCE)
+@IntDef({
+    TransitionSource.UNKNOWN,
+    TransitionSource.SCHEDULE,
+    TransitionSource.USER
+})
+public @interface TransitionSource {
+    /**
+     * This source means that we don't know what triggered the request.
+     */
+    int UNKNOWN = 0;
+
+    /**
+     * This source means that the request was made by the scheduler when processing the weekly
+     * repeat schedules.
+     */
+    int SCHEDULE = 1;
+
+    /**
+     * This source means that the request was made by the user from within the app.
+     */
+    int USER = 2;
+}
@@ -76,7 +76,7 @@ public final class PreferenceListFragment extends Hilt_PreferenceListFragment {
             if (key.equals(mPrefShowAppIconKey)) {
                 mLauncherIconVisibilityManager.setVisibility(value);
             } else {
-                mLogger.wtf("putBoolean() : unhandled key = " + key);
+                mLogger.wtf("putBoolean() : unhandled key = %s", key);
             }
         }
 
@@ -86,7 +86,7 @@ public final class PreferenceListFragment extends Hilt_PreferenceListFragment {
                 return mLauncherIconVisibilityManager.getUserVisibilityPreference().orElseGet(() ->
                         mLauncherIconVisibilityManager.isVisible());
             } else {
-                mLogger.wtf("getBoolean() : unhandled key = " + key);
+                mLogger.wtf("getBoolean() : unhandled key = %s", key);
             }
             return defVal;
         }
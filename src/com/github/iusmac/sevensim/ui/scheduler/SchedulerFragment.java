@@ -328,7 +328,7 @@ public final class SchedulerFragment extends Hilt_SchedulerFragment {
                     mViewModel.handleOnEnabledStateChanged(value);
                 }
             } else {
-                mLogger.wtf("putBoolean() : unhandled key = " + key);
+                mLogger.wtf("putBoolean() : unhandled key = %s", key);
             }
         }
 
@@ -337,7 +337,7 @@ public final class SchedulerFragment extends Hilt_SchedulerFragment {
             if (key.equals(mPrefEnabledKey)) {
                 return mViewModel.getSchedulerEnabledState().getValue();
             }
-            mLogger.wtf("getBoolean() : unhandled key = " + key);
+            mLogger.wtf("getBoolean() : unhandled key = %s", key);
             return defVal;
         }
 
@@ -346,7 +346,7 @@ public final class SchedulerFragment extends Hilt_SchedulerFragment {
             if (key.equals(mPrefDaysOfWeekKey)) {
                 mViewModel.handleOnDaysOfWeekChanged(values);
             } else {
-                mLogger.wtf("putStringSet() : unhandled key = " + key);
+                mLogger.wtf("putStringSet() : unhandled key = %s", key);
             }
         }
 
@@ -355,7 +355,7 @@ public final class SchedulerFragment extends Hilt_SchedulerFragment {
             if (key.equals(mPrefDaysOfWeekKey)) {
                 return mViewModel.getDaysOfWeekValues().getValue();
             }
-            mLogger.wtf("getStringSet() : unhandled key = " + key);
+            mLogger.wtf("getStringSet() : unhandled key = %s", key);
             return defValues;
         }
 
@@ -368,7 +368,7 @@ public final class SchedulerFragment extends Hilt_SchedulerFragment {
             } else if (key.equals(mPrefPinKey)) {
                 handleOnPinChanged(value);
             } else {
-                mLogger.wtf("putString() : unhandled key = " + key);
+                mLogger.wtf("putString() : unhandled key = %s", key);
             }
         }
 
@@ -382,25 +382,25 @@ public final class SchedulerFragment extends Hilt_SchedulerFragment {
             if (key.equals(mPrefPinKey)) {
                 return null;
             }
-            mLogger.wtf("getString() : unhandled key = " + key);
+            mLogger.wtf("getString() : unhandled key = %s", key);
             return defValue;
         }
 
         @Override
         public int getInt(final String key, final int defValue) {
-            mLogger.wtf("getInt() : unhandled key = " + key);
+            mLogger.wtf("getInt() : unhandled key = %s", key);
             return defValue;
         }
 
         @Override
         public long getLong(final String key, final long defValue) {
-            mLogger.wtf("getLong() : unhandled key = " + key);
+            mLogger.wtf("getLong() : unhandled key = %s", key);
             return defValue;
         }
 
         @Override
         public float getFloat(final String key, final float defValue) {
-            mLogger.wtf("getFloat() : unhandled key = " + key);
+            mLogger.wtf("getFloat() : unhandled key = %s", key);
             return defValue;
         }
     }
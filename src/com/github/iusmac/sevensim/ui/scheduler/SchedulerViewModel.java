@@ -27,6 +27,7 @@ import com.github.iusmac.sevensim.R;
 import com.github.iusmac.sevensim.Utils;
 import com.github.iusmac.sevensim.scheduler.DayOfWeek;
 import com.github.iusmac.sevensim.scheduler.DaysOfWeek;
+import com.github.iusmac.sevensim.scheduler.DaysOfWeekFormatter;
 import com.github.iusmac.sevensim.scheduler.SubscriptionScheduleEntity;
 import com.github.iusmac.sevensim.scheduler.SubscriptionScheduler;
 import com.github.iusmac.sevensim.scheduler.SubscriptionSchedulerSummaryBuilder;
@@ -99,7 +100,7 @@ public final class SchedulerViewModel extends ViewModel {
     @SuppressLint("StaticFieldLeak")
     private final Context mContext;
     private final Logger mLogger;
-    private final DaysOfWeek.Factory mDaysOfWeekFactory;
+    private final DaysOfWeekFormatter mDaysOfWeekFormatter;
     private final SubscriptionScheduler mSubscriptionScheduler;
     private final Subscriptions mSubscriptions;
     private final SubscriptionSchedulerSummaryBuilder mSubscriptionSchedulerSummaryBuilder;
@@ -109,7 +110,7 @@ public final class SchedulerViewModel extends ViewModel {
     @AssistedInject
     public SchedulerViewModel(final @ApplicationContext Context context,
             final Logger.Factory loggerFactory,
-            final DaysOfWeek.Factory daysOfWeekFactory,
+            final DaysOfWeekFormatter daysOfWeekFormatter,
             final SubscriptionScheduler subscriptionScheduler,
             final Subscriptions subscriptions,
             final SubscriptionSchedulerSummaryBuilder subscriptionSchedulerSummaryBuilder,
@@ -119,7 +120,7 @@ public final class SchedulerViewModel extends ViewModel {
 
         mContext = context;
         mLogger = loggerFactory.create(getClass().getSimpleName());
-        mDaysOfWeekFactory = daysOfWeekFactory;
+        mDaysOfWeekFormatter = daysOfWeekFormatter;
         mSubscriptionScheduler = subscriptionScheduler;
         mSubscriptions = subscriptions;
         mSubscriptionSchedulerSummaryBuilder = subscriptionSchedulerSummaryBuilder;
@@ -131,7 +132,7 @@ public final class SchedulerViewModel extends ViewModel {
 
         mMutableStartSchedule = new MutableLiveData<>(getDefaultSchedule(TimeType.START_TIME));
         mMutableEndSchedule = new MutableLiveData<>(getDefaultSchedule(TimeType.END_TIME));
-        mMutableDaysOfWeek = new MutableLiveData<>(mDaysOfWeekFactory.create());
+        mMutableDaysOfWeek = new MutableLiveData<>(DaysOfWeek.empty());
         mMutableStartTime = new MutableLiveData<>(mMutableStartSchedule.getValue().getTime());
         mMutableEndTime = new MutableLiveData<>(mMutableEndSchedule.getValue().getTime());
         mMediatorPinEntity.addSource(mPinStorage.getObservablePin(mSubscriptionId), (pinEntity) ->
@@ -153,7 +154,7 @@ public final class SchedulerViewModel extends ViewModel {
                 dayOfWeekBits |= schedule.getDaysOfWeek().getBits();
             }
             if (dayOfWeekBits != 0) {
-                mMutableDaysOfWeek.postValue(mDaysOfWeekFactory.create(dayOfWeekBits));
+                mMutableDaysOfWeek.postValue(DaysOfWeek.valueOf(dayOfWeekBits));
             }
         });
 
@@ -243,7 +244,7 @@ public final class SchedulerViewModel extends ViewModel {
                     int i = 0;
                     for (final Iterator<Integer> it = daysOfWeek.iterator(); it.hasNext(); i++) {
                         final @DayOfWeek int dayOfWeek = it.next();
-                        daysOfWeekNames[i] = daysOfWeek.getDisplayName(dayOfWeek,
+                        daysOfWeekNames[i] = mDaysOfWeekFormatter.getDisplayName(dayOfWeek,
                                 /*useLongName=*/ true);
                         daysOfWeekValues[i] = Integer.toString(dayOfWeek);
                     }
@@ -266,7 +267,7 @@ public final class SchedulerViewModel extends ViewModel {
                     return mResources.getString(R.string.scheduler_days_of_week_all);
                 } else {
                     final boolean useLongNames = daysOfWeek.getCount() == 1;
-                    return daysOfWeek.toString(useLongNames);
+                    return mDaysOfWeekFormatter.format(daysOfWeek, useLongNames);
                 }
             });
         }
@@ -362,7 +363,7 @@ public final class SchedulerViewModel extends ViewModel {
      * @param values The set of {@link DayOfWeek} as strings.
      */
     void handleOnDaysOfWeekChanged(final @NonNull Set<String> values) {
-        final DaysOfWeek daysOfWeek = mDaysOfWeekFactory.create(values.stream()
+        final DaysOfWeek daysOfWeek = DaysOfWeek.of(values.stream()
                 .mapToInt(Integer::parseInt).toArray());
 
         mLogger.d("handleOnWeekdaysChanged(values={%s}) : daysOfWeek=%s.", String.join(",", values),
@@ -451,7 +452,7 @@ public final class SchedulerViewModel extends ViewModel {
         final List<SubscriptionScheduleEntity> schedulesToRemove = new ArrayList<>(2);
 
         mMediatorSchedulerEnabledState.setValue(false);
-        mMutableDaysOfWeek.setValue(mDaysOfWeekFactory.create());
+        mMutableDaysOfWeek.setValue(DaysOfWeek.empty());
 
         if (mMutableStartSchedule.getValue().getId() > 0L) {
             final SubscriptionScheduleEntity defaultSchedule =
@@ -512,7 +513,7 @@ public final class SchedulerViewModel extends ViewModel {
         final SubscriptionScheduleEntity schedule = new SubscriptionScheduleEntity();
         schedule.setSubscriptionId(mSubscriptionId);
         schedule.setSubscriptionEnabled(which == TimeType.START_TIME);
-        schedule.setDaysOfWeek(mDaysOfWeekFactory.create());
+        schedule.setDaysOfWeek(DaysOfWeek.empty());
         schedule.setTime(which.getDefaultLocalTime());
         return schedule;
     }
@@ -574,7 +575,7 @@ public final class SchedulerViewModel extends ViewModel {
         public void onReceive(final Context context, final Intent intent) {
             final String action = intent.getAction();
 
-            mLogger.d("onReceive() : action=" + action);
+            mLogger.d("onReceive() : action=%s.", action);
 
             switch (action) {
                 case Intent.ACTION_LOCALE_CHANGED:
@@ -148,7 +148,7 @@ public class SimListActivity extends Hilt_SimListActivity
         public void onReceive(final Context context, final Intent intent) {
             final String action = intent.getAction();
 
-            mLogger.d("onReceive() : action=" + action);
+            mLogger.d("onReceive() : action=%s.", action);
 
             switch (action) {
                 case Intent.ACTION_LOCALE_CHANGED:
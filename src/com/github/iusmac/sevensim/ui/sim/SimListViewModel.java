@@ -16,6 +16,7 @@ import com.github.iusmac.sevensim.telephony.Subscription;
 import com.github.iusmac.sevensim.telephony.SubscriptionController;
 import com.github.iusmac.sevensim.telephony.Subscriptions;
 import com.github.iusmac.sevensim.telephony.TelephonyController;
+import com.github.iusmac.sevensim.telephony.TransitionSource;
 
 import dagger.Lazy;
 import dagger.assisted.Assisted;
@@ -92,14 +93,15 @@ public final class SimListViewModel extends ViewModel {
         final SimEntry simEntry = mMutableSimEntries.getValue().get(simEntryId);
         final Subscription sub = simEntry.getSubscription();
 
-        mHandler.post(() -> {
-            if (sub.getSlotIndex() == INVALID_SIM_SLOT_INDEX) {
-                mSubscriptionControllerLazy.get().setUiccApplicationsEnabled(sub.getId(), enabled);
-            } else {
-                mTelephonyControllerLazy.get().setSimState(sub.getSlotIndex(), enabled,
-                        /*keepDisabledAcrossBoots=*/ !enabled);
-            }
-        });
+        if (sub.getSlotIndex() == INVALID_SIM_SLOT_INDEX) {
+            mHandler.post(() -> mSubscriptionControllerLazy.get()
+                    .setUiccApplicationsEnabled(sub.getId(), enabled, TransitionSource.USER));
+        } else {
+            // The request is performed asynchronously, and the outcome will be reflected by the
+            // subscriptions, so there's no need to wait for it
+            mTelephonyControllerLazy.get().setSimState(sub.getSlotIndex(), enabled,
+                    /*keepDisabledAcrossBoots=*/ !enabled, TransitionSource.USER);
+        }
     }
 
     @Override
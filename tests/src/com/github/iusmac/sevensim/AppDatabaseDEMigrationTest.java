@@ -0,0 +1,206 @@
+package com.github.iusmac.sevensim;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.iusmac.sevensim.engine.TypeCodecs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validate the migrations of the {@link AppDatabaseDE}. The database of the oldest schema version
+ * is created by hand, then it's opened by Room, which runs the migrations and validates the
+ * resulting schema against the entities of the latest schema version.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppDatabaseDEMigrationTest {
+    private static final String TEST_DB = "migration-test";
+
+    /** The statements Room used to create the database of schema version 1. */
+    private static final String[] SCHEMA_V1 = {
+        "CREATE TABLE IF NOT EXISTS `subscriptions` (`id` INTEGER NOT NULL, "
+            + "`lastActivatedTime` TEXT, `lastDeactivatedTime` TEXT, "
+            + "`keepDisabledAcrossBoots` INTEGER, PRIMARY KEY(`id`))",
+        "CREATE TABLE IF NOT EXISTS `subscription_schedules` "
+            + "(`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `sub_id` INTEGER NOT NULL, "
+            + "`sub_enabled` INTEGER NOT NULL, `enabled` INTEGER NOT NULL, "
+            + "`days_of_week_bits` INTEGER, `minutes_since_midnight` INTEGER NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS "
+            + "`index_subscription_schedules_sub_id_sub_enabled_enabled_days_of_week_bits` "
+            + "ON `subscription_schedules` (`sub_id`, `sub_enabled`, `enabled`, "
+            + "`days_of_week_bits`)",
+    };
+
+    private Context mContext;
+    private AppDatabaseDE mDatabase;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        if (mDatabase != null) {
+            mDatabase.close();
+        }
+        mContext.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrate1To2_preservesSubscriptionsAndSchedules() {
+        try (SQLiteDatabase db = createDatabaseV1()) {
+            insertSubscription(db, 1, "'2024-05-15T08:30'", "'2024-05-14T22:00'", "1");
+            insertSubscription(db, 2, "'2024-05-13T07:00'", "'2024-05-13T23:45'", "0");
+            db.execSQL("INSERT INTO subscription_schedules (id, sub_id, sub_enabled, enabled, "
+                    + "days_of_week_bits, minutes_since_midnight) VALUES (1, 1, 1, 1, 127, 510)");
+        }
+
+        final SupportSQLiteDatabase db = migrate();
+        assertSubscription(db, 1, LocalDateTime.of(2024, 5, 15, 8, 30),
+                LocalDateTime.of(2024, 5, 14, 22, 0), 1);
+        assertSubscription(db, 2, LocalDateTime.of(2024, 5, 13, 7, 0),
+                LocalDateTime.of(2024, 5, 13, 23, 45), 0);
+
+        try (Cursor cursor = db.query("SELECT sub_id, days_of_week_bits, "
+                    + "minutes_since_midnight FROM subscription_schedules WHERE id = 1")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getInt(0));
+            assertEquals(127, cursor.getInt(1));
+            assertEquals(510, cursor.getInt(2));
+        }
+    }
+
+    @Test
+    public void migrate1To2_keepsNullValues() {
+        try (SQLiteDatabase db = createDatabaseV1()) {
+            insertSubscription(db, 1, "NULL", "NULL", "NULL");
+            insertSubscription(db, 2, "'2024-05-15T08:30'", "NULL", "NULL");
+        }
+
+        final SupportSQLiteDatabase db = migrate();
+        assertSubscription(db, 1, null, null, null);
+        assertSubscription(db, 2, LocalDateTime.of(2024, 5, 15, 8, 30), null, null);
+    }
+
+    @Test
+    public void migrate1To2_truncatesSecondsAndIgnoresOffsets() {
+        try (SQLiteDatabase db = createDatabaseV1()) {
+            insertSubscription(db, 1, "'2024-05-15T08:30:59.999'", "'2024-05-14T22:00:01'", "1");
+            // The offset is dropped, so that the wall clock time is preserved
+            insertSubscription(db, 2, "'2024-05-15T08:30:15+02:00'",
+                    "'2024-05-14T22:00Z'", "0");
+        }
+
+        final SupportSQLiteDatabase db = migrate();
+        assertSubscription(db, 1, LocalDateTime.of(2024, 5, 15, 8, 30),
+                LocalDateTime.of(2024, 5, 14, 22, 0), 1);
+        assertSubscription(db, 2, LocalDateTime.of(2024, 5, 15, 8, 30),
+                LocalDateTime.of(2024, 5, 14, 22, 0), 0);
+    }
+
+    @Test
+    public void migrate1To2_handlesMinDateTimeAndMalformedValues() {
+        try (SQLiteDatabase db = createDatabaseV1()) {
+            // The never activated/deactivated subscriptions were stored with LocalDateTime.MIN
+            insertSubscription(db, 1, "'" + LocalDateTime.MIN + "'",
+                    "'" + LocalDateTime.MIN + "'", "0");
+            insertSubscription(db, 2, "'not-a-date-time'", "''", "0");
+        }
+
+        final SupportSQLiteDatabase db = migrate();
+        assertSubscription(db, 1, LocalDateTime.MIN, LocalDateTime.MIN, 0);
+        assertEquals(LocalDateTime.MIN,
+                TypeCodecs.fromEpochMinutes(TypeCodecs.toEpochMinutes(LocalDateTime.MIN)));
+        assertSubscription(db, 2, null, null, 0);
+    }
+
+    /**
+     * @return The empty database of schema version 1.
+     */
+    private SQLiteDatabase createDatabaseV1() {
+        final SQLiteDatabase db = mContext.openOrCreateDatabase(TEST_DB, Context.MODE_PRIVATE,
+                /*factory=*/ null);
+        for (String sql : SCHEMA_V1) {
+            db.execSQL(sql);
+        }
+        db.setVersion(1);
+        return db;
+    }
+
+    /**
+     * Open the database with Room, which migrates it to the latest schema version and validates
+     * the result against the entities.
+     *
+     * @return The migrated database.
+     */
+    private SupportSQLiteDatabase migrate() {
+        mDatabase = Room.databaseBuilder(mContext, AppDatabaseDE.class, TEST_DB)
+            .addTypeConverter(new RoomTypeConverters())
+            .addMigrations(AppDatabaseDE.MIGRATIONS)
+            .build();
+        return mDatabase.getOpenHelper().getWritableDatabase();
+    }
+
+    /**
+     * @param db The database of schema version 1.
+     * @param subId The ID of the subscription.
+     * @param lastActivatedTime The SQL literal of the column value.
+     * @param lastDeactivatedTime The SQL literal of the column value.
+     * @param keepDisabledAcrossBoots The SQL literal of the column value.
+     */
+    private static void insertSubscription(final SQLiteDatabase db, final int subId,
+            final String lastActivatedTime, final String lastDeactivatedTime,
+            final String keepDisabledAcrossBoots) {
+
+        db.execSQL("INSERT INTO subscriptions (id, lastActivatedTime, lastDeactivatedTime, "
+                + "keepDisabledAcrossBoots) VALUES (" + subId + ", " + lastActivatedTime + ", "
+                + lastDeactivatedTime + ", " + keepDisabledAcrossBoots + ")");
+    }
+
+    /**
+     * @param db The database of schema version 2.
+     * @param subId The ID of the subscription.
+     * @param lastActivatedTime The expected date-time, or {@code null} if expected to be unset.
+     * @param lastDeactivatedTime The expected date-time, or {@code null} if expected to be unset.
+     * @param keepDisabledAcrossBoots The expected value, or {@code null} if expected to be unset.
+     */
+    private static void assertSubscription(final SupportSQLiteDatabase db, final int subId,
+            final LocalDateTime lastActivatedTime, final LocalDateTime lastDeactivatedTime,
+            final Integer keepDisabledAcrossBoots) {
+
+        try (Cursor cursor = db.query("SELECT lastActivatedTime, lastDeactivatedTime, "
+                    + "keepDisabledAcrossBoots FROM subscriptions WHERE id = ?",
+                    new Object[] { subId })) {
+
+            assertTrue("Missing subscription " + subId, cursor.moveToFirst());
+            assertEquals(toEpochMinutes(lastActivatedTime), getLong(cursor, 0));
+            assertEquals(toEpochMinutes(lastDeactivatedTime), getLong(cursor, 1));
+            assertEquals(keepDisabledAcrossBoots,
+                    cursor.isNull(2) ? null : Integer.valueOf(cursor.getInt(2)));
+        }
+    }
+
+    private static Long toEpochMinutes(final LocalDateTime ldt) {
+        return ldt == null ? null : TypeCodecs.toEpochMinutes(ldt);
+    }
+
+    private static Long getLong(final Cursor cursor, final int columnIndex) {
+        return cursor.isNull(columnIndex) ? null : cursor.getLong(columnIndex);
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.iusmac.sevensim;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Validate how the {@link TaskTracker} merges the duplicate tasks queued in the
+ * {@link ForegroundService}'s worker, and which tasks it reports as completed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskTrackerTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 5, 15, 8, 30);
+
+    @Test
+    public void interleavedBurst_isMergedByKey() {
+        final TaskTracker tracker = new TaskTracker();
+
+        // A, B, unlock, A, B
+        final TaskTracker.CoalescingTask taskA =
+            tracker.onCoalescingTaskAdded("A", TIME, /*taskId=*/ 1);
+        final TaskTracker.CoalescingTask taskB =
+            tracker.onCoalescingTaskAdded("B", TIME, /*taskId=*/ 2);
+        tracker.onTaskAdded(/*taskId=*/ 3);
+
+        assertNull(tracker.onCoalescingTaskAdded("A", TIME.plusMinutes(1), /*taskId=*/ 4));
+        assertNull(tracker.onCoalescingTaskAdded("B", TIME.minusMinutes(1), /*taskId=*/ 5));
+
+        assertNotNull(taskA);
+        assertEquals(TIME.plusMinutes(1), taskA.getCompareTime());
+        assertEquals(Arrays.asList(1, 4), taskA.getTaskIds());
+        assertNotNull(taskB);
+        assertEquals(TIME, taskB.getCompareTime());
+        assertEquals(Arrays.asList(2, 5), taskB.getTaskIds());
+    }
+
+    @Test
+    public void startedTask_doesNotAbsorbDuplicates() {
+        final TaskTracker tracker = new TaskTracker();
+        final TaskTracker.CoalescingTask task =
+            tracker.onCoalescingTaskAdded("A", TIME, /*taskId=*/ 1);
+        assertNotNull(task);
+
+        tracker.onCoalescingTaskStarted(task);
+        final TaskTracker.CoalescingTask nextTask =
+            tracker.onCoalescingTaskAdded("A", TIME, /*taskId=*/ 2);
+
+        assertNotNull(nextTask);
+        assertEquals(Collections.singletonList(1), task.getTaskIds());
+        assertEquals(Collections.singletonList(2), nextTask.getTaskIds());
+    }
+
+    @Test
+    public void interleavedBurst_reportsCompletionUpToOldestTaskInProgress() {
+        final TaskTracker tracker = new TaskTracker();
+
+        // A, B, unlock, A, B
+        final TaskTracker.CoalescingTask taskA =
+            tracker.onCoalescingTaskAdded("A", TIME, /*taskId=*/ 1);
+        final TaskTracker.CoalescingTask taskB =
+            tracker.onCoalescingTaskAdded("B", TIME, /*taskId=*/ 2);
+        tracker.onTaskAdded(/*taskId=*/ 3);
+        tracker.onCoalescingTaskAdded("A", TIME, /*taskId=*/ 4);
+        tracker.onCoalescingTaskAdded("B", TIME, /*taskId=*/ 5);
+        assertNotNull(taskA);
+        assertNotNull(taskB);
+
+        // The merged A ran on behalf of 4, but 2 and 3 are still in progress
+        tracker.onCoalescingTaskStarted(taskA);
+        assertEquals(1, tracker.onTasksCompleted(taskA.getTaskIds()));
+
+        // The merged B ran on behalf of 5, but 3 is still in progress
+        tracker.onCoalescingTaskStarted(taskB);
+        assertEquals(2, tracker.onTasksCompleted(taskB.getTaskIds()));
+
+        assertEquals(5, tracker.onTasksCompleted(Collections.singletonList(3)));
+    }
+
+    @Test
+    public void taskCompletedBeforeOldestOne_isNotReported() {
+        final TaskTracker tracker = new TaskTracker();
+        tracker.onTaskAdded(/*taskId=*/ 1);
+        tracker.onTaskAdded(/*taskId=*/ 2);
+
+        assertEquals(0, tracker.onTasksCompleted(Collections.singletonList(2)));
+        assertEquals(2, tracker.onTasksCompleted(Collections.singletonList(1)));
+    }
+}
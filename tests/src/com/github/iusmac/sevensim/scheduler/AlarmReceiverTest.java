@@ -0,0 +1,66 @@
+package com.github.iusmac.sevensim.scheduler;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.github.iusmac.sevensim.telephony.PinStorage;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.inject.Provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Validate how the {@link AlarmReceiver} reads the payload of the alarms set by the
+ * {@link SubscriptionScheduler}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AlarmReceiverTest {
+    private static final Provider<PinStorage> UNUSED_PIN_STORAGE_PROVIDER = () -> {
+        throw new AssertionError("The PIN storage must not be accessed");
+    };
+
+    @Test
+    public void plainAlarm_doesNotTouchPinStorage() {
+        final Intent intent = new Intent()
+            .putExtra(AlarmReceiver.EXTRA_TRIGGER_TIME_MILLIS, 1_715_754_600_000L);
+
+        final Bundle clearPinCodes = AlarmReceiver.getClearPinCodes(intent);
+
+        assertNull(clearPinCodes);
+        assertNull(AlarmReceiver.getPinEntities(clearPinCodes, UNUSED_PIN_STORAGE_PROVIDER));
+    }
+
+    @Test
+    public void alarmWithEmptyPinCodes_doesNotTouchPinStorage() {
+        final Intent intent = new Intent()
+            .putExtra(AlarmReceiver.EXTRA_TRIGGER_TIME_MILLIS, 1_715_754_600_000L)
+            .putExtra(AlarmReceiver.EXTRA_CLEAR_PIN_CODES, new Bundle());
+
+        final Bundle clearPinCodes = AlarmReceiver.getClearPinCodes(intent);
+
+        assertNull(clearPinCodes);
+        assertNull(AlarmReceiver.getPinEntities(clearPinCodes, UNUSED_PIN_STORAGE_PROVIDER));
+    }
+
+    @Test
+    public void alarmWithPinCodes_keepsTriggerTimeOutOfPinCodes() {
+        final Bundle pinCodes = new Bundle();
+        pinCodes.putString("1", "1234");
+        final Intent intent = new Intent()
+            .putExtra(AlarmReceiver.EXTRA_TRIGGER_TIME_MILLIS, 1_715_754_600_000L)
+            .putExtra(AlarmReceiver.EXTRA_CLEAR_PIN_CODES, pinCodes);
+
+        final Bundle clearPinCodes = AlarmReceiver.getClearPinCodes(intent);
+
+        assertNotNull(clearPinCodes);
+        assertEquals(1, clearPinCodes.size());
+        assertEquals("1234", clearPinCodes.getString("1"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.iusmac.sevensim.scheduler;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.iusmac.sevensim.AppDatabaseDE;
+import com.github.iusmac.sevensim.RoomTypeConverters;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validate that the queries of the {@link SubscriptionSchedulesDao} run on each alarm search the
+ * index of the {@code subscription_schedules} table, rather than scanning the whole table.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SubscriptionSchedulesDaoTest {
+    private static final String INDEX_NAME =
+        "index_subscription_schedules_sub_id_sub_enabled_enabled_days_of_week_bits";
+
+    private AppDatabaseDE mDatabase;
+    private SubscriptionSchedulesDao mDao;
+
+    @Before
+    public void setUp() {
+        mDatabase = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                AppDatabaseDE.class)
+            .addTypeConverter(new RoomTypeConverters())
+            .build();
+        mDao = mDatabase.subscriptionSchedulerDao();
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void findNearestByDayOfWeekAndTime_searchesIndex() {
+        final List<String> plan =
+            explainQueryPlan(SubscriptionSchedulesDao.FIND_NEAREST_BY_DAY_OF_WEEK_AND_TIME_QUERY);
+
+        assertTrue(plan.toString(), contains(plan, "USING INDEX " + INDEX_NAME + " (sub_id=? AND "
+                    + "sub_enabled=? AND enabled=? AND days_of_week_bits>?)"));
+    }
+
+    @Test
+    public void findAllSubscriptionIds_scansCoveringIndex() {
+        final List<String> plan =
+            explainQueryPlan(SubscriptionSchedulesDao.FIND_ALL_SUBSCRIPTION_IDS_QUERY);
+
+        assertTrue(plan.toString(), contains(plan, "USING COVERING INDEX " + INDEX_NAME));
+    }
+
+    @Test
+    public void findAllNearestByDayOfWeekAndTime_findsNearestPerSubscriptionAndEnabledState() {
+        mDao.insertAll(Arrays.asList(
+                    createSchedule(/*subId=*/ 1, /*subEnabled=*/ true, LocalTime.of(8, 0)),
+                    createSchedule(/*subId=*/ 1, /*subEnabled=*/ true, LocalTime.of(10, 0)),
+                    createSchedule(/*subId=*/ 1, /*subEnabled=*/ false, LocalTime.of(22, 0)),
+                    createSchedule(/*subId=*/ 2, /*subEnabled=*/ false, LocalTime.of(23, 0))));
+
+        final List<SubscriptionScheduleEntity> schedules =
+            mDao.findAllNearestByDayOfWeekAndTime(Calendar.WEDNESDAY, LocalTime.of(9, 0),
+                    /*reverseSearch=*/ false);
+
+        assertEquals(3, schedules.size());
+        for (SubscriptionScheduleEntity schedule : schedules) {
+            if (schedule.getSubscriptionId() == 1 && schedule.getSubscriptionEnabled()) {
+                assertEquals(LocalTime.of(10, 0), schedule.getTime());
+            }
+        }
+    }
+
+    /**
+     * @param sql The SQL query to explain. Its parameters are left unbound.
+     * @return The details of the query plan steps.
+     */
+    private List<String> explainQueryPlan(final String sql) {
+        final List<String> details = new ArrayList<>();
+        try (Cursor cursor = mDatabase.getOpenHelper().getReadableDatabase()
+                .query("EXPLAIN QUERY PLAN " + sql)) {
+
+            final int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(detailIndex));
+            }
+        }
+        return details;
+    }
+
+    /**
+     * @param plan The details of the query plan steps.
+     * @param step The text any step is expected to contain.
+     * @return Whether the query plan contains the step. Older SQLite versions prefix the table name
+     * with {@code TABLE}, hence the substring match.
+     */
+    private static boolean contains(final List<String> plan, final String step) {
+        for (String detail : plan) {
+            if (detail.contains(step)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SubscriptionScheduleEntity createSchedule(final int subId,
+            final boolean subEnabled, final LocalTime time) {
+
+        final SubscriptionScheduleEntity schedule = new SubscriptionScheduleEntity();
+        schedule.setSubscriptionId(subId);
+        schedule.setSubscriptionEnabled(subEnabled);
+        schedule.setEnabled(true);
+        schedule.setDaysOfWeek(DaysOfWeek.of(Calendar.WEDNESDAY));
+        schedule.setTime(time);
+        return schedule;
+    }
+}